@@ -17,4 +17,11 @@ public class AlpacaConfig {
     private String tradingBaseUrl;
     private String wsBaseUrl;
     private int maxRequestPerMinute = 200;
+
+    // HTTP connection pool and per-call timeouts
+    private int maxConnections = 50;
+    private int connectTimeoutMs = 5000;
+    private int responseTimeoutMs = 10000;
+    // Requests the reactive client keeps in flight at once for multi-symbol calls
+    private int maxConcurrentRequests = 8;
 }
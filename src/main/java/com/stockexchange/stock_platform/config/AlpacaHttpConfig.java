@@ -0,0 +1,65 @@
+package com.stockexchange.stock_platform.config;
+
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * HTTP plumbing shared by the Alpaca REST clients: one rate limiter for the account's
+ * request budget, and a pooled keep-alive WebClient for the reactive client
+ */
+@Configuration
+@Slf4j
+public class AlpacaHttpConfig {
+
+    // A page of 10000 bars is a few MB of JSON
+    private static final int MAX_RESPONSE_BYTES = 16 * 1024 * 1024;
+
+    @Bean(destroyMethod = "shutdown")
+    public PriorityRateLimiter alpacaRateLimiter(AlpacaConfig config, MeterRegistry meterRegistry) {
+        return new PriorityRateLimiter("alpaca", config.getMaxRequestPerMinute(), meterRegistry);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider alpacaConnectionProvider(AlpacaConfig config) {
+        return ConnectionProvider.builder("alpaca")
+                .maxConnections(config.getMaxConnections())
+                .pendingAcquireTimeout(Duration.ofMillis(config.getResponseTimeoutMs()))
+                // Close idle connections before Alpaca's side does
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+    }
+
+    @Bean
+    public WebClient alpacaWebClient(WebClient.Builder builder, AlpacaConfig config,
+                                     ConnectionProvider alpacaConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(alpacaConnectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMs())
+                .responseTimeout(Duration.ofMillis(config.getResponseTimeoutMs()));
+
+        log.info("Alpaca WebClient initialized with up to {} pooled connections", config.getMaxConnections());
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .exchangeStrategies(ExchangeStrategies.builder()
+                        .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_RESPONSE_BYTES))
+                        .build())
+                .defaultHeader("APCA-API-KEY-ID", config.getApiKey())
+                .defaultHeader("APCA-API-SECRET-KEY", config.getApiSecret())
+                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+}
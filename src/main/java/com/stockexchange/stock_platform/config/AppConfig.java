@@ -1,5 +1,7 @@
 package com.stockexchange.stock_platform.config;
 
+import com.stockexchange.stock_platform.engine.BarAggregator;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -7,13 +9,23 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 @EnableScheduling
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder builder, AlpacaConfig alpacaConfig) {
+        return builder
+                .connectTimeout(Duration.ofMillis(alpacaConfig.getConnectTimeoutMs()))
+                .readTimeout(Duration.ofMillis(alpacaConfig.getResponseTimeoutMs()))
+                .build();
+    }
+
+    @Bean
+    public BarAggregator barAggregator() {
+        return new BarAggregator();
     }
 
     @Bean
@@ -0,0 +1,19 @@
+package com.stockexchange.stock_platform.config;
+
+import com.stockexchange.stock_platform.util.ObserverDispatcher;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Mailbox settings for asynchronous price observers
+ */
+@Configuration
+@ConfigurationProperties(prefix = "observers.dispatch")
+@Getter
+@Setter
+public class ObserverDispatchConfig {
+    private int capacity = 1024;
+    private ObserverDispatcher.BackpressurePolicy policy = ObserverDispatcher.BackpressurePolicy.CONFLATE_BY_KEY;
+}
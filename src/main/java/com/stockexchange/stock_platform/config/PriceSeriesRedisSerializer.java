@@ -0,0 +1,373 @@
+package com.stockexchange.stock_platform.config;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.engine.FixedPoint;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar binary encoding for cached price series ({@code List<StockPriceDto>}).
+ * <p>
+ * Symbols and time zones are written once per series. Every numeric field is a column of
+ * zig-zag varint deltas from the previous element: times in epoch milliseconds, prices in
+ * {@link FixedPoint} (four decimals, like the price columns), volumes as whole numbers.
+ * Large series are deflated when that makes them smaller. A 5y series ends up a small
+ * fraction of its JSON size, and decoding it needs no parsing.
+ * <p>
+ * Anything that isn't a price series, and entries written as JSON before this serializer
+ * was in place, go through the fallback serializer.
+ */
+public class PriceSeriesRedisSerializer implements RedisSerializer<Object> {
+
+    // JSON starts with '{', '[' or '"', so this byte can't be mistaken for it
+    private static final byte MAGIC = (byte) 0xB5;
+    private static final byte VERSION = 1;
+    private static final int FLAG_DEFLATED = 1;
+    private static final int DEFLATE_THRESHOLD = 1024;
+
+    // How a column records which elements have a value
+    private static final int NONE_PRESENT = 0;
+    private static final int ALL_PRESENT = 1;
+    private static final int SOME_PRESENT = 2;
+
+    private static final List<Function<StockPriceDto, BigDecimal>> PRICE_COLUMNS = List.of(
+            StockPriceDto::getOpen, StockPriceDto::getHigh, StockPriceDto::getLow, StockPriceDto::getPrice,
+            StockPriceDto::getChange, StockPriceDto::getChangePercent, StockPriceDto::getBid, StockPriceDto::getAsk);
+
+    private final RedisSerializer<Object> fallback;
+
+    public PriceSeriesRedisSerializer(RedisSerializer<Object> fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (!(value instanceof List<?> list) || list.isEmpty()
+                || !list.stream().allMatch(StockPriceDto.class::isInstance)) {
+            return fallback.serialize(value);
+        }
+
+        @SuppressWarnings("unchecked")
+        byte[] body = encode((List<StockPriceDto>) list);
+        int flags = 0;
+        if (body.length >= DEFLATE_THRESHOLD) {
+            byte[] deflated = deflate(body);
+            if (deflated.length < body.length) {
+                body = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+
+        byte[] bytes = new byte[body.length + 3];
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        bytes[2] = (byte) flags;
+        System.arraycopy(body, 0, bytes, 3, body.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0 || bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < 3 || bytes[1] != VERSION) {
+            throw new SerializationException("Unsupported price series encoding");
+        }
+
+        byte[] body = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 3, body, 0, body.length);
+        if ((bytes[2] & FLAG_DEFLATED) != 0) {
+            body = inflate(body);
+        }
+        return decode(new Reader(body));
+    }
+
+    private static byte[] encode(List<StockPriceDto> prices) {
+        Writer out = new Writer();
+        int count = prices.size();
+        out.writeVarint(count);
+
+        // Symbol and zone tables, then an index into them per element
+        Map<String, Integer> symbols = new LinkedHashMap<>();
+        Map<String, Integer> zones = new LinkedHashMap<>();
+        int[] symbolIndex = new int[count];
+        int[] zonedIndex = new int[count];
+        int[] sourceIndex = new int[count];
+        for (int i = 0; i < count; i++) {
+            StockPriceDto price = prices.get(i);
+            symbolIndex[i] = indexOf(symbols, price.getSymbol());
+            zonedIndex[i] = indexOf(zones, price.getZonedTimestamp() != null ? price.getZonedTimestamp().getZone().getId() : null);
+            sourceIndex[i] = indexOf(zones, price.getSourceTimezone() != null ? price.getSourceTimezone().getId() : null);
+        }
+        out.writeTable(symbols);
+        out.writeTable(zones);
+        for (int i = 0; i < count; i++) {
+            out.writeVarint(symbolIndex[i]);
+            out.writeVarint(zonedIndex[i]);
+            out.writeVarint(sourceIndex[i]);
+        }
+
+        out.writeColumn(prices, price -> price.getZonedTimestamp() != null
+                ? price.getZonedTimestamp().toInstant().toEpochMilli() : null);
+        out.writeColumn(prices, price -> price.getTimestamp() != null
+                ? price.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli() : null);
+        for (Function<StockPriceDto, BigDecimal> column : PRICE_COLUMNS) {
+            out.writeColumn(prices, price -> column.apply(price) != null ? FixedPoint.of(column.apply(price)) : null);
+        }
+        out.writeColumn(prices, StockPriceDto::getVolume);
+        return out.toByteArray();
+    }
+
+    private static List<StockPriceDto> decode(Reader in) {
+        int count = in.readVarint();
+        List<String> symbols = in.readTable();
+        List<String> zoneIds = in.readTable();
+        List<ZoneId> zones = new ArrayList<>(zoneIds.size());
+        for (String id : zoneIds) {
+            zones.add(id != null ? ZoneId.of(id) : null);
+        }
+
+        List<StockPriceDto> prices = new ArrayList<>(count);
+        int[] zonedIndex = new int[count];
+        for (int i = 0; i < count; i++) {
+            StockPriceDto price = new StockPriceDto();
+            price.setSymbol(symbols.get(in.readVarint()));
+            zonedIndex[i] = in.readVarint();
+            price.setSourceTimezone(zones.get(in.readVarint()));
+            prices.add(price);
+        }
+
+        Long[] instants = in.readColumn(count);
+        Long[] timestamps = in.readColumn(count);
+        Long[][] priceColumns = new Long[PRICE_COLUMNS.size()][];
+        for (int column = 0; column < priceColumns.length; column++) {
+            priceColumns[column] = in.readColumn(count);
+        }
+        Long[] volumes = in.readColumn(count);
+
+        for (int i = 0; i < count; i++) {
+            StockPriceDto price = prices.get(i);
+            ZoneId zone = zones.get(zonedIndex[i]);
+            if (instants[i] != null && zone != null) {
+                price.setZonedTimestamp(ZonedDateTime.ofInstant(Instant.ofEpochMilli(instants[i]), zone));
+            }
+            if (timestamps[i] != null) {
+                price.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[i]), ZoneOffset.UTC));
+            }
+            price.setOpen(toBigDecimal(priceColumns[0][i]));
+            price.setHigh(toBigDecimal(priceColumns[1][i]));
+            price.setLow(toBigDecimal(priceColumns[2][i]));
+            price.setPrice(toBigDecimal(priceColumns[3][i]));
+            price.setChange(toBigDecimal(priceColumns[4][i]));
+            price.setChangePercent(toBigDecimal(priceColumns[5][i]));
+            price.setBid(toBigDecimal(priceColumns[6][i]));
+            price.setAsk(toBigDecimal(priceColumns[7][i]));
+            price.setVolume(volumes[i]);
+        }
+        return prices;
+    }
+
+    private static int indexOf(Map<String, Integer> table, String value) {
+        return table.computeIfAbsent(value, v -> table.size());
+    }
+
+    private static BigDecimal toBigDecimal(Long value) {
+        return value != null ? FixedPoint.toBigDecimal(value) : null;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new SerializationException("Truncated price series");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt price series", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeTable(Map<String, Integer> table) {
+            writeVarint(table.size());
+            for (String value : table.keySet()) {
+                if (value == null) {
+                    writeVarint(0);
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(bytes.length + 1L);
+                    writeBytes(bytes);
+                }
+            }
+        }
+
+        void writeColumn(List<StockPriceDto> prices, Function<StockPriceDto, Long> field) {
+            int count = prices.size();
+            Long[] values = new Long[count];
+            int present = 0;
+            for (int i = 0; i < count; i++) {
+                values[i] = field.apply(prices.get(i));
+                if (values[i] != null) {
+                    present++;
+                }
+            }
+
+            if (present == 0) {
+                write(NONE_PRESENT);
+                return;
+            }
+            if (present == count) {
+                write(ALL_PRESENT);
+            } else {
+                write(SOME_PRESENT);
+                byte[] bitmap = new byte[(count + 7) / 8];
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        bitmap[i >> 3] |= (byte) (1 << (i & 7));
+                    }
+                }
+                writeBytes(bitmap);
+            }
+
+            long previous = 0;
+            for (Long value : values) {
+                if (value != null) {
+                    writeZigZag(value - previous);
+                    previous = value;
+                }
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new SerializationException("Truncated price series");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in price series");
+        }
+
+        int readVarint() {
+            return Math.toIntExact(readVarLong());
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        List<String> readTable() {
+            int size = readVarint();
+            List<String> table = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int length = readVarint();
+                if (length == 0) {
+                    table.add(null);
+                } else {
+                    table.add(new String(bytes, position, length - 1, StandardCharsets.UTF_8));
+                    position += length - 1;
+                }
+            }
+            return table;
+        }
+
+        Long[] readColumn(int count) {
+            Long[] values = new Long[count];
+            int mode = bytes[position++];
+            if (mode == NONE_PRESENT) {
+                return values;
+            }
+
+            boolean[] present = new boolean[count];
+            if (mode == ALL_PRESENT) {
+                Arrays.fill(present, true);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    present[i] = (bytes[position + (i >> 3)] & (1 << (i & 7))) != 0;
+                }
+                position += (count + 7) / 8;
+            }
+
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                if (present[i]) {
+                    previous += readZigZag();
+                    values[i] = previous;
+                }
+            }
+            return values;
+        }
+    }
+}
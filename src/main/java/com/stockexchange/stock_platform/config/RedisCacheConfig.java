@@ -7,7 +7,8 @@ import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.stockexchange.stock_platform.dto.StockPriceDto;
 
-import org.springframework.cache.CacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,6 +16,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
@@ -68,6 +72,15 @@ public class RedisCacheConfig {
         return new Jackson2JsonRedisSerializer<>(mapper, StockPriceDto.class);
     }
 
+    /**
+     * Compact binary encoding for the price series caches; reads entries written as JSON
+     * before it was introduced through listSerializer.
+     */
+    @Bean
+    public PriceSeriesRedisSerializer priceSeriesSerializer(GenericJackson2JsonRedisSerializer listSerializer) {
+        return new PriceSeriesRedisSerializer(listSerializer);
+    }
+
     /**
      * Build the default Redis cache configuration:
      *  - Don’t store nulls
@@ -90,23 +103,36 @@ public class RedisCacheConfig {
      * Assemble the CacheManager:
      * 1) .cacheDefaults(...) sets up the defaultConfig—including listSerializer
      * 2) .withInitialCacheConfigurations(...) lets us override TTLs and swap in
-     *    the dtoSerializer for the single-object cache.
+     *    the priceSeriesSerializer for the list caches and the dtoSerializer for
+     *    the single-object cache.
+     * 3) Every Redis cache is fronted by an in-JVM L1 (see TieredCacheManager)
      */
     @Bean
-    public CacheManager cacheManager(
+    public TieredCacheManager cacheManager(
             RedisConnectionFactory connectionFactory,
             RedisCacheConfiguration defaultCacheConfig,
-            Jackson2JsonRedisSerializer<StockPriceDto> dtoSerializer
+            Jackson2JsonRedisSerializer<StockPriceDto> dtoSerializer,
+            PriceSeriesRedisSerializer priceSeriesSerializer,
+            StringRedisTemplate redisTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${cache.local.maximumSize:1000}") long localMaximumSize,
+            @Value("${cache.local.maximumTtlSeconds:60}") long localMaximumTtlSeconds
     ) {
-        Map<String, RedisCacheConfiguration> configs = new HashMap<>();
+        // ─── List caches (all use priceSeriesSerializer, but each has its own TTL) ───
+        Map<String, Duration> seriesTtls = new HashMap<>();
+        seriesTtls.put("stockPrices_1d", Duration.ofMinutes(2));
+        seriesTtls.put("stockPrices_1w", Duration.ofMinutes(5));
+        seriesTtls.put("stockPrices_1m", Duration.ofMinutes(15));
+        seriesTtls.put("stockPrices_3m", Duration.ofMinutes(30));
+        seriesTtls.put("stockPrices_1y", Duration.ofHours(1));
+        seriesTtls.put("stockPrices_5y", Duration.ofHours(2));
+        Duration currentPricesTtl = Duration.ofSeconds(30);
 
-        // ─── List caches (all use listSerializer, but each has its own TTL) ─────────
-        configs.put("stockPrices_1d", defaultCacheConfig.entryTtl(Duration.ofMinutes(2)));
-        configs.put("stockPrices_1w", defaultCacheConfig.entryTtl(Duration.ofMinutes(5)));
-        configs.put("stockPrices_1m", defaultCacheConfig.entryTtl(Duration.ofMinutes(15)));
-        configs.put("stockPrices_3m", defaultCacheConfig.entryTtl(Duration.ofMinutes(30)));
-        configs.put("stockPrices_1y", defaultCacheConfig.entryTtl(Duration.ofHours(1)));
-        configs.put("stockPrices_5y", defaultCacheConfig.entryTtl(Duration.ofHours(2)));
+        RedisCacheConfiguration seriesConfig = defaultCacheConfig
+                .serializeValuesWith(RedisSerializationContext.SerializationPair
+                        .fromSerializer(priceSeriesSerializer));
+        Map<String, RedisCacheConfiguration> configs = new HashMap<>();
+        seriesTtls.forEach((name, ttl) -> configs.put(name, seriesConfig.entryTtl(ttl)));
 
         // ─── Single-object cache (currentPrices) ─────────────────────────────────────
         // override the value-serializer to use dtoSerializer (plain JSON), TTL=30s
@@ -114,16 +140,36 @@ public class RedisCacheConfig {
                 // now Java StockPriceDto → bytes via dtoSerializer.serialize(...)
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
                         .fromSerializer(dtoSerializer))
-                .entryTtl(Duration.ofSeconds(30));
+                .entryTtl(currentPricesTtl);
         configs.put("currentPrices", singleDtoConfig);
 
+        // L1 entries never outlive their Redis TTL
+        Map<String, Duration> ttls = new HashMap<>(seriesTtls);
+        ttls.put("currentPrices", currentPricesTtl);
+
         // Build the manager:
         //  - cacheDefaults() applies defaultCacheConfig to any cache not in 'configs'
         //  - withInitialCacheConfigurations(configs) applies our per-cache overrides
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultCacheConfig)       // JSON for everything by default
-                .withInitialCacheConfigurations(configs) // TTLs + override serializer for currentPrices
+                .withInitialCacheConfigurations(configs) // TTLs + binary series + JSON for currentPrices
                 .transactionAware()
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TieredCacheManager(redisCacheManager, redisTemplate, ttls,
+                localMaximumSize, Duration.ofSeconds(localMaximumTtlSeconds), meterRegistry);
+    }
+
+    /**
+     * Delivers L1 invalidations published by other nodes
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                   TieredCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(TieredCacheManager.INVALIDATION_CHANNEL));
+        return container;
     }
 }
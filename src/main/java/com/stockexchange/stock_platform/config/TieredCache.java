@@ -0,0 +1,155 @@
+package com.stockexchange.stock_platform.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+
+/**
+ * A cache with an in-JVM first level in front of a shared (Redis) second level.
+ * Reads try L1, then L2, and keep what L2 returns in L1. Writes and evictions go to both,
+ * and are announced through {@code invalidations} so other nodes drop their L1 copies.
+ * <p>
+ * L1 values are shared by every caller, so lists are kept unmodifiable.
+ */
+public class TieredCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+    private final Cache remote;
+    private final BiConsumer<String, Object> invalidations;
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Timer localLatency;
+    private final Timer remoteLatency;
+
+    /**
+     * @param invalidations called with the cache name and the evicted key, or null for a clear
+     */
+    public TieredCache(String name,
+                       com.github.benmanes.caffeine.cache.Cache<Object, Object> local,
+                       Cache remote,
+                       BiConsumer<String, Object> invalidations,
+                       MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidations = invalidations;
+
+        this.localHits = meterRegistry.counter("cache.tier.gets", "cache", name, "level", "l1", "result", "hit");
+        this.localMisses = meterRegistry.counter("cache.tier.gets", "cache", name, "level", "l1", "result", "miss");
+        this.remoteHits = meterRegistry.counter("cache.tier.gets", "cache", name, "level", "l2", "result", "hit");
+        this.remoteMisses = meterRegistry.counter("cache.tier.gets", "cache", name, "level", "l2", "result", "miss");
+        this.localLatency = meterRegistry.timer("cache.tier.latency", "cache", name, "level", "l1");
+        this.remoteLatency = meterRegistry.timer("cache.tier.latency", "cache", name, "level", "l2");
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    @NonNull
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(@NonNull Object key) {
+        Object value = localLatency.record(() -> local.getIfPresent(key));
+        if (value != null) {
+            localHits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        localMisses.increment();
+
+        ValueWrapper wrapper = remoteLatency.record(() -> remote.get(key));
+        if (wrapper == null || wrapper.get() == null) {
+            remoteMisses.increment();
+            return wrapper;
+        }
+        remoteHits.increment();
+
+        Object shared = shareable(wrapper.get());
+        local.put(key, shared);
+        return new SimpleValueWrapper(shared);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(@NonNull Object key, Object value) {
+        remote.put(key, value);
+        if (value != null) {
+            local.put(key, shareable(value));
+        }
+        invalidations.accept(name, key);
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        remote.evict(key);
+        local.invalidate(key);
+        invalidations.accept(name, key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidations.accept(name, null);
+    }
+
+    /**
+     * Drop an L1 entry after another node changed it; null drops them all
+     */
+    void invalidateLocal(Object key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    private static Object shareable(Object value) {
+        return value instanceof List<?> list ? List.copyOf(list) : value;
+    }
+}
@@ -0,0 +1,114 @@
+package com.stockexchange.stock_platform.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps every cache of a Redis-backed {@link CacheManager} in a {@link TieredCache}.
+ * Each node keeps a bounded Caffeine L1 per cache; an L1 entry never outlives the cache's
+ * Redis TTL. Changes are published on a Redis channel, and this manager listens on the same
+ * channel to drop the L1 entries other nodes changed.
+ */
+@Slf4j
+public class TieredCacheManager implements CacheManager, MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "cache:invalidations";
+
+    private final CacheManager remote;
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, Duration> ttls;
+    private final long localMaximumSize;
+    private final Duration localMaximumTtl;
+    private final MeterRegistry meterRegistry;
+
+    // Tells our own invalidation messages apart from other nodes'
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TieredCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttls Redis TTL per cache name; caches not listed keep L1 entries for localMaximumTtl
+     */
+    public TieredCacheManager(CacheManager remote,
+                              StringRedisTemplate redisTemplate,
+                              Map<String, Duration> ttls,
+                              long localMaximumSize,
+                              Duration localMaximumTtl,
+                              MeterRegistry meterRegistry) {
+        this.remote = remote;
+        this.redisTemplate = redisTemplate;
+        this.ttls = ttls;
+        this.localMaximumSize = localMaximumSize;
+        this.localMaximumTtl = localMaximumTtl;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(@NonNull String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    @NonNull
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * Invalidation from any node, as "nodeId\ncacheName\nkey" or "nodeId\ncacheName" for a clear
+     */
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        TieredCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateLocal(parts.length == 3 ? parts[2] : null);
+        }
+    }
+
+    private TieredCache createCache(String name) {
+        Cache remoteCache = remote.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+
+        Duration ttl = ttls.getOrDefault(name, localMaximumTtl);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(ttl.compareTo(localMaximumTtl) < 0 ? ttl : localMaximumTtl)
+                .build();
+        Gauge.builder("cache.tier.size", local, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .tags("cache", name, "level", "l1")
+                .register(meterRegistry);
+
+        return new TieredCache(name, local, remoteCache, this::publishInvalidation, meterRegistry);
+    }
+
+    private void publishInvalidation(String cacheName, Object key) {
+        String message = nodeId + "\n" + cacheName + (key != null ? "\n" + key : "");
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (RuntimeException e) {
+            // Other nodes' L1 entries still expire with their TTL
+            log.warn("Failed to publish cache invalidation for {}: {}", cacheName, e.getMessage());
+        }
+    }
+}
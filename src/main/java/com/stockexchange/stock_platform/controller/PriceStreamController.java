@@ -0,0 +1,54 @@
+package com.stockexchange.stock_platform.controller;
+
+import com.stockexchange.stock_platform.service.impl.PriceFanOut;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * STOMP side of the price stream. A client sends its symbols to /app/prices/watch and then
+ * receives one batched frame per interval on /user/queue/prices. Subscribers to a symbol's
+ * delta destination get a full frame first, so they have something to apply deltas to.
+ */
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+public class PriceStreamController {
+
+    private static final Pattern DELTA_DESTINATION = Pattern.compile("/topic/prices/([^/]+)/delta");
+
+    private final PriceFanOut priceFanOut;
+
+    @MessageMapping("/prices/watch")
+    public void watch(@Payload Set<String> symbols,
+                      @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        priceFanOut.watch(sessionId, symbols);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        String destination = SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders());
+        if (destination != null) {
+            Matcher delta = DELTA_DESTINATION.matcher(destination);
+            if (delta.matches()) {
+                priceFanOut.deltaSubscribed(delta.group(1));
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        priceFanOut.unwatch(event.getSessionId());
+    }
+}
@@ -9,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -25,16 +26,16 @@ public class StockController {
     private final TimezoneService timezoneService;
 
     @GetMapping("/{symbol}/price")
-    public ResponseEntity<StockPriceDto> getCurrentPrice(
+    public Mono<ResponseEntity<StockPriceDto>> getCurrentPrice(
             @PathVariable String symbol,
             @RequestParam(required = false) String timezone) {
 
         log.info("Fetching current price for: {} (timezone: {})", symbol, timezone);
 
         ZoneId targetTimezone = timezoneService.parseTimezone(timezone);
-        StockPriceDto price = stockPriceService.getCurrentPrice(symbol, targetTimezone);
-
-        return ResponseEntity.ok(price);
+        // Served asynchronously, so the request thread is released while Alpaca answers
+        return stockPriceService.getCurrentPriceAsync(symbol, targetTimezone)
+                .map(ResponseEntity::ok);
     }
 
     @GetMapping("/{symbol}/historical")
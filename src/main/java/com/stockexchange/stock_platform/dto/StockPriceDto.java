@@ -38,6 +38,13 @@ public class StockPriceDto {
     @JsonFormat(shape = JsonFormat.Shape.NUMBER)
     private BigDecimal changePercent;
 
+    // Best bid and ask from the live quote stream, when available
+    @JsonFormat(shape = JsonFormat.Shape.NUMBER)
+    private BigDecimal bid;
+
+    @JsonFormat(shape = JsonFormat.Shape.NUMBER)
+    private BigDecimal ask;
+
     private LocalDateTime timestamp;
     private ZonedDateTime zonedTimestamp;
     private ZoneId sourceTimezone;
@@ -0,0 +1,94 @@
+package com.stockexchange.stock_platform.engine;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory cash and positions of a single account.
+ * Not thread-safe on purpose: an account is only ever touched by the execution shard that
+ * owns it, so balance and holding changes need no locks.
+ */
+public class AccountState {
+
+    @Getter
+    private final Long userId;
+
+    @Getter
+    private BigDecimal cashBalance;
+
+    private final Map<String, Position> positions = new HashMap<>();
+
+    public AccountState(Long userId, BigDecimal cashBalance) {
+        this.userId = userId;
+        this.cashBalance = cashBalance;
+    }
+
+    /**
+     * Seed a position loaded from the database
+     */
+    public void putPosition(String symbol, BigDecimal quantity, BigDecimal avgPrice) {
+        positions.put(symbol, new Position(quantity, avgPrice));
+    }
+
+    public Position getPosition(String symbol) {
+        return positions.get(symbol);
+    }
+
+    public boolean canBuy(BigDecimal totalAmount) {
+        return cashBalance.compareTo(totalAmount) >= 0;
+    }
+
+    public boolean canSell(String symbol, BigDecimal quantity) {
+        Position position = positions.get(symbol);
+        return position != null && position.quantity.compareTo(quantity) >= 0;
+    }
+
+    /**
+     * Deduct cash and add to the position, re-averaging its cost
+     * @return the updated position
+     */
+    public Position applyBuy(String symbol, BigDecimal quantity, BigDecimal price) {
+        BigDecimal totalAmount = quantity.multiply(price);
+        cashBalance = cashBalance.subtract(totalAmount);
+
+        Position position = positions.computeIfAbsent(symbol, k -> new Position(BigDecimal.ZERO, BigDecimal.ZERO));
+
+        // Calculate new average price
+        BigDecimal totalShares = position.quantity.add(quantity);
+        BigDecimal totalInvestment = position.quantity.multiply(position.avgPrice).add(totalAmount);
+        position.avgPrice = totalInvestment.divide(totalShares, 4, RoundingMode.HALF_UP);
+        position.quantity = totalShares;
+
+        return position;
+    }
+
+    /**
+     * Remove shares from the position and credit the proceeds
+     * @return the updated position; its quantity is zero once everything has been sold
+     */
+    public Position applySell(String symbol, BigDecimal quantity, BigDecimal price) {
+        Position position = positions.get(symbol);
+        position.quantity = position.quantity.subtract(quantity);
+        if (position.quantity.compareTo(BigDecimal.ZERO) == 0) {
+            positions.remove(symbol);
+        }
+
+        cashBalance = cashBalance.add(quantity.multiply(price));
+        return position;
+    }
+
+    @Getter
+    public static class Position {
+        private BigDecimal quantity;
+        private BigDecimal avgPrice;
+
+        private Position(BigDecimal quantity, BigDecimal avgPrice) {
+            this.quantity = quantity;
+            this.avgPrice = avgPrice;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.pattern.observer.TickObserver;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds OHLCV bars for every tracked symbol from the live minute-bar stream.
+ * Each symbol keeps a ring of recent bars at every retained {@link BarResolution}
+ * (1m, 5m, 30m, 1h and 1d); coarser resolutions are rolled up from those on demand.
+ * Rings can be seeded with fetched history, after which chart windows they cover are
+ * answered from memory.
+ */
+public class BarAggregator implements TickObserver {
+
+    private static final long MINUTE_MILLIS = BarResolution.MINUTE.approximateMillis();
+
+    private final Map<String, SymbolBars> symbols = new ConcurrentHashMap<>();
+
+    /**
+     * Fold a live minute bar into every retained resolution
+     */
+    @Override
+    public void onTick(Tick minuteBar) {
+        symbolBars(minuteBar.symbol()).add(minuteBar);
+    }
+
+    /**
+     * Load fetched bars covering fromMillis to toMillis into a retained resolution
+     */
+    public void seed(String symbol, BarResolution resolution, List<Tick> bars, long fromMillis, long toMillis) {
+        if (resolution.retained() == 0) {
+            throw new IllegalArgumentException(resolution + " bars are not retained");
+        }
+        symbolBars(symbol).seed(resolution, bars, fromMillis, toMillis);
+    }
+
+    /**
+     * Stop answering windows of a symbol from memory after the stream may have dropped bars,
+     * e.g. across a reconnect. Live bars from sinceMillis on and fresh seeds rebuild coverage.
+     */
+    public void invalidate(String symbol, long sinceMillis) {
+        SymbolBars bars = symbols.get(symbol.toUpperCase());
+        if (bars != null) {
+            bars.invalidate(sinceMillis);
+        }
+    }
+
+    /**
+     * Bars of a symbol whose buckets overlap the window, oldest first
+     * @return null when the bars held in memory don't cover the whole window
+     */
+    public List<Tick> bars(String symbol, BarResolution resolution, long fromMillis, long toMillis) {
+        SymbolBars bars = symbols.get(symbol.toUpperCase());
+        if (bars == null) {
+            return null;
+        }
+
+        List<Tick> source = bars.range(resolution.source(), fromMillis, toMillis);
+        if (source == null || resolution.retained() > 0) {
+            return source;
+        }
+        return rollup(source, resolution);
+    }
+
+    /**
+     * The bar of a retained resolution whose bucket contains the given time
+     * @return null unless every minute of that bucket so far has been received
+     */
+    public Tick bar(String symbol, BarResolution resolution, long epochMillis) {
+        long bucket = resolution.bucketStart(epochMillis);
+        List<Tick> bars = bars(symbol, resolution, bucket, epochMillis);
+        if (bars == null || bars.isEmpty() || bars.getLast().epochMillis() != bucket) {
+            return null;
+        }
+        return bars.getLast();
+    }
+
+    /**
+     * Roll bars up into a coarser resolution. The input must be in time order and belong
+     * to one symbol; each output bar is stamped with the start of its bucket.
+     */
+    public static List<Tick> rollup(List<Tick> bars, BarResolution resolution) {
+        List<Tick> rolled = new ArrayList<>();
+        if (bars.isEmpty()) {
+            return rolled;
+        }
+
+        Tick first = bars.getFirst();
+        long bucket = resolution.bucketStart(first.epochMillis());
+        long open = first.open();
+        long high = first.high();
+        long low = first.low();
+        long close = first.close();
+        long volume = first.volume();
+
+        for (int i = 1; i < bars.size(); i++) {
+            Tick bar = bars.get(i);
+            long barBucket = resolution.bucketStart(bar.epochMillis());
+            if (barBucket != bucket) {
+                rolled.add(new Tick(first.symbol(), open, high, low, close, volume, bucket));
+                bucket = barBucket;
+                open = bar.open();
+                high = bar.high();
+                low = bar.low();
+                volume = 0;
+            } else {
+                high = Math.max(high, bar.high());
+                low = Math.min(low, bar.low());
+            }
+            close = bar.close();
+            volume += bar.volume();
+        }
+        rolled.add(new Tick(first.symbol(), open, high, low, close, volume, bucket));
+        return rolled;
+    }
+
+    private SymbolBars symbolBars(String symbol) {
+        return symbols.computeIfAbsent(symbol.toUpperCase(), SymbolBars::new);
+    }
+
+    /**
+     * All retained series of one symbol; written by the stream thread, read by request threads
+     */
+    private static final class SymbolBars {
+        private final Map<BarResolution, BarSeries> series = new EnumMap<>(BarResolution.class);
+
+        SymbolBars(String symbol) {
+            for (BarResolution resolution : BarResolution.values()) {
+                if (resolution.retained() > 0) {
+                    series.put(resolution, new BarSeries(symbol, resolution));
+                }
+            }
+        }
+
+        synchronized void add(Tick minuteBar) {
+            for (BarSeries bars : series.values()) {
+                bars.add(minuteBar, MINUTE_MILLIS);
+            }
+        }
+
+        synchronized void seed(BarResolution resolution, List<Tick> bars, long fromMillis, long toMillis) {
+            series.get(resolution).seed(bars, fromMillis, toMillis);
+        }
+
+        synchronized void invalidate(long sinceMillis) {
+            for (BarSeries bars : series.values()) {
+                bars.invalidate(sinceMillis);
+            }
+        }
+
+        synchronized List<Tick> range(BarResolution resolution, long fromMillis, long toMillis) {
+            BarSeries bars = series.get(resolution);
+            if (!bars.covers(fromMillis, toMillis)) {
+                return null;
+            }
+            // Include the bucket the window starts in
+            return bars.range(resolution.bucketStart(fromMillis), toMillis);
+        }
+    }
+}
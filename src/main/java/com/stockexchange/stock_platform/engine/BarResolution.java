@@ -0,0 +1,97 @@
+package com.stockexchange.stock_platform.engine;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Bar sizes the {@link BarAggregator} understands.
+ * Intraday buckets are aligned to the epoch; days, weeks and months follow the New York
+ * trading calendar, like Alpaca's own daily bars. Resolutions with a retained capacity
+ * keep a ring of recent bars per symbol, the others are rolled up on demand from their
+ * source resolution.
+ */
+public enum BarResolution {
+    MINUTE("1Min", 60_000L, 1024, null),
+    FIVE_MINUTES("5Min", 300_000L, 1024, null),
+    FIFTEEN_MINUTES("15Min", 900_000L, 0, FIVE_MINUTES),
+    THIRTY_MINUTES("30Min", 1_800_000L, 512, null),
+    HOUR("1Hour", 3_600_000L, 2048, null),
+    TWO_HOURS("2Hour", 7_200_000L, 0, HOUR),
+    EIGHT_HOURS("8Hour", 28_800_000L, 0, HOUR),
+    TWELVE_HOURS("12Hour", 43_200_000L, 0, HOUR),
+    DAY("1Day", 86_400_000L, 2048, null),
+    WEEK("1Week", 7 * 86_400_000L, 0, DAY),
+    MONTH("1Month", 31 * 86_400_000L, 0, DAY);
+
+    private static final ZoneId NY = ZoneId.of("America/New_York");
+
+    private final String alpacaTimeframe;
+    private final long approximateMillis;
+    private final int retained;
+    private final BarResolution source;
+
+    BarResolution(String alpacaTimeframe, long approximateMillis, int retained, BarResolution source) {
+        this.alpacaTimeframe = alpacaTimeframe;
+        this.approximateMillis = approximateMillis;
+        this.retained = retained;
+        this.source = source;
+    }
+
+    /**
+     * @return the resolution for an Alpaca timeframe such as "5Min", or null if there is none
+     */
+    public static BarResolution fromAlpacaTimeframe(String timeframe) {
+        for (BarResolution resolution : values()) {
+            if (resolution.alpacaTimeframe.equalsIgnoreCase(timeframe)) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+
+    public String alpacaTimeframe() {
+        return alpacaTimeframe;
+    }
+
+    /**
+     * Bucket width; for calendar resolutions an upper bound
+     */
+    public long approximateMillis() {
+        return approximateMillis;
+    }
+
+    /**
+     * Number of bars kept per symbol, 0 for resolutions that are only rolled up
+     */
+    public int retained() {
+        return retained;
+    }
+
+    /**
+     * The retained resolution this one is rolled up from, or itself if it is retained
+     */
+    public BarResolution source() {
+        return source != null ? source : this;
+    }
+
+    /**
+     * Start of the bucket containing the given time, in epoch milliseconds
+     */
+    public long bucketStart(long epochMillis) {
+        return switch (this) {
+            case DAY, WEEK, MONTH -> {
+                LocalDate date = Instant.ofEpochMilli(epochMillis).atZone(NY).toLocalDate();
+                if (this == WEEK) {
+                    date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                } else if (this == MONTH) {
+                    date = date.withDayOfMonth(1);
+                }
+                yield date.atStartOfDay(NY).toInstant().toEpochMilli();
+            }
+            default -> Math.floorDiv(epochMillis, approximateMillis) * approximateMillis;
+        };
+    }
+}
@@ -0,0 +1,157 @@
+package com.stockexchange.stock_platform.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring buffer of the most recent bars of one symbol at one resolution, stored as parallel
+ * arrays of {@link FixedPoint} longs. Also tracks the time span it holds every bar for, so
+ * callers can tell whether a window can be answered from memory.
+ * <p>
+ * Not thread-safe; guarded by the owning {@link BarAggregator}.
+ */
+final class BarSeries {
+
+    private final String symbol;
+    private final BarResolution resolution;
+    private final int capacity;
+
+    private final long[] start;
+    private final long[] open;
+    private final long[] high;
+    private final long[] low;
+    private final long[] close;
+    private final long[] volume;
+    private int head;
+    private int size;
+    private long evictions;
+
+    // Span with no missing bars, empty until the first seed or live bar
+    private long coveredFrom = Long.MAX_VALUE;
+    private long coveredTo = Long.MIN_VALUE;
+    // Live bars older than this may sit before a gap in the stream, so they don't extend coverage
+    private long resumeFrom = Long.MIN_VALUE;
+
+    BarSeries(String symbol, BarResolution resolution) {
+        this.symbol = symbol;
+        this.resolution = resolution;
+        this.capacity = resolution.retained();
+        this.start = new long[capacity];
+        this.open = new long[capacity];
+        this.high = new long[capacity];
+        this.low = new long[capacity];
+        this.close = new long[capacity];
+        this.volume = new long[capacity];
+    }
+
+    /**
+     * Merge a live bar of this or a finer resolution into its bucket
+     */
+    void add(Tick bar, long barMillis) {
+        append(bar);
+        if (bar.epochMillis() < resumeFrom) {
+            return;
+        }
+        if (coveredTo == Long.MIN_VALUE) {
+            coveredFrom = bar.epochMillis();
+        }
+        // Live bars arrive without gaps while the stream stays up; invalidate() marks where it didn't
+        coveredTo = Math.max(coveredTo, bar.epochMillis() + barMillis);
+    }
+
+    /**
+     * Forget the covered span after bars may have been missed, e.g. across a reconnect.
+     * Held bars are kept, but only a seed or live bars from sinceMillis on cover anything again.
+     */
+    void invalidate(long sinceMillis) {
+        coveredFrom = Long.MAX_VALUE;
+        coveredTo = Long.MIN_VALUE;
+        resumeFrom = sinceMillis;
+    }
+
+    /**
+     * Replace the bars between fromMillis and toMillis with the given ones, e.g. fetched
+     * history. Bars held outside that span are kept if they are contiguous with it.
+     */
+    void seed(List<Tick> bars, long fromMillis, long toMillis) {
+        long firstBucket = resolution.bucketStart(fromMillis);
+        long lastBucket = bars.isEmpty() ? firstBucket : resolution.bucketStart(bars.getLast().epochMillis());
+        boolean contiguous = coveredTo != Long.MIN_VALUE && coveredFrom <= toMillis && fromMillis <= coveredTo;
+
+        List<Tick> before = contiguous ? range(Long.MIN_VALUE, firstBucket - 1) : List.of();
+        List<Tick> after = range(lastBucket + 1, Long.MAX_VALUE);
+
+        long evictionsBefore = evictions;
+        head = 0;
+        size = 0;
+        before.forEach(this::append);
+        bars.forEach(this::append);
+        after.forEach(this::append);
+
+        coveredFrom = contiguous ? Math.min(coveredFrom, fromMillis) : fromMillis;
+        coveredTo = Math.max(contiguous ? coveredTo : Long.MIN_VALUE, toMillis);
+        if (evictions != evictionsBefore) {
+            // More history than fits; only the retained part is covered
+            coveredFrom = Math.max(coveredFrom, start[head]);
+        }
+    }
+
+    /**
+     * Whether every bar between the two times is held. The end may be up to one bucket
+     * beyond what has been received, since the current bucket is still open.
+     */
+    boolean covers(long fromMillis, long toMillis) {
+        return coveredFrom <= fromMillis && coveredTo >= toMillis - resolution.approximateMillis();
+    }
+
+    /**
+     * Bars whose bucket starts between the two times, inclusive, oldest first
+     */
+    List<Tick> range(long fromMillis, long toMillis) {
+        List<Tick> bars = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % capacity;
+            if (start[index] >= fromMillis && start[index] <= toMillis) {
+                bars.add(new Tick(symbol, open[index], high[index], low[index], close[index],
+                        volume[index], start[index]));
+            }
+        }
+        return bars;
+    }
+
+    private void append(Tick bar) {
+        long bucket = resolution.bucketStart(bar.epochMillis());
+
+        if (size > 0) {
+            int last = (head + size - 1) % capacity;
+            if (bucket == start[last]) {
+                high[last] = Math.max(high[last], bar.high());
+                low[last] = Math.min(low[last], bar.low());
+                close[last] = bar.close();
+                volume[last] += bar.volume();
+                return;
+            }
+            if (bucket < start[last]) {
+                // Late bar for a bucket already closed; history is corrected by the next seed
+                return;
+            }
+        }
+
+        int index;
+        if (size < capacity) {
+            index = (head + size) % capacity;
+            size++;
+        } else {
+            index = head;
+            head = (head + 1) % capacity;
+            evictions++;
+            coveredFrom = Math.max(coveredFrom, start[head]);
+        }
+        start[index] = bucket;
+        open[index] = bar.open();
+        high[index] = bar.high();
+        low[index] = bar.low();
+        close[index] = bar.close();
+        volume[index] = bar.volume();
+    }
+}
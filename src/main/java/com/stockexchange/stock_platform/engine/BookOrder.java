@@ -0,0 +1,22 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Lightweight, immutable view of a pending limit order as it sits in an {@link OrderBook}.
+ * Only carries what matching needs, so no JPA entity is kept alive in memory.
+ */
+@Getter
+@AllArgsConstructor
+public class BookOrder {
+    private final Long orderId;
+    private final Long userId;
+    private final String symbol;
+    private final OrderSide side;
+    private final BigDecimal price;
+    private final BigDecimal quantity;
+}
@@ -0,0 +1,22 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * An order handed to the execution pipeline, detached from any persistence context
+ * so it can safely cross threads.
+ */
+@Getter
+@AllArgsConstructor
+public class ExecutionRequest {
+    private final Long orderId;
+    private final Long userId;
+    private final String symbol;
+    private final OrderSide side;
+    private final BigDecimal quantity;
+    private final BigDecimal price;
+}
@@ -0,0 +1,97 @@
+package com.stockexchange.stock_platform.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Prices as plain longs with four implied decimals (price x 10^4), matching the
+ * DECIMAL(19,4) price columns. Used on the tick path so a price costs no allocation;
+ * convert to BigDecimal only where a price leaves the engine.
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 4;
+    public static final long ONE = 10_000L;
+
+    private FixedPoint() {
+    }
+
+    public static long of(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static long of(double value) {
+        return Math.round(value * ONE);
+    }
+
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    /**
+     * Parse a decimal number such as "187.3250" or "-0.5".
+     * Digits beyond the fourth decimal are rounded half up.
+     */
+    public static long parse(CharSequence text) {
+        String string = text.toString();
+        return parse(string.toCharArray(), 0, string.length());
+    }
+
+    /**
+     * Parse a decimal number straight from a character buffer, e.g. a JSON parser's
+     * text buffer, without creating any objects. Exponent notation, which market data
+     * feeds don't normally use, falls back to BigDecimal.
+     */
+    public static long parse(char[] buffer, int offset, int length) {
+        if (length == 0) {
+            throw new NumberFormatException("Empty price");
+        }
+
+        int i = offset;
+        int end = offset + length;
+        boolean negative = false;
+        char first = buffer[i];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+
+        long value = 0;
+        int decimals = -1;
+        boolean roundUp = false;
+        boolean anyDigit = false;
+        for (; i < end; i++) {
+            char c = buffer[i];
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (decimals < SCALE) {
+                    value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (decimals == SCALE) {
+                    // First dropped digit decides the rounding, the rest are ignored
+                    roundUp = c >= '5';
+                    decimals++;
+                }
+            } else if (c == 'e' || c == 'E') {
+                return of(new BigDecimal(buffer, offset, length));
+            } else {
+                throw new NumberFormatException("Invalid price: " + new String(buffer, offset, length));
+            }
+        }
+        if (!anyDigit) {
+            throw new NumberFormatException("Invalid price: " + new String(buffer, offset, length));
+        }
+
+        for (int scale = Math.max(decimals, 0); scale < SCALE; scale++) {
+            value = Math.multiplyExact(value, 10);
+        }
+        if (roundUp) {
+            value++;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,147 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Buying power and sellable shares of one account: committed cash and shares, less what
+ * open orders have reserved. Orders are accepted only if they can reserve what they need,
+ * so open orders can never oversubscribe the same cash or shares.
+ * <p>
+ * Placement, cancellation and fills happen on different threads; every method is
+ * synchronized on the account, which is cheap since nothing here does I/O.
+ */
+public class LedgerAccount {
+
+    private final Long userId;
+    private BigDecimal cashBalance;
+    private BigDecimal reservedCash = BigDecimal.ZERO;
+    private final Map<String, BigDecimal> shares = new HashMap<>();
+    private final Map<String, BigDecimal> reservedShares = new HashMap<>();
+
+    // What each open order holds, so releasing twice (e.g. cancel racing a fill) is harmless
+    private final Map<Long, Reservation> reservations = new HashMap<>();
+
+    public LedgerAccount(Long userId, BigDecimal cashBalance) {
+        this.userId = userId;
+        this.cashBalance = cashBalance;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * Seed shares loaded from the database
+     */
+    public synchronized void putShares(String symbol, BigDecimal quantity) {
+        shares.put(symbol, quantity);
+    }
+
+    public synchronized BigDecimal getAvailableCash() {
+        return cashBalance.subtract(reservedCash);
+    }
+
+    public synchronized BigDecimal getAvailableShares(String symbol) {
+        return shares.getOrDefault(symbol, BigDecimal.ZERO)
+                .subtract(reservedShares.getOrDefault(symbol, BigDecimal.ZERO));
+    }
+
+    /**
+     * Reserve the cash a buy needs, or the shares a sell needs, if they are available
+     * @return the reservation, to be tracked under the order's ID once it has one; null if
+     * the account can't cover the order
+     */
+    public synchronized Reservation reserve(OrderSide side, String symbol, BigDecimal quantity, BigDecimal price) {
+        Reservation reservation = new Reservation(side, symbol, quantity, quantity.multiply(price));
+        boolean covered = side == OrderSide.BUY
+                ? getAvailableCash().compareTo(reservation.amount()) >= 0
+                : getAvailableShares(symbol).compareTo(quantity) >= 0;
+        if (!covered) {
+            return null;
+        }
+        hold(reservation);
+        return reservation;
+    }
+
+    /**
+     * Track a reservation under the order it was made for
+     */
+    public synchronized void track(Long orderId, Reservation reservation) {
+        reservations.put(orderId, reservation);
+    }
+
+    /**
+     * Re-reserve for an order that was already open, e.g. when rebuilding from the database.
+     * Never refused, since the order was accepted before.
+     */
+    public synchronized void restore(Long orderId, OrderSide side, String symbol, BigDecimal quantity, BigDecimal price) {
+        Reservation reservation = new Reservation(side, symbol, quantity, quantity.multiply(price));
+        hold(reservation);
+        reservations.put(orderId, reservation);
+    }
+
+    /**
+     * Give back a reservation that was never tracked, e.g. when saving its order failed
+     */
+    public synchronized void release(Reservation reservation) {
+        unhold(reservation);
+    }
+
+    /**
+     * Give back what an order reserved, when it is canceled or fails
+     * @return false if the order held nothing (anymore)
+     */
+    public synchronized boolean release(Long orderId) {
+        Reservation reservation = reservations.remove(orderId);
+        if (reservation == null) {
+            return false;
+        }
+        unhold(reservation);
+        return true;
+    }
+
+    /**
+     * Release a filled order's reservation and take on the committed cash and share count
+     * the fill left behind, in one step so the buying power never shows the fill twice
+     */
+    public synchronized void settle(Long orderId, BigDecimal cashBalance, String symbol, BigDecimal sharesHeld) {
+        release(orderId);
+        this.cashBalance = cashBalance;
+        if (sharesHeld.signum() == 0) {
+            shares.remove(symbol);
+        } else {
+            shares.put(symbol, sharesHeld);
+        }
+    }
+
+    private void hold(Reservation reservation) {
+        if (reservation.side() == OrderSide.BUY) {
+            reservedCash = reservedCash.add(reservation.amount());
+        } else {
+            reservedShares.merge(reservation.symbol(), reservation.quantity(), BigDecimal::add);
+        }
+    }
+
+    private void unhold(Reservation reservation) {
+        if (reservation.side() == OrderSide.BUY) {
+            reservedCash = reservedCash.subtract(reservation.amount());
+        } else {
+            BigDecimal left = reservedShares.get(reservation.symbol()).subtract(reservation.quantity());
+            if (left.signum() == 0) {
+                reservedShares.remove(reservation.symbol());
+            } else {
+                reservedShares.put(reservation.symbol(), left);
+            }
+        }
+    }
+
+    /**
+     * Cash (buys) or shares (sells) held for an open order
+     */
+    public record Reservation(OrderSide side, String symbol, BigDecimal quantity, BigDecimal amount) {
+    }
+}
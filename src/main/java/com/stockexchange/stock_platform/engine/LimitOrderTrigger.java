@@ -0,0 +1,75 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.pattern.observer.TickObserver;
+import com.stockexchange.stock_platform.pattern.observer.TopOfBookObserver;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Observer that decides whether a bar or a trade can fill any resting limit order.
+ * Keeps the highest pending buy limit and the lowest pending sell limit per symbol, so a
+ * tick that crosses neither is dismissed in constant time without locking a book or
+ * touching the database. Only crossing ticks are handed on for matching.
+ */
+public class LimitOrderTrigger implements TickObserver, TopOfBookObserver {
+
+    private final Map<String, Thresholds> thresholds = new ConcurrentHashMap<>();
+    private final ObjLongConsumer<String> onCrossed;
+
+    /**
+     * @param onCrossed called with (symbol, fixed-point price) when a price crosses a threshold
+     */
+    public LimitOrderTrigger(ObjLongConsumer<String> onCrossed) {
+        this.onCrossed = onCrossed;
+    }
+
+    /**
+     * Publish the current best limits of a symbol's book
+     * @param highestBuyLimit highest pending buy limit, or null if there are no buy orders
+     * @param lowestSellLimit lowest pending sell limit, or null if there are no sell orders
+     */
+    public void updateThresholds(String symbol, BigDecimal highestBuyLimit, BigDecimal lowestSellLimit) {
+        if (highestBuyLimit == null && lowestSellLimit == null) {
+            thresholds.remove(symbol);
+        } else {
+            // Missing sides get a limit no price can ever cross
+            thresholds.put(symbol, new Thresholds(
+                    highestBuyLimit != null ? FixedPoint.of(highestBuyLimit) : Long.MIN_VALUE,
+                    lowestSellLimit != null ? FixedPoint.of(lowestSellLimit) : Long.MAX_VALUE));
+        }
+    }
+
+    @Override
+    public void onTick(Tick tick) {
+        check(tick.symbol(), tick.close());
+    }
+
+    /**
+     * Trades are fresher than minute bars, so the last trade is checked as soon as it arrives
+     */
+    @Override
+    public void onTopOfBook(TopOfBook.Snapshot topOfBook) {
+        if (topOfBook.hasTrade()) {
+            check(topOfBook.symbol(), topOfBook.lastPrice());
+        }
+    }
+
+    private void check(String symbol, long price) {
+        Thresholds current = thresholds.get(symbol);
+        if (current == null || !current.isCrossedBy(price)) {
+            return;
+        }
+
+        onCrossed.accept(symbol, price);
+    }
+
+    private record Thresholds(long highestBuyLimit, long lowestSellLimit) {
+        boolean isCrossedBy(long price) {
+            // Buys fill at or below their limit, sells at or above theirs
+            return price <= highestBuyLimit || price >= lowestSellLimit;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * In-memory limit order book for a single symbol.
+ * Bids are kept highest price first and asks lowest price first; orders resting at the
+ * same price level are kept in arrival order (price-time priority).
+ * Matching only touches the levels that are actually crossed by the last traded price,
+ * so its cost does not grow with the number of resting orders.
+ */
+public class OrderBook {
+
+    @Getter
+    private final String symbol;
+
+    // Buy orders fill when the price drops to or below their limit -> best (highest) bid first
+    private final NavigableMap<BigDecimal, Deque<BookOrder>> bids = new TreeMap<>(Comparator.reverseOrder());
+
+    // Sell orders fill when the price rises to or above their limit -> best (lowest) ask first
+    private final NavigableMap<BigDecimal, Deque<BookOrder>> asks = new TreeMap<>();
+
+    // Index for O(1) lookup on cancel
+    private final Map<Long, BookOrder> ordersById = new HashMap<>();
+
+    public OrderBook(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Add a resting limit order to the back of its price level
+     */
+    public synchronized void add(BookOrder order) {
+        if (ordersById.putIfAbsent(order.getOrderId(), order) != null) {
+            return; // already resting
+        }
+        levelsFor(order.getSide())
+                .computeIfAbsent(order.getPrice(), k -> new ArrayDeque<>())
+                .addLast(order);
+    }
+
+    /**
+     * Put a matched order back (e.g. when executing it failed) at the place in its price
+     * level it had before. Order IDs are handed out on arrival, so they give time priority.
+     */
+    public synchronized void restore(BookOrder order) {
+        if (ordersById.putIfAbsent(order.getOrderId(), order) != null) {
+            return; // already resting
+        }
+        Deque<BookOrder> level = levelsFor(order.getSide())
+                .computeIfAbsent(order.getPrice(), k -> new ArrayDeque<>());
+
+        Deque<BookOrder> restored = new ArrayDeque<>(level.size() + 1);
+        boolean placed = false;
+        for (BookOrder resting : level) {
+            if (!placed && resting.getOrderId() > order.getOrderId()) {
+                restored.addLast(order);
+                placed = true;
+            }
+            restored.addLast(resting);
+        }
+        if (!placed) {
+            restored.addLast(order);
+        }
+        level.clear();
+        level.addAll(restored);
+    }
+
+    /**
+     * Remove an order from the book (e.g. on cancel)
+     * @return the removed order, or null if it was not in the book
+     */
+    public synchronized BookOrder remove(Long orderId) {
+        BookOrder order = ordersById.remove(orderId);
+        if (order == null) {
+            return null;
+        }
+
+        NavigableMap<BigDecimal, Deque<BookOrder>> levels = levelsFor(order.getSide());
+        Deque<BookOrder> level = levels.get(order.getPrice());
+        if (level != null) {
+            level.removeIf(o -> o.getOrderId().equals(orderId));
+            if (level.isEmpty()) {
+                levels.remove(order.getPrice());
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Removes and returns every order whose limit is crossed by the given price,
+     * in price-time priority (bids first, then asks).
+     */
+    public synchronized List<BookOrder> match(BigDecimal lastPrice) {
+        if (ordersById.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<BookOrder> triggered = new ArrayList<>();
+
+        // Bids with limit >= last price
+        drainCrossedLevels(bids, level -> level.compareTo(lastPrice) >= 0, triggered);
+
+        // Asks with limit <= last price
+        drainCrossedLevels(asks, level -> level.compareTo(lastPrice) <= 0, triggered);
+
+        return triggered;
+    }
+
+    /**
+     * Whether the given price would fill at least one resting order
+     */
+    public synchronized boolean isCrossedBy(BigDecimal lastPrice) {
+        return (!bids.isEmpty() && bids.firstKey().compareTo(lastPrice) >= 0)
+                || (!asks.isEmpty() && asks.firstKey().compareTo(lastPrice) <= 0);
+    }
+
+    /**
+     * Highest resting buy limit, or null if there are no bids
+     */
+    public synchronized BigDecimal bestBid() {
+        return bids.isEmpty() ? null : bids.firstKey();
+    }
+
+    /**
+     * Lowest resting sell limit, or null if there are no asks
+     */
+    public synchronized BigDecimal bestAsk() {
+        return asks.isEmpty() ? null : asks.firstKey();
+    }
+
+    public synchronized int size() {
+        return ordersById.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return ordersById.isEmpty();
+    }
+
+    private void drainCrossedLevels(NavigableMap<BigDecimal, Deque<BookOrder>> levels,
+                                    Predicate<BigDecimal> crossed,
+                                    List<BookOrder> triggered) {
+        while (!levels.isEmpty() && crossed.test(levels.firstKey())) {
+            Deque<BookOrder> level = levels.pollFirstEntry().getValue();
+            for (BookOrder order : level) {
+                ordersById.remove(order.getOrderId());
+                triggered.add(order);
+            }
+        }
+    }
+
+    private NavigableMap<BigDecimal, Deque<BookOrder>> levelsFor(OrderSide side) {
+        return side == OrderSide.BUY ? bids : asks;
+    }
+}
@@ -0,0 +1,53 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A real-time bar as it travels from ingestion through matching and fan-out.
+ * Prices are {@link FixedPoint} longs and the time is epoch milliseconds, so a tick is a
+ * single small object; it only becomes a {@link StockPriceDto} at the JSON/REST boundary.
+ */
+public record Tick(String symbol, long open, long high, long low, long close, long volume, long epochMillis) {
+
+    private static final ZoneId UTC_TIMEZONE = ZoneId.of("UTC");
+
+    /**
+     * Convert a bar fetched over REST; missing open/high/low fall back to the price
+     */
+    public static Tick fromStockPriceDto(StockPriceDto bar) {
+        long close = FixedPoint.of(bar.getPrice());
+        Instant time = bar.getZonedTimestamp() != null
+                ? bar.getZonedTimestamp().toInstant()
+                : bar.getTimestamp().toInstant(ZoneOffset.UTC);
+        return new Tick(bar.getSymbol(),
+                bar.getOpen() != null ? FixedPoint.of(bar.getOpen()) : close,
+                bar.getHigh() != null ? FixedPoint.of(bar.getHigh()) : close,
+                bar.getLow() != null ? FixedPoint.of(bar.getLow()) : close,
+                close,
+                bar.getVolume() != null ? bar.getVolume() : 0,
+                time.toEpochMilli());
+    }
+
+    /**
+     * Convert to the DTO used by the REST and STOMP layers, in UTC like the feed itself
+     */
+    public StockPriceDto toStockPriceDto() {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        return StockPriceDto.builder()
+                .symbol(symbol)
+                .price(FixedPoint.toBigDecimal(close))
+                .open(FixedPoint.toBigDecimal(open))
+                .high(FixedPoint.toBigDecimal(high))
+                .low(FixedPoint.toBigDecimal(low))
+                .volume(volume)
+                .timestamp(LocalDateTime.ofInstant(instant, ZoneOffset.UTC))
+                .zonedTimestamp(instant.atZone(ZoneOffset.UTC))
+                .sourceTimezone(UTC_TIMEZONE)
+                .build();
+    }
+}
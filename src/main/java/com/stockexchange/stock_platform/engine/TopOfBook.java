@@ -0,0 +1,107 @@
+package com.stockexchange.stock_platform.engine;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Last trade and best bid/ask of one symbol, in {@link FixedPoint} prices.
+ * Written by a single thread (the market data stream) and read by any number of threads
+ * without locks: the writer bumps a sequence number around every update and readers retry
+ * if it changed while they were copying, so an update costs no allocation at all.
+ */
+public class TopOfBook {
+
+    private final String symbol;
+
+    // Odd while an update is in progress
+    private volatile long sequence;
+
+    private long lastPrice;
+    private long lastSize;
+    private long tradeMillis;
+    private long bidPrice;
+    private long bidSize;
+    private long askPrice;
+    private long askSize;
+    private long quoteMillis;
+
+    // Set while this book is waiting to be handed to consumers
+    private final AtomicBoolean updated = new AtomicBoolean();
+
+    public TopOfBook(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Single writer only
+     */
+    public void recordTrade(long price, long size, long epochMillis) {
+        long seq = sequence;
+        sequence = seq + 1;
+        VarHandle.storeStoreFence();
+        lastPrice = price;
+        lastSize = size;
+        tradeMillis = epochMillis;
+        sequence = seq + 2;
+    }
+
+    /**
+     * Single writer only
+     */
+    public void recordQuote(long bidPrice, long bidSize, long askPrice, long askSize, long epochMillis) {
+        long seq = sequence;
+        sequence = seq + 1;
+        VarHandle.storeStoreFence();
+        this.bidPrice = bidPrice;
+        this.bidSize = bidSize;
+        this.askPrice = askPrice;
+        this.askSize = askSize;
+        this.quoteMillis = epochMillis;
+        sequence = seq + 2;
+    }
+
+    /**
+     * A consistent copy of the current state, safe to call from any thread
+     */
+    public Snapshot snapshot() {
+        while (true) {
+            long before = sequence;
+            if ((before & 1) == 0) {
+                Snapshot snapshot = new Snapshot(symbol, lastPrice, lastSize, tradeMillis,
+                        bidPrice, bidSize, askPrice, askSize, quoteMillis);
+                VarHandle.loadLoadFence();
+                if (sequence == before) {
+                    return snapshot;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return true if the book wasn't already marked, i.e. the caller should queue it
+     */
+    boolean markUpdated() {
+        return updated.compareAndSet(false, true);
+    }
+
+    void clearUpdated() {
+        updated.set(false);
+    }
+
+    /**
+     * Point-in-time copy of a {@link TopOfBook}. Times are epoch millis, zero if nothing
+     * has been seen yet.
+     */
+    public record Snapshot(String symbol, long lastPrice, long lastSize, long tradeMillis,
+                           long bidPrice, long bidSize, long askPrice, long askSize, long quoteMillis) {
+
+        public boolean hasTrade() {
+            return tradeMillis != 0;
+        }
+
+        public boolean hasQuote() {
+            return quoteMillis != 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.stockexchange.stock_platform.engine;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Per-symbol {@link TopOfBook}s fed by the trade and quote streams.
+ * Updates are conflated: a symbol is queued for consumers only the first time it changes
+ * after the last drain, so a burst of quotes costs each consumer one snapshot per symbol
+ * per cycle instead of one per message.
+ */
+public class TopOfBookCache {
+
+    private final Map<String, TopOfBook> books = new ConcurrentHashMap<>();
+    private final Queue<TopOfBook> updated = new ConcurrentLinkedQueue<>();
+
+    public void onTrade(String symbol, long price, long size, long epochMillis) {
+        TopOfBook book = books.computeIfAbsent(symbol, TopOfBook::new);
+        book.recordTrade(price, size, epochMillis);
+        queue(book);
+    }
+
+    public void onQuote(String symbol, long bidPrice, long bidSize, long askPrice, long askSize, long epochMillis) {
+        TopOfBook book = books.computeIfAbsent(symbol, TopOfBook::new);
+        book.recordQuote(bidPrice, bidSize, askPrice, askSize, epochMillis);
+        queue(book);
+    }
+
+    /**
+     * @return the latest state of a symbol, or null if no trade or quote has been seen for it
+     */
+    public TopOfBook.Snapshot get(String symbol) {
+        TopOfBook book = books.get(symbol);
+        return book != null ? book.snapshot() : null;
+    }
+
+    /**
+     * Hand every symbol that changed since the last drain to the consumer, once each
+     */
+    public void drainUpdates(Consumer<TopOfBook.Snapshot> consumer) {
+        TopOfBook book;
+        while ((book = updated.poll()) != null) {
+            // Clear before copying, so an update racing with us queues the book again
+            book.clearUpdated();
+            consumer.accept(book.snapshot());
+        }
+    }
+
+    private void queue(TopOfBook book) {
+        if (book.markUpdated()) {
+            updated.add(book);
+        }
+    }
+}
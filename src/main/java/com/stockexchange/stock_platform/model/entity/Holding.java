@@ -20,7 +20,8 @@ import java.util.Set;
 @Builder
 public class Holding {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "holdings_seq")
+    @SequenceGenerator(name = "holdings_seq", sequenceName = "holdings_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
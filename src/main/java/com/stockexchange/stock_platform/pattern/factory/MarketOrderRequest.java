@@ -1,10 +1,10 @@
 package com.stockexchange.stock_platform.pattern.factory;
 
-import com.stockexchange.stock_platform.model.entity.User;
 import com.stockexchange.stock_platform.model.enums.OrderSide;
 import com.stockexchange.stock_platform.model.enums.OrderType;
 import com.stockexchange.stock_platform.service.StockPriceService;
-import com.stockexchange.stock_platform.service.UserService;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter.Lane;
 import lombok.Getter;
 
 import java.math.BigDecimal;
@@ -17,16 +17,14 @@ public class MarketOrderRequest implements OrderRequest {
     private final BigDecimal quantity;
     private BigDecimal price; // Will be lazy-loaded
 
-    private final UserService userService;
     private final StockPriceService stockPriceService;
 
     public MarketOrderRequest(Long userId, String symbol, OrderSide side, BigDecimal quantity,
-                              UserService userService, StockPriceService stockPriceService) {
+                              StockPriceService stockPriceService) {
         this.userId = userId;
         this.symbol = symbol;
         this.side = side;
         this.quantity = quantity;
-        this.userService = userService;
         this.stockPriceService = stockPriceService;
 
         // Don't fetch the price here -> lazy fetching
@@ -41,30 +39,17 @@ public class MarketOrderRequest implements OrderRequest {
     public BigDecimal getPrice() {
         // Lazy-load the price only when needed
         if (price == null) {
-            this.price = stockPriceService.getCurrentPrice(symbol).getPrice();
+            this.price = fetchPrice();
         }
 
         return price;
     }
 
-    @Override
-    public boolean validate() {
-        User user = userService.getUserById(userId);
-
-        if (side == OrderSide.BUY) {
-            // Get the price if it's null
-            if (this.price == null) {
-                this.price = stockPriceService.getCurrentPrice(symbol).getPrice();
-            }
-
-            // Now price should never be null
-            BigDecimal orderCost = price.multiply(quantity);
-            return user.getCashBalance().compareTo(orderCost) >= 0;
-        } else if (side == OrderSide.SELL) {
-            // Check if user has enough shares to sell
-            return userService.hasEnoughShares(userId, symbol, quantity);
-        }
-
-        return false;
+    /**
+     * Pricing an order draws on the API budget reserved for order execution
+     */
+    private BigDecimal fetchPrice() {
+        return PriorityRateLimiter.callAs(Lane.ORDER_EXECUTION,
+                () -> stockPriceService.getCurrentPrice(symbol).getPrice());
     }
 }
\ No newline at end of file
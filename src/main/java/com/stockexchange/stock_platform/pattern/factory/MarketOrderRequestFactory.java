@@ -3,7 +3,6 @@ package com.stockexchange.stock_platform.pattern.factory;
 import com.stockexchange.stock_platform.model.enums.OrderSide;
 import com.stockexchange.stock_platform.model.enums.OrderType;
 import com.stockexchange.stock_platform.service.StockPriceService;
-import com.stockexchange.stock_platform.service.UserService;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -11,11 +10,9 @@ import java.math.BigDecimal;
 @Component
 public class MarketOrderRequestFactory implements OrderRequestFactory {
 
-    private final UserService userService;
     private final StockPriceService stockPriceService;
 
-    public MarketOrderRequestFactory(UserService userService, StockPriceService stockPriceService) {
-        this.userService = userService;
+    public MarketOrderRequestFactory(StockPriceService stockPriceService) {
         this.stockPriceService = stockPriceService;
     }
 
@@ -23,7 +20,7 @@ public class MarketOrderRequestFactory implements OrderRequestFactory {
     public OrderRequest createOrderRequest(Long userId, String symbol, OrderSide side,
                                            BigDecimal quantity, BigDecimal price) {
         // For market orders, price parameter is ignored
-        return new MarketOrderRequest(userId, symbol, side, quantity, userService, stockPriceService);
+        return new MarketOrderRequest(userId, symbol, side, quantity, stockPriceService);
     }
 
     @Override
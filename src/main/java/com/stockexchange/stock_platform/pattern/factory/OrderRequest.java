@@ -13,5 +13,4 @@ public interface OrderRequest {
     OrderSide getSide();
     BigDecimal getQuantity();
     BigDecimal getPrice();
-    boolean validate();
 }
\ No newline at end of file
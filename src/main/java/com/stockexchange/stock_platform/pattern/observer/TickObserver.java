@@ -0,0 +1,7 @@
+package com.stockexchange.stock_platform.pattern.observer;
+
+import com.stockexchange.stock_platform.engine.Tick;
+
+public interface TickObserver {
+    void onTick(Tick tick);
+}
@@ -0,0 +1,9 @@
+package com.stockexchange.stock_platform.pattern.observer;
+
+import com.stockexchange.stock_platform.engine.Tick;
+
+public interface TickSubject {
+    void registerObserver(TickObserver observer);
+    void removeObserver(TickObserver observer);
+    void notifyObservers(Tick tick);
+}
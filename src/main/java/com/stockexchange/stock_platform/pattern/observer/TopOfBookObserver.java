@@ -0,0 +1,7 @@
+package com.stockexchange.stock_platform.pattern.observer;
+
+import com.stockexchange.stock_platform.engine.TopOfBook;
+
+public interface TopOfBookObserver {
+    void onTopOfBook(TopOfBook.Snapshot topOfBook);
+}
@@ -29,9 +29,16 @@ public class DailyReturnStrategy implements PortfolioAnalysisStrategy {
         BigDecimal totalCurrentValue = BigDecimal.ZERO;
         BigDecimal totalDailyChange = BigDecimal.ZERO;
 
+        // Prices of all holdings in one batched lookup
+        Map<String, StockPriceDto> prices = stockPriceService.getCurrentPrices(
+                user.getHoldings().stream().map(Holding::getSymbol).toList());
+
         // Analyze each holding
         for (Holding holding : user.getHoldings()) {
-            StockPriceDto priceData = stockPriceService.getCurrentPrice(holding.getSymbol());
+            StockPriceDto priceData = prices.get(holding.getSymbol().toUpperCase());
+            if (priceData == null) {
+                priceData = stockPriceService.getCurrentPrice(holding.getSymbol());
+            }
 
             BigDecimal investmentValue = holding.getQuantity().multiply(holding.getAvgPrice());
             BigDecimal currentValue = holding.getQuantity().multiply(priceData.getPrice());
@@ -34,14 +34,22 @@ public class WeeklyReturnStrategy implements PortfolioAnalysisStrategy {
         BigDecimal totalCurrentValue = BigDecimal.ZERO;
         BigDecimal totalValueWeekAgo = BigDecimal.ZERO;
 
+        // Current and historical prices of all holdings in batched lookups
+        List<String> symbols = user.getHoldings().stream().map(Holding::getSymbol).toList();
+        Map<String, StockPriceDto> currentPrices = stockPriceService.getCurrentPrices(symbols);
+        Map<String, List<StockPriceDto>> historicalPricesBySymbol =
+                stockPriceService.getHistoricalPrices(symbols, weekAgo, now);
+
         // Analyze each holding
         for (Holding holding : user.getHoldings()) {
             // Get current price data
-            StockPriceDto currentPrice = stockPriceService.getCurrentPrice(holding.getSymbol());
+            StockPriceDto currentPrice = currentPrices.get(holding.getSymbol().toUpperCase());
+            if (currentPrice == null) {
+                currentPrice = stockPriceService.getCurrentPrice(holding.getSymbol());
+            }
 
             // Get historical price data
-            List<StockPriceDto> historicalPrices = stockPriceService.getHistoricalPrices(
-                    holding.getSymbol(), weekAgo, now);
+            List<StockPriceDto> historicalPrices = historicalPricesBySymbol.get(holding.getSymbol().toUpperCase());
 
             // Find price from a week ago (or closest available)
             StockPriceDto weekAgoPrice = findClosestPriceData(historicalPrices, weekAgo);
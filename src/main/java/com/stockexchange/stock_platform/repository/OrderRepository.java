@@ -6,6 +6,9 @@ import com.stockexchange.stock_platform.model.enums.OrderSide;
 import com.stockexchange.stock_platform.model.enums.OrderStatus;
 import com.stockexchange.stock_platform.model.enums.OrderType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -22,6 +25,9 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Find orders by status (PENDING, EXECUTED, CANCELED, FAILED)
     List<Order> findByStatus(OrderStatus status);
 
+    // Find orders by status and type (e.g. resting limit orders)
+    List<Order> findByStatusAndOrderType(OrderStatus status, OrderType orderType);
+
     // Find orders by user and status
     List<Order> findByUserAndStatus(User user, OrderStatus status);
 
@@ -43,4 +49,12 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Find pending limit orders for a specific symbol
     List<Order> findBySymbolAndStatusAndOrderType(
             String symbol, OrderStatus status, OrderType orderType);
+
+    // Cancel an order only if it is still pending; waits for an execution holding its row lock
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE orders SET status = 'CANCELED', updated_at = NOW()
+            WHERE id = :orderId AND status = 'PENDING'
+            """, nativeQuery = true)
+    int cancelIfPending(@Param("orderId") Long orderId);
 }
\ No newline at end of file
@@ -7,13 +7,32 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface StockPriceRepository extends JpaRepository<StockPrice, StockPriceId> {
 
+    // Windows up to this long are answered from raw rows, longer ones from the aggregates
+    Duration RAW_WINDOW = Duration.ofDays(2);
+    Duration HOURLY_WINDOW = Duration.ofDays(90);
+
+    /**
+     * One OHLCV bucket from stock_prices or one of its continuous aggregates; times are UTC
+     */
+    interface PriceBar {
+        LocalDateTime getTime();
+        BigDecimal getOpen();
+        BigDecimal getHigh();
+        BigDecimal getLow();
+        BigDecimal getClose();
+        Long getVolume();
+    }
+
     // Find the most recent price for a symbol
     @Query("SELECT sp FROM StockPrice sp WHERE sp.symbol = :symbol ORDER BY sp.time DESC LIMIT 1")
     Optional<StockPrice> findLatestBySymbol(@Param("symbol") String symbol);
@@ -22,30 +41,140 @@ public interface StockPriceRepository extends JpaRepository<StockPrice, StockPri
     List<StockPrice> findBySymbolAndTimeBetweenOrderByTimeAsc(
             String symbol, LocalDateTime startTime, LocalDateTime endTime);
 
-    // Find the daily opening price for a symbol on a specific date
-    @Query("SELECT sp FROM StockPrice sp WHERE sp.symbol = :symbol AND CAST(sp.time AS date) = CAST(:date AS date) ORDER BY sp.time ASC LIMIT 1")
-    Optional<StockPrice> findOpeningPriceBySymbolAndDate(
-            @Param("symbol") String symbol, @Param("date") LocalDateTime date);
+    // First and last price in a half-open time range; both are (symbol, time) index range scans
+    Optional<StockPrice> findFirstBySymbolAndTimeGreaterThanEqualAndTimeLessThanOrderByTimeAsc(
+            String symbol, LocalDateTime startTime, LocalDateTime endTime);
 
-    // Find the daily closing price for a symbol on a specific date
-    @Query("SELECT sp FROM StockPrice sp WHERE sp.symbol = :symbol AND CAST(sp.time AS date) = CAST(:date AS date) ORDER BY sp.time DESC LIMIT 1")
-    Optional<StockPrice> findClosingPriceBySymbolAndDate(
-            @Param("symbol") String symbol, @Param("date") LocalDateTime date);
+    Optional<StockPrice> findFirstBySymbolAndTimeGreaterThanEqualAndTimeLessThanOrderByTimeDesc(
+            String symbol, LocalDateTime startTime, LocalDateTime endTime);
+
+    // Find the daily opening price for a symbol on a specific (UTC) date
+    default Optional<StockPrice> findOpeningPriceBySymbolAndDate(String symbol, LocalDateTime date) {
+        LocalDateTime dayStart = date.toLocalDate().atStartOfDay();
+        return findFirstBySymbolAndTimeGreaterThanEqualAndTimeLessThanOrderByTimeAsc(
+                symbol, dayStart, dayStart.plusDays(1));
+    }
+
+    // Find the daily closing price for a symbol on a specific (UTC) date
+    default Optional<StockPrice> findClosingPriceBySymbolAndDate(String symbol, LocalDateTime date) {
+        LocalDateTime dayStart = date.toLocalDate().atStartOfDay();
+        return findFirstBySymbolAndTimeGreaterThanEqualAndTimeLessThanOrderByTimeDesc(
+                symbol, dayStart, dayStart.plusDays(1));
+    }
 
     // Find the highest price for a symbol in a given time range
-    @Query("SELECT sp FROM StockPrice sp WHERE sp.symbol = :symbol AND sp.time BETWEEN :startTime AND :endTime ORDER BY sp.price DESC LIMIT 1")
-    Optional<StockPrice> findHighestPriceBySymbolAndTimeRange(
-            @Param("symbol") String symbol,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime);
+    default Optional<BigDecimal> findHighestPriceBySymbolAndTimeRange(
+            String symbol, LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDateTime[] hours = wholeHours(startTime, endTime);
+        return Optional.ofNullable(findHighestPrice(symbol, startTime, endTime, hours[0], hours[1]));
+    }
 
     // Find the lowest price for a symbol in a given time range
-    @Query("SELECT sp FROM StockPrice sp WHERE sp.symbol = :symbol AND sp.time BETWEEN :startTime AND :endTime ORDER BY sp.price ASC LIMIT 1")
-    Optional<StockPrice> findLowestPriceBySymbolAndTimeRange(
-            @Param("symbol") String symbol,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime);
+    default Optional<BigDecimal> findLowestPriceBySymbolAndTimeRange(
+            String symbol, LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDateTime[] hours = wholeHours(startTime, endTime);
+        return Optional.ofNullable(findLowestPrice(symbol, startTime, endTime, hours[0], hours[1]));
+    }
+
+    /**
+     * OHLCV bars for a window, from the source that suits its length: raw rows for short
+     * windows, the hourly aggregate up to {@link #HOURLY_WINDOW} and the daily one beyond.
+     * Aggregate bars start with the bucket the window starts in.
+     * <p>
+     * Nothing reads these yet: charts come from price_bars through HistoricalBarStore, since
+     * stock_prices only holds what the stream delivered while the application was running.
+     */
+    default List<PriceBar> findBars(String symbol, LocalDateTime startTime, LocalDateTime endTime) {
+        Duration window = Duration.between(startTime, endTime);
+        if (window.compareTo(RAW_WINDOW) <= 0) {
+            return findRawBars(symbol, startTime, endTime);
+        }
+        if (window.compareTo(HOURLY_WINDOW) <= 0) {
+            return findHourlyBars(symbol, startTime, endTime);
+        }
+        return findDailyBars(symbol, startTime, endTime);
+    }
+
+    @Query(value = """
+            SELECT time AT TIME ZONE 'UTC' AS time, COALESCE(open, price) AS open, COALESCE(high, price) AS high,
+                   COALESCE(low, price) AS low, price AS close, volume
+            FROM stock_prices
+            WHERE symbol = :symbol AND time >= :startTime AND time <= :endTime
+            ORDER BY time
+            """, nativeQuery = true)
+    List<PriceBar> findRawBars(@Param("symbol") String symbol,
+                               @Param("startTime") LocalDateTime startTime,
+                               @Param("endTime") LocalDateTime endTime);
+
+    @Query(value = """
+            SELECT bucket AT TIME ZONE 'UTC' AS time, open, high, low, close, volume
+            FROM stock_prices_1h
+            WHERE symbol = :symbol AND bucket > :startTime - INTERVAL '1 hour' AND bucket <= :endTime
+            ORDER BY bucket
+            """, nativeQuery = true)
+    List<PriceBar> findHourlyBars(@Param("symbol") String symbol,
+                                  @Param("startTime") LocalDateTime startTime,
+                                  @Param("endTime") LocalDateTime endTime);
+
+    @Query(value = """
+            SELECT bucket AT TIME ZONE 'UTC' AS time, open, high, low, close, volume
+            FROM stock_prices_1d
+            WHERE symbol = :symbol AND bucket > :startTime - INTERVAL '1 day' AND bucket <= :endTime
+            ORDER BY bucket
+            """, nativeQuery = true)
+    List<PriceBar> findDailyBars(@Param("symbol") String symbol,
+                                 @Param("startTime") LocalDateTime startTime,
+                                 @Param("endTime") LocalDateTime endTime);
+
+    // Whole hours come from the hourly aggregate, the partial hours at either end from raw rows
+    @Query(value = """
+            SELECT max(high) FROM (
+                SELECT max(COALESCE(high, price)) AS high FROM stock_prices
+                WHERE symbol = :symbol AND ((time >= :startTime AND time < :firstHour)
+                                            OR (time >= :lastHour AND time <= :endTime))
+                UNION ALL
+                SELECT max(high) FROM stock_prices_1h
+                WHERE symbol = :symbol AND bucket >= :firstHour AND bucket < :lastHour
+            ) highs
+            """, nativeQuery = true)
+    BigDecimal findHighestPrice(@Param("symbol") String symbol,
+                                @Param("startTime") LocalDateTime startTime,
+                                @Param("endTime") LocalDateTime endTime,
+                                @Param("firstHour") LocalDateTime firstHour,
+                                @Param("lastHour") LocalDateTime lastHour);
+
+    @Query(value = """
+            SELECT min(low) FROM (
+                SELECT min(COALESCE(low, price)) AS low FROM stock_prices
+                WHERE symbol = :symbol AND ((time >= :startTime AND time < :firstHour)
+                                            OR (time >= :lastHour AND time <= :endTime))
+                UNION ALL
+                SELECT min(low) FROM stock_prices_1h
+                WHERE symbol = :symbol AND bucket >= :firstHour AND bucket < :lastHour
+            ) lows
+            """, nativeQuery = true)
+    BigDecimal findLowestPrice(@Param("symbol") String symbol,
+                               @Param("startTime") LocalDateTime startTime,
+                               @Param("endTime") LocalDateTime endTime,
+                               @Param("firstHour") LocalDateTime firstHour,
+                               @Param("lastHour") LocalDateTime lastHour);
 
     // Delete old price data (for maintenance)
     void deleteByTimeBefore(LocalDateTime cutoffTime);
-}
\ No newline at end of file
+
+    /**
+     * The first and last hour boundaries inside a window; both are the window's end when
+     * it holds no whole hour, so everything is read from raw rows
+     */
+    private static LocalDateTime[] wholeHours(LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDateTime firstHour = startTime.truncatedTo(ChronoUnit.HOURS);
+        if (firstHour.isBefore(startTime)) {
+            firstHour = firstHour.plusHours(1);
+        }
+        LocalDateTime lastHour = endTime.truncatedTo(ChronoUnit.HOURS);
+        if (!firstHour.isBefore(lastHour)) {
+            return new LocalDateTime[]{endTime, endTime};
+        }
+        return new LocalDateTime[]{firstHour, lastHour};
+    }
+}
@@ -3,10 +3,13 @@ package com.stockexchange.stock_platform.service;
 import com.stockexchange.stock_platform.dto.SearchResultDto;
 import com.stockexchange.stock_platform.dto.StockPriceDto;
 import com.stockexchange.stock_platform.model.entity.StockPrice;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface StockPriceService {
     StockPriceDto getCurrentPrice(String symbol);
@@ -17,6 +20,7 @@ public interface StockPriceService {
     List<StockPriceDto> getPricesForTimeframe(String symbol, String timeframe);
     List<SearchResultDto> searchStocks(String keywords);
     void saveStockPrice(StockPrice stockPrice);
+    void registerSymbolForTracking(String symbol);
 
     // New timezone-aware methods - as extensions
     StockPriceDto getCurrentPrice(String symbol, ZoneId timezone);
@@ -25,4 +29,11 @@ public interface StockPriceService {
     List<StockPriceDto> getWeeklyPrices(String symbol, int weeks, ZoneId timezone);
     List<StockPriceDto> getMonthlyPrices(String symbol, int months, ZoneId timezone);
     List<StockPriceDto> getPricesForTimeframe(String symbol, String timeframe, ZoneId timezone);
+
+    // Non-blocking current price, for request threads that shouldn't wait on Alpaca
+    Mono<StockPriceDto> getCurrentPriceAsync(String symbol, ZoneId timezone);
+
+    // Batched lookups for many symbols at once, keyed by upper-case symbol
+    Map<String, StockPriceDto> getCurrentPrices(Collection<String> symbols);
+    Map<String, List<StockPriceDto>> getHistoricalPrices(Collection<String> symbols, LocalDateTime startTime, LocalDateTime endTime);
 }
\ No newline at end of file
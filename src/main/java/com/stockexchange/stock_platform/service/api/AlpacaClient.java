@@ -9,16 +9,21 @@ import com.stockexchange.stock_platform.dto.MarketClockDto;
 import com.stockexchange.stock_platform.dto.SearchResultDto;
 import com.stockexchange.stock_platform.dto.StockPriceDto;
 import com.stockexchange.stock_platform.exception.ExternalApiException;
-import com.stockexchange.stock_platform.util.RateLimiter;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import com.stockexchange.stock_platform.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -33,7 +38,26 @@ public class AlpacaClient {
     @Getter
     private final AlpacaConfig config;
     private final ObjectMapper objectMapper;
-    private final RateLimiter rateLimiter;
+    private final PriorityRateLimiter rateLimiter;
+
+    // Identical requests made at the same time share one REST call, e.g. when a chart's
+    // caches are evicted at the open and everyone asks for it again
+    private final SingleFlight<LatestBarRequest, StockPriceDto> latestBarRequests;
+    private final SingleFlight<BarsRequest, List<StockPriceDto>> barsRequests;
+
+    private record LatestBarRequest(String symbol, String feed) {}
+
+    private record BarsRequest(String symbol, String timeframe, String start, String end, String feed) {}
+
+    /**
+     * Historical bars and the feed that served them. Only sip bars are complete; the iex
+     * fallback only carries that exchange's share of the volume.
+     */
+    public record FeedBars(List<StockPriceDto> bars, String feed) {
+        public boolean complete() {
+            return HISTORICAL_BAR_FEEDS.getFirst().equals(feed);
+        }
+    }
 
     private static final int MAX_RETRY_ATTEMPTS = 3;
     private static final long RETRY_DELAY_MS = 2000;
@@ -44,20 +68,33 @@ public class AlpacaClient {
     private static final List<String> LATEST_BAR_FEEDS = Arrays.asList("sip", "iex", "delayed_sip");
     private static final List<String> HISTORICAL_BAR_FEEDS = Arrays.asList("sip", "iex");
 
+    // Alpaca's report of the API key's budget; the reset is in epoch seconds
+    private static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    private static final String RATE_LIMIT_RESET = "X-RateLimit-Reset";
+
+    // Symbols per multi-symbol request, which keeps the URL well within limits
+    private static final int SYMBOLS_PER_REQUEST = 100;
+
     public AlpacaClient(
             RestTemplate restTemplate,
             AlpacaConfig config,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            PriorityRateLimiter alpacaRateLimiter,
+            MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
         this.config = config;
         this.objectMapper = objectMapper;
-        this.rateLimiter = new RateLimiter(config.getMaxRequestPerMinute());
+        this.rateLimiter = alpacaRateLimiter;
+        this.latestBarRequests = new SingleFlight<>("alpaca.latest_bar", meterRegistry);
+        this.barsRequests = new SingleFlight<>("alpaca.bars", meterRegistry);
         log.info("AlpacaClient initialized with max {} requests per minute", config.getMaxRequestPerMinute());
     }
 
     /**
-     * Gets the current stock price using Alpaca's bar API
+     * Gets the current stock price using Alpaca's bar API.
+     * Only used when the live stream has nothing for the symbol yet, so it is cached briefly.
      */
+    @Cacheable(value = "currentPrices", key = "#symbol", unless = "#result == null")
     public StockPriceDto getCurrentPrice(String symbol) {
         log.info("Fetching current price for {} from Alpaca", symbol);
 
@@ -66,7 +103,8 @@ public class AlpacaClient {
 
         for (String feed : LATEST_BAR_FEEDS) {
             try {
-                return fetchCurrentPriceWithFeed(symbol, feed);
+                return latestBarRequests.execute(new LatestBarRequest(symbol.toUpperCase(), feed),
+                        () -> fetchCurrentPriceWithFeed(symbol, feed));
             } catch (Exception e) {
                 log.warn("Failed to fetch current price with '{}' feed: {}", feed, e.getMessage());
                 lastException = e;
@@ -101,55 +139,116 @@ public class AlpacaClient {
                 throw new ExternalApiException("No bar data available from Alpaca");
             }
 
-            JsonNode barNode = rootNode.get("bar");
-
-            // Extract data from JSON
-            String timeStr = barNode.get("t").asText();
-            ZonedDateTime timestamp = ZonedDateTime.parse(timeStr); // UTC timestamp
-
-            // Parse price data
-            BigDecimal currentPrice = new BigDecimal(barNode.get("c").asText());
-            BigDecimal openPrice = new BigDecimal(barNode.get("o").asText());
-            BigDecimal highPrice = new BigDecimal(barNode.get("h").asText());
-            BigDecimal lowPrice = new BigDecimal(barNode.get("l").asText());
-            Long volume = barNode.get("v").asLong();
-
-            // Calculate change and percent change
-            BigDecimal change = currentPrice.subtract(openPrice);
-            BigDecimal changePercent = BigDecimal.ZERO;
-            if (openPrice.compareTo(BigDecimal.ZERO) > 0) {
-                changePercent = change.multiply(new BigDecimal("100"))
-                        .divide(openPrice, 4, RoundingMode.HALF_UP);
-            }
-
+            StockPriceDto price = parseLatestBarNode(rootNode.get("bar"), symbol);
             log.info("Successfully fetched current price for {} using '{}' feed", symbol, feed);
-
-            // Build the StockPriceDto
-            return StockPriceDto.builder()
-                    .symbol(symbol.toUpperCase())
-                    .price(currentPrice)
-                    .open(openPrice)
-                    .high(highPrice)
-                    .low(lowPrice)
-                    .volume(volume)
-                    .change(change)
-                    .changePercent(changePercent)
-                    .timestamp(timestamp.toLocalDateTime())
-                    .zonedTimestamp(timestamp)
-                    .sourceTimezone(UTC_TIMEZONE)  // Keep original UTC timezone
-                    .build();
+            return price;
         } catch (Exception e) {
             log.error("Error processing response for {}: {}", symbol, e.getMessage());
             throw handleApiException("Error processing current price data", e);
         }
     }
 
+    /**
+     * Latest bars of many symbols, with one request per chunk of symbols rather than one per symbol.
+     * Tries the same feeds as {@link #getCurrentPrice(String)}.
+     * @return bars by symbol; symbols Alpaca has no bar for are left out
+     */
+    public Map<String, StockPriceDto> getLatestBars(Collection<String> symbols) {
+        log.info("Fetching latest bars for {} symbols from Alpaca", symbols.size());
+        Map<String, StockPriceDto> bars = new HashMap<>();
+
+        for (List<String> chunk : chunks(symbols)) {
+            Exception lastException = null;
+            boolean fetched = false;
+
+            for (String feed : LATEST_BAR_FEEDS) {
+                try {
+                    bars.putAll(fetchLatestBarsWithFeed(chunk, feed));
+                    fetched = true;
+                    break;
+                } catch (Exception e) {
+                    log.warn("Failed to fetch latest bars with '{}' feed: {}", feed, e.getMessage());
+                    lastException = e;
+                }
+            }
+
+            if (!fetched) {
+                throw handleApiException("Error fetching latest bars", lastException != null ? lastException :
+                        new ExternalApiException("All data feeds failed"));
+            }
+        }
+        return bars;
+    }
+
+    private Map<String, StockPriceDto> fetchLatestBarsWithFeed(List<String> symbols, String feed)
+            throws JsonProcessingException {
+        UriComponentsBuilder builder = builder(config.getDataBaseUrl() + "/v2/stocks/bars/latest")
+                .queryParam("symbols", String.join(",", symbols))
+                .queryParam("feed", feed);
+
+        JsonNode rootNode = objectMapper.readTree(executeApiRequest(builder).getBody());
+        Map<String, StockPriceDto> bars = new HashMap<>();
+        rootNode.path("bars").fields().forEachRemaining(entry ->
+                bars.put(entry.getKey(), parseLatestBarNode(entry.getValue(), entry.getKey())));
+
+        log.debug("Fetched latest bars for {} of {} symbols using '{}' feed", bars.size(), symbols.size(), feed);
+        return bars;
+    }
+
+    /**
+     * Parse a latest bar; its change is measured from the bar's open
+     */
+    static StockPriceDto parseLatestBarNode(JsonNode barNode, String symbol) {
+        // Extract data from JSON
+        String timeStr = barNode.get("t").asText();
+        ZonedDateTime timestamp = ZonedDateTime.parse(timeStr); // UTC timestamp
+
+        // Parse price data
+        BigDecimal currentPrice = new BigDecimal(barNode.get("c").asText());
+        BigDecimal openPrice = new BigDecimal(barNode.get("o").asText());
+        BigDecimal highPrice = new BigDecimal(barNode.get("h").asText());
+        BigDecimal lowPrice = new BigDecimal(barNode.get("l").asText());
+        Long volume = barNode.get("v").asLong();
+
+        // Calculate change and percent change
+        BigDecimal change = currentPrice.subtract(openPrice);
+        BigDecimal changePercent = BigDecimal.ZERO;
+        if (openPrice.compareTo(BigDecimal.ZERO) > 0) {
+            changePercent = change.multiply(new BigDecimal("100"))
+                    .divide(openPrice, 4, RoundingMode.HALF_UP);
+        }
+
+        // Build the StockPriceDto
+        return StockPriceDto.builder()
+                .symbol(symbol.toUpperCase())
+                .price(currentPrice)
+                .open(openPrice)
+                .high(highPrice)
+                .low(lowPrice)
+                .volume(volume)
+                .change(change)
+                .changePercent(changePercent)
+                .timestamp(timestamp.toLocalDateTime())
+                .zonedTimestamp(timestamp)
+                .sourceTimezone(UTC_TIMEZONE)  // Keep original UTC timezone
+                .build();
+    }
+
     /**
      * Gets historical price data with flexible timeframe options
      * Tries multiple data feeds in order of preference
      */
     public List<StockPriceDto> getHistoricalBars(String symbol, String timeframe,
                                                  LocalDateTime startTime, LocalDateTime endTime) {
+        return getHistoricalFeedBars(symbol, timeframe, startTime, endTime).bars();
+    }
+
+    /**
+     * Like {@link #getHistoricalBars(String, String, LocalDateTime, LocalDateTime)}, also
+     * telling which feed the bars came from
+     */
+    public FeedBars getHistoricalFeedBars(String symbol, String timeframe,
+                                          LocalDateTime startTime, LocalDateTime endTime) {
         // Calculate and log time period details
         long daysBetween = java.time.Duration.between(startTime, endTime).toDays();
         String periodType = daysBetween > 300 ? "1-year" : daysBetween > 60 ? "3-month" : "1-month";
@@ -173,57 +272,12 @@ public class AlpacaClient {
 
             for (String feed : HISTORICAL_BAR_FEEDS) {
                 try {
-                    log.debug("Attempting with feed: {} for timeframe: {}", feed, timeframe);
-
-                    UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(url)
-                            .queryParam("timeframe", timeframe)
-                            .queryParam("start", startTimeStr)
-                            .queryParam("end", endTimeStr)
-                            .queryParam("limit", 10000) // Maximum to ensure we get enough data
-                            .queryParam("adjustment", "all")
-                            .queryParam("feed", feed)
-                            .queryParam("sort", "asc");
-
-                    String fullUrl = builder.build().toUriString();
-                    log.debug("Full request URL: {}", fullUrl);
-
-                    // Execute API request with this feed
-                    ResponseEntity<String> response = executeApiRequest(builder);
-                    log.debug("Received response status: {}", response.getStatusCode());
-
-                    // Process the response
-                    JsonNode rootNode = objectMapper.readTree(response.getBody());
-                    List<StockPriceDto> stockPrices = processBarData(rootNode, symbol);
-                    log.debug("Initial response contained {} data points", stockPrices.size());
-
-                    // Handle pagination if needed
-                    if (rootNode.has("next_page_token") && !rootNode.get("next_page_token").isNull()) {
-                        String nextPageToken = rootNode.get("next_page_token").asText();
-                        log.debug("Pagination required - next_page_token: {}", nextPageToken);
-
-                        try {
-                            // IMPORTANT: Pass the exact same string formatting of dates used in original request
-                            List<StockPriceDto> nextPagePrices = getNextBarPage(
-                                    symbol, nextPageToken, timeframe, feed,
-                                    startTimeStr, endTimeStr);
-
-                            log.debug("Successfully retrieved {} additional data points from pagination",
-                                    nextPagePrices.size());
-                            stockPrices.addAll(nextPagePrices);
-                        } catch (Exception e) {
-                            log.error("Pagination failed: {} - Will continue with {} data points",
-                                    e.getMessage(), stockPrices.size());
-                        }
-                    } else {
-                        log.debug("No pagination required - all data retrieved in single request");
-                    }
+                    List<StockPriceDto> stockPrices = barsRequests.execute(
+                            new BarsRequest(symbol.toUpperCase(), timeframe, startTimeStr, endTimeStr, feed),
+                            () -> fetchHistoricalBarsWithFeed(url, symbol, timeframe, startTimeStr, endTimeStr, feed));
 
-                    // Calculate changes after all data is collected
-                    calculateChanges(stockPrices);
-
-                    log.info("Successfully fetched {} bars for {} using '{}' feed",
-                            stockPrices.size(), symbol, feed);
-                    return stockPrices;
+                    // Coalesced callers each get their own list
+                    return new FeedBars(new ArrayList<>(stockPrices), feed);
                 }
                 catch (Exception e) {
                     log.warn("Failed to fetch data with '{}' feed: {}", feed, e.getMessage());
@@ -243,6 +297,156 @@ public class AlpacaClient {
         }
     }
 
+    /**
+     * Helper method to fetch historical bars with a specific feed, following pagination
+     */
+    private List<StockPriceDto> fetchHistoricalBarsWithFeed(String url, String symbol, String timeframe,
+                                                            String startTimeStr, String endTimeStr, String feed) {
+        try {
+            log.debug("Attempting with feed: {} for timeframe: {}", feed, timeframe);
+
+            UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(url)
+                    .queryParam("timeframe", timeframe)
+                    .queryParam("start", startTimeStr)
+                    .queryParam("end", endTimeStr)
+                    .queryParam("limit", 10000) // Maximum to ensure we get enough data
+                    .queryParam("adjustment", "all")
+                    .queryParam("feed", feed)
+                    .queryParam("sort", "asc");
+
+            String fullUrl = builder.build().toUriString();
+            log.debug("Full request URL: {}", fullUrl);
+
+            // Execute API request with this feed
+            ResponseEntity<String> response = executeApiRequest(builder);
+            log.debug("Received response status: {}", response.getStatusCode());
+
+            // Process the response
+            JsonNode rootNode = objectMapper.readTree(response.getBody());
+            List<StockPriceDto> stockPrices = processBarData(rootNode, symbol);
+            log.debug("Initial response contained {} data points", stockPrices.size());
+
+            // Handle pagination if needed
+            if (rootNode.has("next_page_token") && !rootNode.get("next_page_token").isNull()) {
+                String nextPageToken = rootNode.get("next_page_token").asText();
+                log.debug("Pagination required - next_page_token: {}", nextPageToken);
+
+                // IMPORTANT: Pass the exact same string formatting of dates used in original request.
+                // A failed page fails the whole fetch: the bars are stored as covering the window,
+                // so a partial result would leave a gap that is never fetched again.
+                List<StockPriceDto> nextPagePrices = getNextBarPage(
+                        symbol, nextPageToken, timeframe, feed,
+                        startTimeStr, endTimeStr);
+
+                log.debug("Successfully retrieved {} additional data points from pagination",
+                        nextPagePrices.size());
+                stockPrices.addAll(nextPagePrices);
+            } else {
+                log.debug("No pagination required - all data retrieved in single request");
+            }
+
+            // Calculate changes after all data is collected
+            calculateChanges(stockPrices);
+
+            log.info("Successfully fetched {} bars for {} using '{}' feed",
+                    stockPrices.size(), symbol, feed);
+            return stockPrices;
+        } catch (JsonProcessingException e) {
+            throw handleApiException("Error parsing historical bars", e);
+        }
+    }
+
+    /**
+     * Historical bars of many symbols for one window, with one paginated request per chunk
+     * of symbols rather than one per symbol. Tries the same feeds as the single-symbol call.
+     * @return bars by symbol, oldest first, for every requested symbol; symbols without bars
+     * get an empty list, with the feed that had none
+     */
+    public Map<String, FeedBars> getHistoricalBars(Collection<String> symbols, String timeframe,
+                                                   LocalDateTime startTime, LocalDateTime endTime) {
+        log.info("Fetching {} bars for {} symbols from {} to {}", timeframe, symbols.size(), startTime, endTime);
+
+        String startTimeStr = startTime.atZone(UTC_TIMEZONE).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        String endTimeStr = endTime.atZone(UTC_TIMEZONE).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        Map<String, FeedBars> bars = new HashMap<>();
+
+        for (List<String> chunk : chunks(symbols)) {
+            Exception lastException = null;
+            boolean fetched = false;
+
+            for (String feed : HISTORICAL_BAR_FEEDS) {
+                try {
+                    Map<String, List<StockPriceDto>> chunkBars =
+                            fetchMultiSymbolBarsWithFeed(chunk, timeframe, startTimeStr, endTimeStr, feed);
+                    for (String symbol : chunk) {
+                        bars.put(symbol, new FeedBars(chunkBars.getOrDefault(symbol, new ArrayList<>()), feed));
+                    }
+                    fetched = true;
+                    break;
+                } catch (Exception e) {
+                    log.warn("Failed to fetch multi-symbol bars with '{}' feed: {}", feed, e.getMessage());
+                    lastException = e;
+                }
+            }
+
+            if (!fetched) {
+                throw handleApiException("Error fetching historical bars", lastException != null ? lastException :
+                        new ExternalApiException("All data feeds failed"));
+            }
+        }
+
+        bars.values().forEach(feedBars -> calculateChanges(feedBars.bars()));
+        return bars;
+    }
+
+    /**
+     * Follows next_page_token until every symbol of the chunk is complete; a page may end
+     * part-way through one symbol's bars and carry on with it on the next page
+     */
+    private Map<String, List<StockPriceDto>> fetchMultiSymbolBarsWithFeed(List<String> symbols, String timeframe,
+                                                                          String startTimeStr, String endTimeStr,
+                                                                          String feed) throws JsonProcessingException {
+        String baseUrl = builder(config.getDataBaseUrl() + "/v2/stocks/bars")
+                .queryParam("symbols", String.join(",", symbols))
+                .queryParam("timeframe", timeframe)
+                .queryParam("start", startTimeStr)
+                .queryParam("end", endTimeStr)
+                .queryParam("limit", 10000)
+                .queryParam("adjustment", "all")
+                .queryParam("feed", feed)
+                .queryParam("sort", "asc")
+                .toUriString();
+
+        Map<String, List<StockPriceDto>> bars = new HashMap<>();
+        String pageToken = null;
+        int pages = 0;
+        do {
+            // Append the token by hand so its Base64 padding isn't encoded (see getNextBarPage)
+            String url = pageToken != null ? baseUrl + "&page_token=" + pageToken : baseUrl;
+            JsonNode rootNode = objectMapper.readTree(executeApiRequest(url).getBody());
+            pages++;
+
+            rootNode.path("bars").fields().forEachRemaining(entry -> {
+                List<StockPriceDto> symbolBars = bars.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+                for (JsonNode barNode : entry.getValue()) {
+                    symbolBars.add(parseBarNode(barNode, entry.getKey()));
+                }
+            });
+
+            JsonNode next = rootNode.path("next_page_token");
+            String nextToken = next.isNull() || next.isMissingNode() ? null : next.asText();
+            if (nextToken != null && nextToken.equals(pageToken)) {
+                log.warn("Same token returned - stopping pagination to prevent infinite loop");
+                break;
+            }
+            pageToken = nextToken;
+        } while (pageToken != null && !pageToken.equals("null"));
+
+        log.debug("Fetched {} bars for {} of {} symbols in {} page(s) using '{}' feed",
+                timeframe, bars.size(), symbols.size(), pages, feed);
+        return bars;
+    }
+
     /**
      * Call Alpaca’s /v2/clock endpoint to get current market open/close info.
      */
@@ -348,14 +552,10 @@ public class AlpacaClient {
                     return prices;
                 }
 
-                try {
-                    // Continue pagination with the new token but SAME original parameters
-                    List<StockPriceDto> nextPrices = getNextBarPage(symbol, token,
-                            timeframe, feed, startTimeStr, endTimeStr);
-                    prices.addAll(nextPrices);
-                } catch (Exception e) {
-                    log.error("Error fetching subsequent pagination pages: {}", e.getMessage());
-                }
+                // Continue pagination with the new token but SAME original parameters
+                List<StockPriceDto> nextPrices = getNextBarPage(symbol, token,
+                        timeframe, feed, startTimeStr, endTimeStr);
+                prices.addAll(nextPrices);
             }
 
             return prices;
@@ -524,11 +724,19 @@ public class AlpacaClient {
             throw new ExternalApiException("Rate limiter interrupted");
         }
 
-        ResponseEntity<String> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                String.class);
+        ResponseEntity<String> response;
+        try {
+            response = restTemplate.exchange(
+                    url,
+                    HttpMethod.GET,
+                    entity,
+                    String.class);
+        } catch (HttpStatusCodeException e) {
+            // A 429 says when the budget comes back
+            observeRateLimit(e.getResponseHeaders(), rateLimiter);
+            throw e;
+        }
+        observeRateLimit(response.getHeaders(), rateLimiter);
 
         if (!response.getStatusCode().is2xxSuccessful()) {
             throw new ExternalApiException("Failed to fetch data: " + response.getStatusCode());
@@ -537,6 +745,38 @@ public class AlpacaClient {
         return response;
     }
 
+    /**
+     * Tighten the rate limiter to the budget Alpaca reports left for the API key, which
+     * other processes using the key draw on too
+     */
+    static void observeRateLimit(HttpHeaders headers, PriorityRateLimiter rateLimiter) {
+        if (headers == null) {
+            return;
+        }
+        String remaining = headers.getFirst(RATE_LIMIT_REMAINING);
+        String reset = headers.getFirst(RATE_LIMIT_RESET);
+        if (remaining == null || reset == null) {
+            return;
+        }
+        try {
+            rateLimiter.onServerLimit(Long.parseLong(remaining), Instant.ofEpochSecond(Long.parseLong(reset)));
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring malformed rate limit headers: remaining={}, reset={}", remaining, reset);
+        }
+    }
+
+    /**
+     * Split symbols into upper-case, de-duplicated chunks of at most SYMBOLS_PER_REQUEST
+     */
+    static List<List<String>> chunks(Collection<String> symbols) {
+        List<String> distinct = symbols.stream().map(String::toUpperCase).distinct().toList();
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += SYMBOLS_PER_REQUEST) {
+            chunks.add(distinct.subList(from, Math.min(from + SYMBOLS_PER_REQUEST, distinct.size())));
+        }
+        return chunks;
+    }
+
     /**
      * Create a basic UriComponentsBuilder for a URL
      */
@@ -547,7 +787,7 @@ public class AlpacaClient {
     /**
      * Parse a single bar node into a StockPriceDto
      */
-    private StockPriceDto parseBarNode(JsonNode barNode, String symbol) {
+    static StockPriceDto parseBarNode(JsonNode barNode, String symbol) {
         // Extract timestamp and convert to ZonedDateTime
         String timeStr = barNode.get("t").asText();
         ZonedDateTime timestamp = ZonedDateTime.parse(timeStr); // UTC timestamp
@@ -600,7 +840,7 @@ public class AlpacaClient {
      * Calculate changes and percent changes relative to the first (earliest) price point
      * @param prices List of price data points
      */
-    private void calculateChanges(List<StockPriceDto> prices) {
+    static void calculateChanges(List<StockPriceDto> prices) {
         if (prices == null || prices.isEmpty()) {
             return;
         }
@@ -611,20 +851,28 @@ public class AlpacaClient {
 
         // Calculate change and percent change for each price point
         for (StockPriceDto pricePoint : prices) {
-            BigDecimal priceChange = pricePoint.getPrice().subtract(referencePrice);
-            pricePoint.setChange(priceChange);
-
-            if (referencePrice.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal changePercent = priceChange
-                        .multiply(new BigDecimal("100"))
-                        .divide(referencePrice, 4, RoundingMode.HALF_UP);
-                pricePoint.setChangePercent(changePercent);
-            } else {
-                pricePoint.setChangePercent(BigDecimal.ZERO);
-            }
+            setChange(pricePoint, referencePrice);
         }
 
         log.debug("Calculated changes for {} data points relative to reference price {}",
                 prices.size(), referencePrice);
     }
+
+    /**
+     * Set a price point's change and percent change relative to a reference price
+     */
+    static StockPriceDto setChange(StockPriceDto pricePoint, BigDecimal referencePrice) {
+        BigDecimal priceChange = pricePoint.getPrice().subtract(referencePrice);
+        pricePoint.setChange(priceChange);
+
+        if (referencePrice.compareTo(BigDecimal.ZERO) > 0) {
+            BigDecimal changePercent = priceChange
+                    .multiply(new BigDecimal("100"))
+                    .divide(referencePrice, 4, RoundingMode.HALF_UP);
+            pricePoint.setChangePercent(changePercent);
+        } else {
+            pricePoint.setChangePercent(BigDecimal.ZERO);
+        }
+        return pricePoint;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+package com.stockexchange.stock_platform.service.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.stockexchange.stock_platform.engine.FixedPoint;
+import com.stockexchange.stock_platform.engine.Tick;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+
+/**
+ * Token-streaming decoder for Alpaca market data frames.
+ * Reads each frame straight from its bytes with a Jackson {@link JsonParser}: no String
+ * copy of the payload and no JsonNode tree. Prices are parsed from the parser's own
+ * character buffer into {@link FixedPoint} longs and timestamps into epoch millis, so a
+ * bar costs one {@link Tick} and a trade or quote costs nothing beyond its symbol.
+ * <p>
+ * Not thread-safe; a decoder belongs to the single thread receiving a connection's frames.
+ */
+public class AlpacaStreamDecoder {
+
+    /**
+     * Receives the decoded messages of a frame, in order
+     */
+    public interface Handler {
+        void onBar(Tick bar);
+        void onTrade(String symbol, long price, long size, long epochMillis);
+        void onQuote(String symbol, long bidPrice, long bidSize, long askPrice, long askSize, long epochMillis);
+        void onSuccess(String message);
+        void onError(int code, String message);
+        void onSubscription(int barCount);
+    }
+
+    private final JsonFactory jsonFactory;
+    private final Handler handler;
+
+    // Fields of the message being decoded, reused for every message
+    private char typeCode;
+    private String typeName;
+    private String symbol;
+    private long open;
+    private long high;
+    private long low;
+    private long close;
+    private long volume;
+    private long tradePrice;
+    private long tradeSize;
+    private long bidPrice;
+    private long bidSize;
+    private long askPrice;
+    private long askSize;
+    private long epochMillis;
+    private String message;
+    private int code;
+    private int barCount;
+
+    public AlpacaStreamDecoder(JsonFactory jsonFactory, Handler handler) {
+        this.jsonFactory = jsonFactory;
+        this.handler = handler;
+    }
+
+    /**
+     * Decode one frame, either a single message object or an array of them
+     */
+    public void decode(InputStream payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    decodeMessage(parser);
+                }
+            } else if (token == JsonToken.START_OBJECT) {
+                decodeMessage(parser);
+            }
+        }
+    }
+
+    private void decodeMessage(JsonParser parser) throws IOException {
+        reset();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Field names are canonicalized by Jackson, so this doesn't allocate
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "T" -> readType(parser);
+                case "S" -> symbol = parser.getText();
+                case "o" -> open = readPrice(parser);
+                case "h" -> high = readPrice(parser);
+                case "l" -> low = readPrice(parser);
+                // Bars carry the close price in "c", trades and quotes their condition codes
+                case "c" -> close = value.isNumeric() ? readPrice(parser) : skip(parser);
+                case "v" -> volume = parser.getLongValue();
+                case "p" -> tradePrice = readPrice(parser);
+                case "s" -> tradeSize = parser.getLongValue();
+                case "bp" -> bidPrice = readPrice(parser);
+                case "bs" -> bidSize = parser.getLongValue();
+                case "ap" -> askPrice = readPrice(parser);
+                case "as" -> askSize = parser.getLongValue();
+                case "t" -> epochMillis = readEpochMillis(parser);
+                case "msg" -> message = parser.getText();
+                case "code" -> code = parser.getIntValue();
+                case "bars" -> barCount = countElements(parser, value);
+                default -> parser.skipChildren();
+            }
+        }
+
+        dispatch();
+    }
+
+    private void dispatch() {
+        if (typeCode != 0) {
+            if (symbol == null) {
+                return;
+            }
+            switch (typeCode) {
+                case 'b' -> handler.onBar(new Tick(symbol, open, high, low, close, volume, epochMillis));
+                case 't' -> handler.onTrade(symbol, tradePrice, tradeSize, epochMillis);
+                case 'q' -> handler.onQuote(symbol, bidPrice, bidSize, askPrice, askSize, epochMillis);
+                default -> {
+                    // Other data streams are not subscribed to
+                }
+            }
+            return;
+        }
+
+        if (typeName == null) {
+            return;
+        }
+        switch (typeName) {
+            case "success" -> handler.onSuccess(message != null ? message : "");
+            case "error" -> handler.onError(code, message != null ? message : "Unknown error");
+            case "subscription" -> handler.onSubscription(barCount);
+            default -> {
+                // Other message types are not used
+            }
+        }
+    }
+
+    private void reset() {
+        typeCode = 0;
+        typeName = null;
+        symbol = null;
+        open = high = low = close = 0;
+        volume = 0;
+        tradePrice = tradeSize = 0;
+        bidPrice = bidSize = askPrice = askSize = 0;
+        epochMillis = 0;
+        message = null;
+        code = 0;
+        barCount = 0;
+    }
+
+    private void readType(JsonParser parser) throws IOException {
+        // Data messages have one-letter types; only control messages need a String
+        if (parser.getTextLength() == 1) {
+            typeCode = parser.getTextCharacters()[parser.getTextOffset()];
+        } else {
+            typeName = parser.getText();
+        }
+    }
+
+    private static long readPrice(JsonParser parser) throws IOException {
+        return FixedPoint.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private static long skip(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return 0;
+    }
+
+    private static long readEpochMillis(JsonParser parser) throws IOException {
+        return parseEpochMillis(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private static int countElements(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return 0;
+        }
+
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Parse an RFC 3339 timestamp such as "2024-03-15T14:30:00Z" or
+     * "2024-03-15T14:30:00.123456789Z" into epoch milliseconds without allocating.
+     * Anything with a numeric offset falls back to {@link OffsetDateTime}.
+     */
+    static long parseEpochMillis(char[] buffer, int offset, int length) {
+        int end = offset + length;
+        if (length < 20 || buffer[end - 1] != 'Z' || buffer[offset + 4] != '-' || buffer[offset + 10] != 'T') {
+            return OffsetDateTime.parse(new String(buffer, offset, length)).toInstant().toEpochMilli();
+        }
+
+        int year = digits(buffer, offset, 4);
+        int month = digits(buffer, offset + 5, 2);
+        int day = digits(buffer, offset + 8, 2);
+        int hour = digits(buffer, offset + 11, 2);
+        int minute = digits(buffer, offset + 14, 2);
+        int second = digits(buffer, offset + 17, 2);
+
+        // Fraction of a second, if any; only milliseconds are kept
+        int millis = 0;
+        int i = offset + 19;
+        if (buffer[i] == '.') {
+            int place = 100;
+            for (i++; i < end - 1; i++) {
+                if (place > 0) {
+                    millis += digit(buffer[i]) * place;
+                    place /= 10;
+                }
+            }
+        }
+
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+    }
+
+    private static int digits(char[] buffer, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            value = value * 10 + digit(buffer[i]);
+        }
+        return value;
+    }
+
+    private static int digit(char c) {
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Invalid timestamp digit: " + c);
+        }
+        return c - '0';
+    }
+
+    /**
+     * Days since 1970-01-01 for a proleptic Gregorian date
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -1,44 +1,56 @@
 package com.stockexchange.stock_platform.service.api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.stockexchange.stock_platform.config.AlpacaConfig;
-import com.stockexchange.stock_platform.dto.StockPriceDto;
-import com.stockexchange.stock_platform.pattern.observer.StockPriceObserver;
-import com.stockexchange.stock_platform.pattern.observer.StockPriceSubject;
+import com.stockexchange.stock_platform.config.ObserverDispatchConfig;
+import com.stockexchange.stock_platform.engine.BarAggregator;
+import com.stockexchange.stock_platform.engine.Tick;
+import com.stockexchange.stock_platform.engine.TopOfBook;
+import com.stockexchange.stock_platform.engine.TopOfBookCache;
+import com.stockexchange.stock_platform.pattern.observer.TickObserver;
+import com.stockexchange.stock_platform.pattern.observer.TickSubject;
+import com.stockexchange.stock_platform.pattern.observer.TopOfBookObserver;
+import com.stockexchange.stock_platform.util.ObserverDispatcher;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
 import org.springframework.web.reactive.socket.client.WebSocketClient;
 import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
 import java.net.URI;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * WebSocket client for real-time market data from Alpaca.
- * Specifically focused on receiving minute bar data for stock prices.
+ * Receives minute bars for stock prices, plus trades and quotes for a live top of book.
  */
 @Service
 @Slf4j
-public class AlpacaWebSocketClient implements StockPriceSubject {
+public class AlpacaWebSocketClient implements TickSubject {
 
     private final AlpacaConfig config;
     private final ObjectMapper objectMapper;
-    private final List<StockPriceObserver> observers = new ArrayList<>();
+
+    // Observers run on their own threads, so none of them can stall the socket
+    private final ObserverDispatcher<Tick> observers;
+    private final ObserverDispatcher<TopOfBook.Snapshot> topOfBookObservers;
+
+    // Last trade and best bid/ask per symbol, written only by the receiving thread
+    private final TopOfBookCache topOfBookCache = new TopOfBookCache();
+    // Bars built from this stream; told whenever the stream may have missed some
+    private final BarAggregator barAggregator;
     private final Set<String> subscribedSymbols = ConcurrentHashMap.newKeySet();
     private final AtomicBoolean isConnected = new AtomicBoolean(false);
     private final AtomicBoolean isAuthenticated = new AtomicBoolean(false);
@@ -46,15 +58,25 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
     // Constants for WebSocket
     private static final String STOCKS_STREAM_PATH = "/v2/iex";
     private static final ZoneId MARKET_TIMEZONE = ZoneId.of("America/New_York");
-    private static final ZoneId UTC_TIMEZONE = ZoneId.of("UTC");
     private final WebSocketClient client;
+    private final AlpacaStreamDecoder streamDecoder;
     private Mono<Void> webSocketConnection;
     private WebSocketSession webSocketSession;
 
-    public AlpacaWebSocketClient(AlpacaConfig config, ObjectMapper objectMapper) {
+    public AlpacaWebSocketClient(AlpacaConfig config,
+                                 ObjectMapper objectMapper,
+                                 BarAggregator barAggregator,
+                                 ObserverDispatchConfig dispatchConfig,
+                                 MeterRegistry meterRegistry) {
         this.config = config;
         this.objectMapper = objectMapper;
+        this.barAggregator = barAggregator;
+        this.observers = new ObserverDispatcher<>("bars", Tick::symbol,
+                dispatchConfig.getCapacity(), dispatchConfig.getPolicy(), meterRegistry);
+        this.topOfBookObservers = new ObserverDispatcher<>("top-of-book", TopOfBook.Snapshot::symbol,
+                dispatchConfig.getCapacity(), dispatchConfig.getPolicy(), meterRegistry);
         this.client = new ReactorNettyWebSocketClient();
+        this.streamDecoder = new AlpacaStreamDecoder(objectMapper.getFactory(), new StreamHandler());
     }
 
     @PostConstruct
@@ -67,6 +89,8 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
     public void cleanup() {
         log.info("Shutting down Alpaca WebSocket client");
         disconnect();
+        observers.shutdown();
+        topOfBookObservers.shutdown();
     }
 
     /**
@@ -92,13 +116,14 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
                             this.webSocketSession = session;
                             isConnected.set(true);
                             log.info("Connected to Alpaca WebSocket");
+                            invalidateBars();
 
                             // Authenticate immediately after connection
                             Mono<Void> authMono = authenticate(session);
 
                             // Handle incoming messages
                             Mono<Void> receiveMono = session.receive()
-                                    .doOnNext(message -> processMessage(message.getPayloadAsText()))
+                                    .doOnNext(this::processMessage)
                                     .doOnError(error -> {
                                         log.error("Error in WebSocket receive stream: {}", error.getMessage());
                                         isConnected.set(false);
@@ -147,62 +172,29 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
     }
 
     /**
-     * Process incoming WebSocket messages
+     * Process an incoming WebSocket frame straight from its bytes
      */
-    private void processMessage(String message) {
+    private void processMessage(WebSocketMessage message) {
         try {
-            log.debug("Received WebSocket message: {}", message);
+            if (log.isTraceEnabled()) {
+                log.trace("Received WebSocket message: {}", message.getPayloadAsText());
+            }
 
-            // Parse the message
-            JsonNode node = objectMapper.readTree(message);
+            streamDecoder.decode(message.getPayload().asInputStream());
 
-            // Handle array of messages
-            if (node.isArray()) {
-                for (JsonNode msgNode : node) {
-                    processSingleMessage(msgNode);
-                }
-            } else {
-                // Single message
-                processSingleMessage(node);
+            // Conflate: each symbol whose trade or quote changed in this frame is delivered once
+            if (!topOfBookObservers.isEmpty()) {
+                topOfBookCache.drainUpdates(this::notifyTopOfBookObservers);
             }
         } catch (Exception e) {
             log.error("Error processing WebSocket message: {}", e.getMessage());
         }
     }
 
-    /**
-     * Process a single message from the WebSocket
-     */
-    private void processSingleMessage(JsonNode msgNode) {
-        // Check for message type
-        if (!msgNode.has("T")) {
-            return;
-        }
-
-        String messageType = msgNode.get("T").asText();
-
-        switch (messageType) {
-            case "success":
-                handleSuccessMessage(msgNode);
-                break;
-            case "error":
-                handleErrorMessage(msgNode);
-                break;
-            case "subscription":
-                handleSubscriptionMessage(msgNode);
-                break;
-            case "b":
-                handleBarMessage(msgNode);
-                break;
-        }
-    }
-
     /**
      * Handle success messages (connection, authentication)
      */
-    private void handleSuccessMessage(JsonNode msgNode) {
-        String msg = msgNode.has("msg") ? msgNode.get("msg").asText() : "";
-
+    private void handleSuccessMessage(String msg) {
         log.info("Received success message: {}", msg);
 
         if ("connected".equals(msg)) {
@@ -219,10 +211,7 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
     /**
      * Handle error messages
      */
-    private void handleErrorMessage(JsonNode msgNode) {
-        int code = msgNode.has("code") ? msgNode.get("code").asInt() : 0;
-        String msg = msgNode.has("msg") ? msgNode.get("msg").asText() : "Unknown error";
-
+    private void handleErrorMessage(int code, String msg) {
         log.error("Received error message: Code {}, Message: {}", code, msg);
 
         // Handle authentication errors
@@ -240,65 +229,67 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
     /**
      * Handle subscription confirmation messages
      */
-    private void handleSubscriptionMessage(JsonNode msgNode) {
+    private void handleSubscriptionMessage(int barCount) {
         log.info("Subscription update received");
-
-        if (msgNode.has("bars") && msgNode.get("bars").isArray()) {
-            ArrayNode bars = (ArrayNode) msgNode.get("bars");
-            log.info("Subscribed to {} bar streams", bars.size());
-        }
+        log.info("Subscribed to {} bar streams", barCount);
     }
 
     /**
-     * Handle bar messages containing aggregated price data
+     * Handle bar messages containing aggregated price data.
+     * The decoder has already turned the bar into a fixed-point tick, with its UTC timestamp.
      */
-    private void handleBarMessage(JsonNode msgNode) {
-        try {
-            // Only process if we have observers
-            if (observers.isEmpty()) {
-                return;
-            }
+    private void handleBarMessage(Tick bar) {
+        // Only process if we have observers
+        if (observers.isEmpty()) {
+            return;
+        }
 
-            // Extract symbol
-            String symbol = msgNode.get("S").asText().toUpperCase();
-
-            // Extract OHLC data
-            BigDecimal openPrice = new BigDecimal(msgNode.get("o").asText());
-            BigDecimal highPrice = new BigDecimal(msgNode.get("h").asText());
-            BigDecimal lowPrice = new BigDecimal(msgNode.get("l").asText());
-            BigDecimal closePrice = new BigDecimal(msgNode.get("c").asText());
-            int volume = msgNode.get("v").asInt();
-
-            // Extract timestamp - Alpaca sends timestamps in UTC
-            String timestampStr = msgNode.get("t").asText();
-            ZonedDateTime utcTimestamp = ZonedDateTime.parse(timestampStr);
-
-            // Store the market timestamp for database storage (as UTC)
-            LocalDateTime timestamp = utcTimestamp.toLocalDateTime();
-
-            // Create StockPriceDto with UTC timezone info
-            // The StockPriceServiceImpl will be responsible for converting to the user's timezone
-            StockPriceDto priceDto = StockPriceDto.builder()
-                    .symbol(symbol)
-                    .price(closePrice)
-                    .open(openPrice)
-                    .high(highPrice)
-                    .low(lowPrice)
-                    .volume((long) volume)
-                    .timestamp(timestamp)
-                    .zonedTimestamp(utcTimestamp)  // Store original UTC time from Alpaca
-                    .sourceTimezone(UTC_TIMEZONE)  // Source timezone is UTC
-                    .build();
-
-            // Notify observers - they'll convert to user timezone as needed
-            notifyObservers(priceDto);
+        try {
+            // Notify observers - they'll convert to DTOs and user timezones as needed
+            notifyObservers(bar);
         } catch (Exception e) {
             log.error("Error processing bar message: {}", e.getMessage());
         }
     }
 
     /**
-     * Subscribe to real-time bar data for a single symbol.
+     * Routes decoded stream messages to the handlers above
+     * and trades and quotes into the top-of-book cache
+     */
+    private class StreamHandler implements AlpacaStreamDecoder.Handler {
+        @Override
+        public void onBar(Tick bar) {
+            handleBarMessage(bar);
+        }
+
+        @Override
+        public void onTrade(String symbol, long price, long size, long epochMillis) {
+            topOfBookCache.onTrade(symbol, price, size, epochMillis);
+        }
+
+        @Override
+        public void onQuote(String symbol, long bidPrice, long bidSize, long askPrice, long askSize, long epochMillis) {
+            topOfBookCache.onQuote(symbol, bidPrice, bidSize, askPrice, askSize, epochMillis);
+        }
+
+        @Override
+        public void onSuccess(String message) {
+            handleSuccessMessage(message);
+        }
+
+        @Override
+        public void onError(int code, String message) {
+            handleErrorMessage(code, message);
+        }
+
+        @Override
+        public void onSubscription(int barCount) {
+            handleSubscriptionMessage(barCount);
+        }
+    }
+
+    /**
+     * Subscribe to real-time bars, trades and quotes for a single symbol.
      * Only actually sends one subscribe message the very first time.
      */
     public void subscribeToSymbol(String symbol) {
@@ -314,7 +305,7 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
             return;
         }
 
-        log.info("Subscribing to bar data for symbol: {}", symbol);
+        log.info("Subscribing to market data for symbol: {}", symbol);
 
         // if we’re already connected & authenticated, send the one subscribe frame now
         if (isConnected.get() && isAuthenticated.get()) {
@@ -323,7 +314,7 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
     }
 
     /**
-     * Subscribe to real-time bar data for multiple symbols in bulk.
+     * Subscribe to real-time bars, trades and quotes for multiple symbols in bulk.
      * Only sends subscribe frames for newly added symbols.
      */
     public void subscribeToSymbols(List<String> symbols) {
@@ -343,7 +334,7 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
             return;
         }
 
-        log.info("Subscribing to bar data for {} new symbols", toActuallySubscribe.size());
+        log.info("Subscribing to market data for {} new symbols", toActuallySubscribe.size());
 
         if (isConnected.get() && isAuthenticated.get()) {
             sendSubscriptionMessage(toActuallySubscribe);
@@ -356,10 +347,22 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
     private void resubscribeSymbols() {
         if (!subscribedSymbols.isEmpty()) {
             log.info("Resubscribing to {} symbols", subscribedSymbols.size());
+            invalidateBars();
             sendSubscriptionMessage(new ArrayList<>(subscribedSymbols));
         }
     }
 
+    /**
+     * Bars sent while we weren't subscribed are gone, so the aggregated ones no longer
+     * cover the time up to now
+     */
+    private void invalidateBars() {
+        long now = System.currentTimeMillis();
+        for (String symbol : subscribedSymbols) {
+            barAggregator.invalidate(symbol, now);
+        }
+    }
+
     /**
      * Send a subscription message to the WebSocket for the specified symbols
      */
@@ -373,12 +376,15 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
             ObjectNode subscribeMsg = objectMapper.createObjectNode();
             subscribeMsg.put("action", "subscribe");
 
-            // Only subscribe to bar data (minute bars)
+            // Minute bars for charts and history, trades and quotes for the live top of book
             ArrayNode barsArray = subscribeMsg.putArray("bars");
+            ArrayNode tradesArray = subscribeMsg.putArray("trades");
+            ArrayNode quotesArray = subscribeMsg.putArray("quotes");
 
-            // Add symbols to the bars array
             for (String symbol : symbols) {
                 barsArray.add(symbol);
+                tradesArray.add(symbol);
+                quotesArray.add(symbol);
             }
 
             // Convert to JSON and send
@@ -413,28 +419,58 @@ public class AlpacaWebSocketClient implements StockPriceSubject {
      * Register an observer to receive price updates
      */
     @Override
-    public void registerObserver(StockPriceObserver observer) {
-        if (!observers.contains(observer)) {
-            observers.add(observer);
-        }
+    public void registerObserver(TickObserver observer) {
+        observers.register(observer, observer::onTick);
+    }
+
+    /**
+     * Register an observer whose mailbox uses a policy other than the configured one
+     */
+    public void registerObserver(TickObserver observer, ObserverDispatcher.BackpressurePolicy policy) {
+        observers.register(observer, observer::onTick, policy);
     }
 
     /**
      * Remove an observer
      */
     @Override
-    public void removeObserver(StockPriceObserver observer) {
+    public void removeObserver(TickObserver observer) {
         observers.remove(observer);
     }
 
     /**
-     * Notify all observers of a price update
+     * Queue a price update for all observers; returns without waiting for them
      */
     @Override
-    public void notifyObservers(StockPriceDto stockPrice) {
-        for (StockPriceObserver observer : observers) {
-            observer.update(stockPrice);
-        }
+    public void notifyObservers(Tick tick) {
+        observers.publish(tick);
+    }
+
+    /**
+     * Register an observer for conflated trade and quote updates
+     */
+    public void registerTopOfBookObserver(TopOfBookObserver observer) {
+        topOfBookObservers.register(observer, observer::onTopOfBook);
+    }
+
+    public void registerTopOfBookObserver(TopOfBookObserver observer, ObserverDispatcher.BackpressurePolicy policy) {
+        topOfBookObservers.register(observer, observer::onTopOfBook, policy);
+    }
+
+    public void removeTopOfBookObserver(TopOfBookObserver observer) {
+        topOfBookObservers.remove(observer);
+    }
+
+    private void notifyTopOfBookObservers(TopOfBook.Snapshot topOfBook) {
+        topOfBookObservers.publish(topOfBook);
+    }
+
+    /**
+     * Latest trade and quote received for a symbol
+     * @return the snapshot, or null if none has been received yet
+     */
+    public TopOfBook.Snapshot getTopOfBook(String symbol) {
+        return topOfBookCache.get(symbol.toUpperCase());
     }
 
     /**
@@ -3,7 +3,8 @@ package com.stockexchange.stock_platform.service.api;
 import com.stockexchange.stock_platform.config.AlphaVantageConfig;
 import com.stockexchange.stock_platform.dto.StockPriceDto;
 import com.stockexchange.stock_platform.exception.ExternalApiException;
-import com.stockexchange.stock_platform.util.RateLimiter;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -34,7 +35,7 @@ public class AlphaVantageClient {
     private final AlphaVantageConfig config;
     private final Map<String, StockPriceDto> priceCache = new ConcurrentHashMap<>();
     private final Map<String, LocalDateTime> cacheTimestamps = new ConcurrentHashMap<>();
-    private final RateLimiter rateLimiter;
+    private final PriorityRateLimiter rateLimiter;
 
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final int MAX_RETRY_ATTEMPTS = 3;
@@ -47,10 +48,11 @@ public class AlphaVantageClient {
     public AlphaVantageClient(
             RestTemplate restTemplate,
             AlphaVantageConfig config,
-            @Value("${alphavantage.max-requests-per-minute:5}") int maxRequestsPerMinute) {
+            @Value("${alphavantage.max-requests-per-minute:5}") int maxRequestsPerMinute,
+            MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
         this.config = config;
-        this.rateLimiter = new RateLimiter(maxRequestsPerMinute);
+        this.rateLimiter = new PriorityRateLimiter("alphavantage", maxRequestsPerMinute, meterRegistry);
         log.info("AlphaVantageClient initialized with max {} requests per minute", maxRequestsPerMinute);
     }
 
@@ -0,0 +1,238 @@
+package com.stockexchange.stock_platform.service.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockexchange.stock_platform.config.AlpacaConfig;
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.exception.ExternalApiException;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non-blocking variant of {@link AlpacaClient} on a pooled, keep-alive WebClient.
+ * <p>
+ * Nothing here parks a thread: rate-limit waits and retry back-offs are timers, and
+ * historical bars are emitted page by page as they arrive. Multi-symbol calls keep at
+ * most alpaca.maxConcurrentRequests requests in flight. Shares the account's rate
+ * limiter with the blocking client; the caller's lane is taken when a call is made and
+ * used for every request it leads to, whichever thread sends them.
+ */
+@Service
+@Slf4j
+public class ReactiveAlpacaClient {
+
+    private static final List<String> LATEST_BAR_FEEDS = List.of("sip", "iex", "delayed_sip");
+    private static final List<String> HISTORICAL_BAR_FEEDS = List.of("sip", "iex");
+
+    private static final int MAX_RETRY_ATTEMPTS = 3;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(2);
+    private static final int BARS_PER_PAGE = 10000;
+
+    private final WebClient webClient;
+    private final AlpacaConfig config;
+    private final ObjectMapper objectMapper;
+    private final PriorityRateLimiter rateLimiter;
+
+    /**
+     * One page of bars, with the token of the next page or null if it was the last
+     */
+    private record BarPage(List<StockPriceDto> bars, String feed, String nextPageToken) {}
+
+    public ReactiveAlpacaClient(WebClient alpacaWebClient, AlpacaConfig config,
+                                ObjectMapper objectMapper, PriorityRateLimiter alpacaRateLimiter) {
+        this.webClient = alpacaWebClient;
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.rateLimiter = alpacaRateLimiter;
+    }
+
+    /**
+     * Latest bar of a symbol, trying the same feeds as {@link AlpacaClient#getCurrentPrice(String)}
+     */
+    public Mono<StockPriceDto> getCurrentPrice(String symbol) {
+        String upperSymbol = symbol.toUpperCase();
+        PriorityRateLimiter.Lane lane = PriorityRateLimiter.currentLane();
+        return Flux.fromIterable(LATEST_BAR_FEEDS)
+                .concatMap(feed -> latestBar(upperSymbol, feed, lane)
+                        .onErrorResume(e -> {
+                            log.warn("Failed to fetch current price with '{}' feed: {}", feed, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .next()
+                .switchIfEmpty(Mono.error(() ->
+                        new ExternalApiException("All data feeds failed for current price of " + upperSymbol)));
+    }
+
+    /**
+     * Latest bars of many symbols, one request per chunk of symbols with a bounded number
+     * of chunks in flight. Bars are emitted as their chunk arrives; symbols Alpaca has no
+     * bar for, or whose chunk failed on every feed, are left out.
+     */
+    public Flux<StockPriceDto> getLatestBars(Collection<String> symbols) {
+        PriorityRateLimiter.Lane lane = PriorityRateLimiter.currentLane();
+        return Flux.fromIterable(AlpacaClient.chunks(symbols))
+                .flatMap(chunk -> Flux.fromIterable(LATEST_BAR_FEEDS)
+                        .concatMap(feed -> latestBars(chunk, feed, lane)
+                                .onErrorResume(e -> {
+                                    log.warn("Failed to fetch latest bars with '{}' feed: {}", feed, e.getMessage());
+                                    return Mono.empty();
+                                }))
+                        .next()
+                        .flatMapIterable(bars -> bars), config.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Historical bars, oldest first, emitted page by page as Alpaca returns them. Changes
+     * are relative to the first bar, like {@link AlpacaClient#getHistoricalBars}. A page
+     * that fails after the first fails the whole call rather than ending it early, so a
+     * partial window never passes for a complete one.
+     */
+    public Flux<StockPriceDto> getHistoricalBars(String symbol, String timeframe,
+                                                 LocalDateTime startTime, LocalDateTime endTime) {
+        String upperSymbol = symbol.toUpperCase();
+        // The exact same strings are sent with every page, or the page token is rejected
+        String startTimeStr = startTime.atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        String endTimeStr = endTime.atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        PriorityRateLimiter.Lane lane = PriorityRateLimiter.currentLane();
+
+        return Flux.fromIterable(HISTORICAL_BAR_FEEDS)
+                .concatMap(feed -> barPage(upperSymbol, timeframe, startTimeStr, endTimeStr, feed, null, lane)
+                        .onErrorResume(e -> {
+                            log.warn("Failed to fetch data with '{}' feed: {}", feed, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .next()
+                .switchIfEmpty(Mono.error(() ->
+                        new ExternalApiException("Could not fetch historical data with any available feed")))
+                .expand(page -> page.nextPageToken() == null
+                        ? Mono.empty()
+                        : barPage(upperSymbol, timeframe, startTimeStr, endTimeStr, page.feed(), page.nextPageToken(), lane)
+                                .onErrorMap(e -> new ExternalApiException(
+                                        "Error fetching next page of " + upperSymbol + ": " + e.getMessage(), e)))
+                .concatMapIterable(BarPage::bars)
+                .switchOnFirst((first, bars) -> first.hasValue()
+                        ? bars.map(bar -> AlpacaClient.setChange(bar, first.get().getPrice()))
+                        : bars);
+    }
+
+    private Mono<StockPriceDto> latestBar(String symbol, String feed, PriorityRateLimiter.Lane lane) {
+        String url = UriComponentsBuilder.fromUriString(config.getDataBaseUrl() + "/v2/stocks/" + symbol + "/bars/latest")
+                .queryParam("feed", feed)
+                .toUriString();
+
+        return get(url, lane).handle((rootNode, sink) -> {
+            JsonNode barNode = rootNode.get("bar");
+            if (barNode == null || barNode.isNull()) {
+                sink.error(new ExternalApiException("No bar data available from Alpaca"));
+                return;
+            }
+            sink.next(AlpacaClient.parseLatestBarNode(barNode, symbol));
+        });
+    }
+
+    private Mono<List<StockPriceDto>> latestBars(List<String> symbols, String feed, PriorityRateLimiter.Lane lane) {
+        String url = UriComponentsBuilder.fromUriString(config.getDataBaseUrl() + "/v2/stocks/bars/latest")
+                .queryParam("symbols", String.join(",", symbols))
+                .queryParam("feed", feed)
+                .toUriString();
+
+        return get(url, lane).map(rootNode -> {
+            List<StockPriceDto> bars = new ArrayList<>();
+            rootNode.path("bars").fields().forEachRemaining(entry ->
+                    bars.add(AlpacaClient.parseLatestBarNode(entry.getValue(), entry.getKey())));
+            return bars;
+        });
+    }
+
+    private Mono<BarPage> barPage(String symbol, String timeframe, String startTimeStr, String endTimeStr,
+                                  String feed, String pageToken, PriorityRateLimiter.Lane lane) {
+        String url = UriComponentsBuilder.fromUriString(config.getDataBaseUrl() + "/v2/stocks/" + symbol + "/bars")
+                .queryParam("timeframe", timeframe)
+                .queryParam("start", startTimeStr)
+                .queryParam("end", endTimeStr)
+                .queryParam("limit", BARS_PER_PAGE)
+                .queryParam("adjustment", "all")
+                .queryParam("feed", feed)
+                .queryParam("sort", "asc")
+                .toUriString();
+        if (pageToken != null) {
+            // Appended by hand so its Base64 padding isn't encoded
+            url += "&page_token=" + pageToken;
+        }
+
+        return get(url, lane).map(rootNode -> {
+            List<StockPriceDto> bars = new ArrayList<>();
+            for (JsonNode barNode : rootNode.path("bars")) {
+                bars.add(AlpacaClient.parseBarNode(barNode, symbol));
+            }
+
+            JsonNode tokenNode = rootNode.get("next_page_token");
+            String nextPageToken = tokenNode == null || tokenNode.isNull() ? null : tokenNode.asText();
+            if (nextPageToken != null && nextPageToken.equals(pageToken)) {
+                log.warn("Same token returned - stopping pagination to prevent infinite loop");
+                nextPageToken = null;
+            }
+
+            log.debug("Fetched a page of {} {} bars for {} using '{}' feed", bars.size(), timeframe, symbol, feed);
+            return new BarPage(bars, feed, nextPageToken);
+        });
+    }
+
+    /**
+     * GET a URL once a rate-limit permit is granted in the given lane, retrying transient
+     * failures with back-off. A permit is taken again for every attempt.
+     */
+    private Mono<JsonNode> get(String url, PriorityRateLimiter.Lane lane) {
+        return Mono.defer(() -> {
+                    Mono<String> request = webClient.get()
+                            .uri(URI.create(url))
+                            .retrieve()
+                            .toEntity(String.class)
+                            .timeout(Duration.ofMillis(config.getResponseTimeoutMs()))
+                            .doOnNext(response -> AlpacaClient.observeRateLimit(response.getHeaders(), rateLimiter))
+                            .doOnError(WebClientResponseException.class,
+                                    e -> AlpacaClient.observeRateLimit(e.getHeaders(), rateLimiter))
+                            .mapNotNull(HttpEntity::getBody);
+                    return Mono.fromFuture(() -> rateLimiter.acquireAsync(lane, 1)).then(request);
+                })
+                .retryWhen(Retry.backoff(MAX_RETRY_ATTEMPTS, RETRY_DELAY)
+                        .filter(ReactiveAlpacaClient::isTransient)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .map(this::readTree);
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            throw new ExternalApiException("Error parsing Alpaca response: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isTransient(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+}
@@ -0,0 +1,97 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.engine.LedgerAccount;
+import com.stockexchange.stock_platform.model.entity.Holding;
+import com.stockexchange.stock_platform.model.entity.Order;
+import com.stockexchange.stock_platform.model.entity.User;
+import com.stockexchange.stock_platform.model.enums.OrderStatus;
+import com.stockexchange.stock_platform.repository.HoldingRepository;
+import com.stockexchange.stock_platform.repository.OrderRepository;
+import com.stockexchange.stock_platform.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory ledger of every account's buying power and sellable shares.
+ * Order placement reserves against it, cancellation and failed executions release, and
+ * the execution pipeline settles fills into it once they are committed. Rebuilt from
+ * users, holdings and pending orders on startup; accounts created later are loaded the
+ * first time they place an order.
+ */
+@Service
+@Slf4j
+public class AccountLedger {
+
+    private final UserRepository userRepository;
+    private final HoldingRepository holdingRepository;
+    private final OrderRepository orderRepository;
+
+    private final Map<Long, LedgerAccount> accounts = new ConcurrentHashMap<>();
+
+    public AccountLedger(UserRepository userRepository,
+                         HoldingRepository holdingRepository,
+                         OrderRepository orderRepository) {
+        this.userRepository = userRepository;
+        this.holdingRepository = holdingRepository;
+        this.orderRepository = orderRepository;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        for (User user : userRepository.findAll()) {
+            accounts.put(user.getId(), new LedgerAccount(user.getId(), user.getCashBalance()));
+        }
+        for (Holding holding : holdingRepository.findAll()) {
+            LedgerAccount account = accounts.get(holding.getUser().getId());
+            if (account != null) {
+                account.putShares(holding.getSymbol(), holding.getQuantity());
+            }
+        }
+        List<Order> openOrders = orderRepository.findByStatus(OrderStatus.PENDING);
+        for (Order order : openOrders) {
+            LedgerAccount account = accounts.get(order.getUser().getId());
+            if (account != null) {
+                account.restore(order.getId(), order.getSide(), order.getSymbol(),
+                        order.getQuantity(), order.getPrice());
+            }
+        }
+        log.info("Rebuilt account ledger with {} accounts and {} open orders", accounts.size(), openOrders.size());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the user doesn't exist
+     */
+    public LedgerAccount account(Long userId) {
+        LedgerAccount account = accounts.get(userId);
+        return account != null ? account : accounts.computeIfAbsent(userId, this::load);
+    }
+
+    /**
+     * Release an order's reservation, if its account is loaded and it still holds one
+     */
+    public void release(Long userId, Long orderId) {
+        LedgerAccount account = accounts.get(userId);
+        if (account != null) {
+            account.release(orderId);
+        }
+    }
+
+    private LedgerAccount load(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+
+        LedgerAccount account = new LedgerAccount(userId, user.getCashBalance());
+        for (Holding holding : holdingRepository.findByUserId(userId)) {
+            account.putShares(holding.getSymbol(), holding.getQuantity());
+        }
+        for (Order order : orderRepository.findByUserIdAndStatus(userId, OrderStatus.PENDING)) {
+            account.restore(order.getId(), order.getSide(), order.getSymbol(), order.getQuantity(), order.getPrice());
+        }
+        return account;
+    }
+}
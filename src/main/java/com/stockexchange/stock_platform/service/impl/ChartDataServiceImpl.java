@@ -46,7 +46,8 @@ public class ChartDataServiceImpl implements ChartDataService {
 
     @Override
     public ChartDataDto getStockPriceChart(String symbol, String timeframe, ZoneId timezone) {
-        List<StockPriceDto> priceData = stockPriceService.getPricesForTimeframe(symbol, timeframe, timezone);
+        // Copy, since cached price lists are shared and unmodifiable
+        List<StockPriceDto> priceData = new ArrayList<>(stockPriceService.getPricesForTimeframe(symbol, timeframe, timezone));
         boolean isIntraday = timeframe.equals("1d") || timeframe.equals("1w");
 
         // Prepare chart data
@@ -6,12 +6,15 @@ import com.stockexchange.stock_platform.model.entity.WatchlistItem;
 import com.stockexchange.stock_platform.repository.HoldingRepository;
 import com.stockexchange.stock_platform.repository.WatchlistRepository;
 import com.stockexchange.stock_platform.service.StockPriceService;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter.Lane;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -50,18 +53,17 @@ public class DataCollectionService {
 
         log.info("Refreshing data for {} active stocks", symbols.size());
 
-        // Refresh prices with a delay between requests to avoid hitting API limits
-        int delay = 0;
-        for (String symbol : symbols) {
-            // Schedule with increasing delay to space out requests
-            try {
-                Thread.sleep(delay);
-                StockPriceDto price = stockPriceService.getCurrentPrice(symbol);
-                log.debug("Updated price for {}: {}", symbol, price.getPrice());
-                delay = 12000; // 12 seconds delay to stay under 5 requests/minute limit
-            } catch (Exception e) {
-                log.error("Error updating price for {}: {}", symbol, e.getMessage());
+        // One request per chunk of symbols, so no spacing between requests is needed.
+        // Runs in the background lane, on whatever budget users leave unused.
+        try {
+            Map<String, StockPriceDto> prices = PriorityRateLimiter.callAs(Lane.BACKGROUND,
+                    () -> stockPriceService.getCurrentPrices(symbols));
+            prices.forEach((symbol, price) -> log.debug("Updated price for {}: {}", symbol, price.getPrice()));
+            if (prices.size() < symbols.size()) {
+                log.warn("No price found for {} of {} active stocks", symbols.size() - prices.size(), symbols.size());
             }
+        } catch (Exception e) {
+            log.error("Error updating prices of active stocks: {}", e.getMessage());
         }
 
         log.info("Completed refreshing data for all active stocks");
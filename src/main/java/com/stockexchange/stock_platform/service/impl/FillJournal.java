@@ -0,0 +1,180 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.model.enums.OrderStatus;
+import com.stockexchange.stock_platform.model.enums.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the results of a batch of fills with plain JDBC batches instead of one
+ * entity round trip per row. Must be called inside the caller's transaction, so a
+ * whole batch of fills commits or rolls back together.
+ * <p>
+ * The batch's orders are locked when their statuses are read and only move on from
+ * PENDING, so a cancel committing in between can never be overwritten by a fill, or the
+ * other way round.
+ */
+@Service
+@Slf4j
+public class FillJournal {
+
+    private static final String UPSERT_HOLDING = """
+            INSERT INTO holdings (user_id, symbol, quantity, avg_price, created_at, updated_at)
+            VALUES (?, ?, ?, ?, NOW(), NOW())
+            ON CONFLICT (user_id, symbol)
+            DO UPDATE SET quantity = EXCLUDED.quantity, avg_price = EXCLUDED.avg_price, updated_at = NOW()
+            """;
+
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transactions (user_id, holding_id, type, symbol, quantity, price, total_amount, execution_time, created_at)
+            VALUES (?, (SELECT id FROM holdings WHERE user_id = ? AND symbol = ?), ?, ?, ?, ?, ?, ?, NOW())
+            """;
+
+    // Closed positions are deleted; their transactions stay as history without a holding
+    private static final String UNLINK_TRANSACTIONS = """
+            UPDATE transactions SET holding_id = NULL
+            WHERE holding_id = (SELECT id FROM holdings WHERE user_id = ? AND symbol = ?)
+            """;
+
+    private static final String DELETE_HOLDING = "DELETE FROM holdings WHERE user_id = ? AND symbol = ?";
+
+    private static final String UPDATE_CASH = "UPDATE users SET cash_balance = ?, updated_at = NOW() WHERE id = ?";
+
+    private static final String LOCK_ORDERS = "SELECT id, status FROM orders WHERE id IN (:ids) ORDER BY id FOR UPDATE";
+
+    private static final String UPDATE_ORDER_STATUS =
+            "UPDATE orders SET status = ?, updated_at = NOW() WHERE id = ? AND status = 'PENDING'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public FillJournal(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Current status of each of the given orders in a single query, locking the rows until
+     * the transaction ends; unknown IDs are left out
+     */
+    public Map<Long, OrderStatus> lockOrderStatuses(Collection<Long> orderIds) {
+        Map<Long, OrderStatus> statuses = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return statuses;
+        }
+
+        // Locked in ID order, so two batches can't deadlock on each other
+        namedJdbcTemplate.query(LOCK_ORDERS,
+                new MapSqlParameterSource("ids", orderIds),
+                rs -> {
+                    statuses.put(rs.getLong("id"), OrderStatus.valueOf(rs.getString("status")));
+                });
+        return statuses;
+    }
+
+    /**
+     * @throws IllegalStateException if one of the orders is no longer PENDING, so the caller's
+     * transaction rolls back instead of committing a fill for it
+     */
+    public void write(Batch batch) {
+        if (batch.orderStatuses.isEmpty()) {
+            return;
+        }
+
+        // Orders first: every other write only stands if all of them were still pending
+        List<Object[]> statuses = new ArrayList<>(batch.orderStatuses.size());
+        List<Long> orderIds = new ArrayList<>(batch.orderStatuses.size());
+        batch.orderStatuses.forEach((orderId, status) -> {
+            statuses.add(new Object[]{status.name(), orderId});
+            orderIds.add(orderId);
+        });
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_ORDER_STATUS, statuses);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                throw new IllegalStateException("Order " + orderIds.get(i) + " is no longer pending");
+            }
+        }
+
+        // Holdings first, so new transactions can link to the holding they belong to
+        List<Object[]> openPositions = new ArrayList<>();
+        List<Object[]> closedPositions = new ArrayList<>();
+        for (HoldingRow row : batch.holdings.values()) {
+            if (row.quantity().compareTo(BigDecimal.ZERO) == 0) {
+                closedPositions.add(new Object[]{row.userId(), row.symbol()});
+            } else {
+                openPositions.add(new Object[]{row.userId(), row.symbol(), row.quantity(), row.avgPrice()});
+            }
+        }
+        jdbcTemplate.batchUpdate(UPSERT_HOLDING, openPositions);
+
+        List<Object[]> transactions = new ArrayList<>(batch.transactions.size());
+        for (TransactionRow row : batch.transactions) {
+            transactions.add(new Object[]{row.userId(), row.userId(), row.symbol(), row.type().name(), row.symbol(),
+                    row.quantity(), row.price(), row.quantity().multiply(row.price()), row.executionTime()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION, transactions);
+
+        jdbcTemplate.batchUpdate(UNLINK_TRANSACTIONS, closedPositions);
+        jdbcTemplate.batchUpdate(DELETE_HOLDING, closedPositions);
+
+        List<Object[]> balances = new ArrayList<>(batch.cashBalances.size());
+        batch.cashBalances.forEach((userId, balance) -> balances.add(new Object[]{balance, userId}));
+        jdbcTemplate.batchUpdate(UPDATE_CASH, balances);
+
+        log.debug("Journaled {} orders, {} transactions, {} holdings, {} balances",
+                statuses.size(), transactions.size(), batch.holdings.size(), balances.size());
+    }
+
+    /**
+     * Everything a batch of fills changes. Balances and positions only keep their latest
+     * value, so several fills on the same account collapse into one row each.
+     */
+    public static class Batch {
+        private final Map<Long, OrderStatus> orderStatuses = new LinkedHashMap<>();
+        private final Map<Long, BigDecimal> cashBalances = new LinkedHashMap<>();
+        private final Map<HoldingKey, HoldingRow> holdings = new LinkedHashMap<>();
+        private final List<TransactionRow> transactions = new ArrayList<>();
+
+        public void orderStatus(Long orderId, OrderStatus status) {
+            orderStatuses.put(orderId, status);
+        }
+
+        public void cashBalance(Long userId, BigDecimal balance) {
+            cashBalances.put(userId, balance);
+        }
+
+        /**
+         * Latest position of a holding; a zero quantity closes it
+         */
+        public void position(Long userId, String symbol, BigDecimal quantity, BigDecimal avgPrice) {
+            holdings.put(new HoldingKey(userId, symbol), new HoldingRow(userId, symbol, quantity, avgPrice));
+        }
+
+        public void transaction(Long userId, String symbol, TransactionType type,
+                                BigDecimal quantity, BigDecimal price) {
+            transactions.add(new TransactionRow(userId, symbol, type, quantity, price, LocalDateTime.now()));
+        }
+    }
+
+    private record HoldingKey(Long userId, String symbol) {
+    }
+
+    private record HoldingRow(Long userId, String symbol, BigDecimal quantity, BigDecimal avgPrice) {
+    }
+
+    private record TransactionRow(Long userId, String symbol, TransactionType type, BigDecimal quantity,
+                                  BigDecimal price, LocalDateTime executionTime) {
+    }
+}
@@ -0,0 +1,273 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.engine.BarResolution;
+import com.stockexchange.stock_platform.service.api.AlpacaClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local-first store for historical bars.
+ * Bars fetched from Alpaca are kept per (symbol, timeframe) in price_bars, and
+ * price_bar_coverage records which time ranges have been fetched completely. A request
+ * only fetches the sub-ranges that are not covered yet, so repeating a window costs no
+ * REST calls and widening one costs only the difference. Ranges Alpaca could only serve
+ * from the iex fallback feed are stored but not covered, so they are fetched again until
+ * sip has them.
+ * <p>
+ * Times are UTC LocalDateTimes, like everywhere Alpaca bars are requested.
+ */
+@Service
+@Slf4j
+public class HistoricalBarStore {
+
+    private static final String SELECT_COVERAGE = """
+            SELECT start_time, end_time FROM price_bar_coverage
+            WHERE symbol = ? AND timeframe = ? AND start_time <= ? AND end_time >= ?
+            ORDER BY start_time
+            """;
+
+    // Extends an existing range starting at the same time rather than failing on the key
+    private static final String INSERT_COVERAGE = """
+            INSERT INTO price_bar_coverage (symbol, timeframe, start_time, end_time) VALUES (?, ?, ?, ?)
+            ON CONFLICT (symbol, timeframe, start_time)
+            DO UPDATE SET end_time = GREATEST(price_bar_coverage.end_time, EXCLUDED.end_time)
+            """;
+
+    private static final String DELETE_COVERAGE = """
+            DELETE FROM price_bar_coverage
+            WHERE symbol = ? AND timeframe = ? AND start_time <= ? AND end_time >= ?
+            """;
+
+    private static final String SELECT_BARS = """
+            SELECT time, open, high, low, close, volume FROM price_bars
+            WHERE symbol = ? AND timeframe = ? AND time BETWEEN ? AND ?
+            ORDER BY time
+            """;
+
+    private static final String INSERT_BARS_PREFIX =
+            "INSERT INTO price_bars (symbol, timeframe, time, open, high, low, close, volume) VALUES ";
+    private static final String INSERT_BARS_ROW = "(?, ?, ?, ?, ?, ?, ?, ?)";
+    // The bar still in progress when a range was fetched is refreshed by the next fetch
+    private static final String INSERT_BARS_SUFFIX = """
+             ON CONFLICT (symbol, timeframe, time) DO UPDATE SET open = EXCLUDED.open, high = EXCLUDED.high,
+             low = EXCLUDED.low, close = EXCLUDED.close, volume = EXCLUDED.volume""";
+    private static final int[] BAR_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP_WITH_TIMEZONE,
+            Types.NUMERIC, Types.NUMERIC, Types.NUMERIC, Types.NUMERIC, Types.BIGINT};
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private static final ZoneId UTC_TIMEZONE = ZoneId.of("UTC");
+
+    private static final RowMapper<Range> RANGE_MAPPER = (rs, row) -> new Range(
+            toUtc(rs.getObject("start_time", OffsetDateTime.class)),
+            toUtc(rs.getObject("end_time", OffsetDateTime.class)));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AlpacaClient alpacaClient;
+    private final TransactionTemplate transactionTemplate;
+
+    public HistoricalBarStore(JdbcTemplate jdbcTemplate, AlpacaClient alpacaClient,
+                              PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.alpacaClient = alpacaClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * A range of UTC times, inclusive at both ends
+     */
+    record Range(LocalDateTime start, LocalDateTime end) {
+    }
+
+    /**
+     * Bars of one timeframe between two UTC times, fetching only what isn't stored yet
+     */
+    public List<StockPriceDto> getBars(String symbol, BarResolution resolution,
+                                       LocalDateTime startTime, LocalDateTime endTime) {
+        String timeframe = resolution.alpacaTimeframe();
+        List<Range> missing = missingRanges(symbol, timeframe, startTime, endTime);
+        if (!missing.isEmpty()) {
+            log.debug("Fetching {} missing range(s) of {} bars for {}", missing.size(), timeframe, symbol);
+        }
+
+        LocalDateTime completeBefore = completeBefore(resolution);
+        for (Range range : missing) {
+            AlpacaClient.FeedBars fetched =
+                    alpacaClient.getHistoricalFeedBars(symbol, timeframe, range.start(), range.end());
+            store(symbol, timeframe, range, fetched, completeBefore);
+        }
+
+        return jdbcTemplate.query(SELECT_BARS, (rs, row) -> {
+                    LocalDateTime time = toUtc(rs.getObject("time", OffsetDateTime.class));
+                    return StockPriceDto.builder()
+                            .symbol(symbol)
+                            .price(rs.getBigDecimal("close"))
+                            .open(rs.getBigDecimal("open"))
+                            .high(rs.getBigDecimal("high"))
+                            .low(rs.getBigDecimal("low"))
+                            .volume(rs.getLong("volume"))
+                            .timestamp(time)
+                            .zonedTimestamp(time.atZone(UTC_TIMEZONE))
+                            .sourceTimezone(UTC_TIMEZONE)
+                            .build();
+                },
+                symbol, timeframe, toOffset(startTime), toOffset(endTime));
+    }
+
+    /**
+     * Fetch whatever isn't stored yet of a window for many symbols. Symbols missing the same
+     * range (typically the whole window, for symbols never seen) share multi-symbol requests,
+     * so a cold set of symbols costs a few requests instead of one per symbol.
+     */
+    public void prefetch(Collection<String> symbols, BarResolution resolution,
+                         LocalDateTime startTime, LocalDateTime endTime) {
+        String timeframe = resolution.alpacaTimeframe();
+        Map<Range, List<String>> symbolsByRange = new HashMap<>();
+        for (String symbol : symbols) {
+            for (Range range : missingRanges(symbol, timeframe, startTime, endTime)) {
+                symbolsByRange.computeIfAbsent(range, r -> new ArrayList<>()).add(symbol);
+            }
+        }
+
+        LocalDateTime completeBefore = completeBefore(resolution);
+        symbolsByRange.forEach((range, missing) -> {
+            log.debug("Fetching {} bars from {} to {} for {} symbols", timeframe, range.start(), range.end(), missing.size());
+            Map<String, AlpacaClient.FeedBars> fetched =
+                    alpacaClient.getHistoricalBars(missing, timeframe, range.start(), range.end());
+            fetched.forEach((symbol, bars) -> store(symbol, timeframe, range, bars, completeBefore));
+        });
+    }
+
+    private List<Range> missingRanges(String symbol, String timeframe, LocalDateTime startTime, LocalDateTime endTime) {
+        List<Range> covered = jdbcTemplate.query(SELECT_COVERAGE,
+                RANGE_MAPPER,
+                symbol, timeframe, toOffset(endTime), toOffset(startTime));
+        return missingRanges(covered, startTime, endTime);
+    }
+
+    /**
+     * Only buckets that had closed when they were fetched count as covered
+     */
+    private static LocalDateTime completeBefore(BarResolution resolution) {
+        return LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(resolution.bucketStart(System.currentTimeMillis())), ZoneOffset.UTC);
+    }
+
+    private void store(String symbol, String timeframe, Range range, AlpacaClient.FeedBars fetched,
+                       LocalDateTime completeBefore) {
+        insertBars(symbol, timeframe, fetched.bars());
+        if (!fetched.complete()) {
+            // Partial volume; good enough to show, but sip should replace it once it serves the range
+            log.debug("{} {} bars from {} to {} came from the {} feed, not marking them covered",
+                    symbol, timeframe, range.start(), range.end(), fetched.feed());
+            return;
+        }
+
+        LocalDateTime coveredEnd = range.end().isBefore(completeBefore) ? range.end() : completeBefore;
+        if (coveredEnd.isAfter(range.start())) {
+            recordCoverage(symbol, timeframe, new Range(range.start(), coveredEnd));
+        }
+    }
+
+    /**
+     * The parts of [start, end] not inside any of the covered ranges, in order
+     * @param covered ranges sorted by start; they may overlap
+     */
+    static List<Range> missingRanges(List<Range> covered, LocalDateTime start, LocalDateTime end) {
+        List<Range> missing = new ArrayList<>();
+        LocalDateTime cursor = start;
+        for (Range range : covered) {
+            if (range.end().isBefore(cursor)) {
+                continue;
+            }
+            if (range.start().isAfter(end)) {
+                break;
+            }
+            if (range.start().isAfter(cursor)) {
+                missing.add(new Range(cursor, range.start()));
+            }
+            if (range.end().isAfter(cursor)) {
+                cursor = range.end();
+            }
+        }
+        if (cursor.isBefore(end)) {
+            missing.add(new Range(cursor, end));
+        }
+        return missing;
+    }
+
+    /**
+     * Record a fetched range, merged with any range it overlaps or touches. The merged
+     * ranges are replaced in one transaction, so a failure can't lose them.
+     */
+    private void recordCoverage(String symbol, String timeframe, Range range) {
+        transactionTemplate.executeWithoutResult(status -> mergeCoverage(symbol, timeframe, range));
+    }
+
+    private void mergeCoverage(String symbol, String timeframe, Range range) {
+        List<Range> touching = jdbcTemplate.query(SELECT_COVERAGE,
+                RANGE_MAPPER,
+                symbol, timeframe, toOffset(range.end()), toOffset(range.start()));
+
+        LocalDateTime start = range.start();
+        LocalDateTime end = range.end();
+        for (Range other : touching) {
+            start = other.start().isBefore(start) ? other.start() : start;
+            end = other.end().isAfter(end) ? other.end() : end;
+        }
+
+        jdbcTemplate.update(DELETE_COVERAGE, symbol, timeframe, toOffset(range.end()), toOffset(range.start()));
+        jdbcTemplate.update(INSERT_COVERAGE, symbol, timeframe, toOffset(start), toOffset(end));
+    }
+
+    private void insertBars(String symbol, String timeframe, List<StockPriceDto> bars) {
+        for (int from = 0; from < bars.size(); from += ROWS_PER_STATEMENT) {
+            List<StockPriceDto> chunk = bars.subList(from, Math.min(from + ROWS_PER_STATEMENT, bars.size()));
+
+            StringBuilder sql = new StringBuilder(INSERT_BARS_PREFIX);
+            sql.append(String.join(", ", Collections.nCopies(chunk.size(), INSERT_BARS_ROW)));
+            sql.append(INSERT_BARS_SUFFIX);
+
+            Object[] args = new Object[chunk.size() * BAR_TYPES.length];
+            int[] types = new int[args.length];
+            int i = 0;
+            for (StockPriceDto bar : chunk) {
+                System.arraycopy(BAR_TYPES, 0, types, i, BAR_TYPES.length);
+                args[i++] = symbol;
+                args[i++] = timeframe;
+                args[i++] = bar.getZonedTimestamp().toOffsetDateTime();
+                args[i++] = bar.getOpen();
+                args[i++] = bar.getHigh();
+                args[i++] = bar.getLow();
+                args[i++] = bar.getPrice();
+                args[i++] = bar.getVolume();
+            }
+            jdbcTemplate.update(sql.toString(), args, types);
+        }
+    }
+
+    private static OffsetDateTime toOffset(LocalDateTime utcTime) {
+        return utcTime.atOffset(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime toUtc(OffsetDateTime time) {
+        return time.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+    }
+}
@@ -4,51 +4,113 @@ import com.stockexchange.stock_platform.dto.MarketCalendarDto;
 import com.stockexchange.stock_platform.dto.MarketClockDto;
 import com.stockexchange.stock_platform.service.MarketCalendarService;
 import com.stockexchange.stock_platform.service.api.AlpacaClient;
-import lombok.RequiredArgsConstructor;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter.Lane;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
-import java.util.List;
 
+/**
+ * Market clock and calendar answered from memory. A year of trading sessions is loaded
+ * from Alpaca on first use and refreshed once a day; everything else only reads the local
+ * clock, so order placement and chart loads make no calls for it.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class MarketCalendarServiceImpl implements MarketCalendarService {
-    private final AlpacaClient alpacaClient;
     public static final ZoneId NY = ZoneId.of("America/New_York");
 
+    // Loaded from a few weeks back (for the last trading day) to a year ahead
+    private static final int DAYS_BACK = 14;
+    private static final int DAYS_AHEAD = 366;
+    // Reload early rather than run off the end of the loaded range
+    private static final int MIN_DAYS_LEFT = 7;
+
+    private final AlpacaClient alpacaClient;
+    private volatile TradingCalendar calendar;
+
+    public MarketCalendarServiceImpl(AlpacaClient alpacaClient) {
+        this.alpacaClient = alpacaClient;
+    }
+
     @Override
     public boolean isMarketOpen() {
-        MarketClockDto clock = alpacaClient.getMarketClock();
-        return clock.isOpen();
+        return calendar().isOpen(Instant.now());
     }
 
     @Override
     public ZonedDateTime todayOpen() {
         LocalDate today = LocalDate.now(NY);
-        List<MarketCalendarDto> cal = alpacaClient.getMarketCalendar(today, today);
-        if (cal.isEmpty()) {
+        MarketCalendarDto entry = calendar().sessionOn(today);
+        if (entry == null) {
             throw new IllegalStateException("No market calendar entry for today");
         }
-        MarketCalendarDto entry = cal.getFirst();
         // combine date + open time in NY, return as ZonedDateTime
         return ZonedDateTime.of(entry.getDate(), entry.getOpen(), NY);
     }
 
     @Override
     public MarketCalendarDto lastTradingDay() {
-        // look back up to 7 calendar days to find the last trading day
-        LocalDate end = LocalDate.now(NY).minusDays(1);
-        LocalDate start = end.minusDays(7);
-        List<MarketCalendarDto> cal = alpacaClient.getMarketCalendar(start, end);
-        if (cal.isEmpty()) {
+        MarketCalendarDto last = calendar().lastSessionBefore(LocalDate.now(NY));
+        if (last == null) {
             throw new IllegalStateException("No trading days found in last week");
         }
-        // they come sorted ascending by date -> pick the last element
-        return cal.getLast();
+        return last;
     }
 
     @Override
     public MarketClockDto getMarketClock() {
-        return alpacaClient.getMarketClock();
+        return calendar().clockAt(Instant.now());
+    }
+
+    /**
+     * Reload the sessions daily, so calendar changes announced meanwhile are picked up
+     */
+    @Scheduled(cron = "0 0 4 * * *", zone = "America/New_York")
+    public void refreshCalendar() {
+        try {
+            PriorityRateLimiter.runAs(Lane.BACKGROUND, this::load);
+        } catch (Exception e) {
+            // Keep answering from the sessions already loaded
+            log.warn("Failed to refresh market calendar: {}", e.getMessage());
+        }
+    }
+
+    private TradingCalendar calendar() {
+        TradingCalendar current = calendar;
+        LocalDate today = LocalDate.now(NY);
+        if (current != null && !today.plusDays(MIN_DAYS_LEFT).isAfter(current.to())) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = calendar;
+            if (current != null && !today.plusDays(MIN_DAYS_LEFT).isAfter(current.to())) {
+                return current;
+            }
+            try {
+                return load();
+            } catch (RuntimeException e) {
+                if (current != null && current.covers(today)) {
+                    log.warn("Failed to reload market calendar, still covered until {}: {}",
+                            current.to(), e.getMessage());
+                    return current;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private synchronized TradingCalendar load() {
+        LocalDate today = LocalDate.now(NY);
+        LocalDate from = today.minusDays(DAYS_BACK);
+        LocalDate to = today.plusDays(DAYS_AHEAD);
+
+        TradingCalendar loaded = TradingCalendar.of(alpacaClient.getMarketCalendar(from, to), from, to);
+        calendar = loaded;
+        log.info("Loaded market calendar from {} to {}", from, to);
+        return loaded;
     }
 }
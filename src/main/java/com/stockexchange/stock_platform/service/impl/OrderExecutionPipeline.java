@@ -0,0 +1,270 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.engine.AccountState;
+import com.stockexchange.stock_platform.engine.ExecutionRequest;
+import com.stockexchange.stock_platform.exception.InsufficientFundsException;
+import com.stockexchange.stock_platform.exception.InsufficientSharesException;
+import com.stockexchange.stock_platform.model.entity.Holding;
+import com.stockexchange.stock_platform.model.entity.User;
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import com.stockexchange.stock_platform.model.enums.OrderStatus;
+import com.stockexchange.stock_platform.model.enums.TransactionType;
+import com.stockexchange.stock_platform.repository.HoldingRepository;
+import com.stockexchange.stock_platform.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer execution pipeline for orders.
+ * Accounts are sharded by user ID onto single-threaded executors, so every change to a
+ * user's cash and holdings is applied by exactly one thread. Balances are checked and
+ * updated in memory without locks; the database is only written, never read-modify-written
+ * under contention.
+ * <p>
+ * Requests that queue up on a shard while it is busy are executed together: one transaction
+ * and one set of JDBC batches per group instead of one transaction per fill.
+ * <p>
+ * Once a group commits, its fills are settled into the {@link AccountLedger} and the
+ * reservations of failed orders released, so order entry reserves against committed state.
+ */
+@Service
+@Slf4j
+public class OrderExecutionPipeline {
+
+    private final UserRepository userRepository;
+    private final HoldingRepository holdingRepository;
+    private final FillJournal fillJournal;
+    private final AccountLedger ledger;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+
+    private final ExecutorService[] shards;
+
+    // Requests waiting for their shard, drained in groups of up to maxBatchSize
+    private final List<Queue<PendingExecution>> shardQueues = new ArrayList<>();
+
+    // One account map per shard, only ever accessed from that shard's thread
+    private final List<Map<Long, AccountState>> shardAccounts = new ArrayList<>();
+
+    public OrderExecutionPipeline(UserRepository userRepository,
+                                  HoldingRepository holdingRepository,
+                                  FillJournal fillJournal,
+                                  AccountLedger ledger,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${execution.shards:4}") int shardCount,
+                                  @Value("${execution.maxBatchSize:100}") int maxBatchSize) {
+        this.userRepository = userRepository;
+        this.holdingRepository = holdingRepository;
+        this.fillJournal = fillJournal;
+        this.ledger = ledger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+
+        this.shards = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String threadName = "execution-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, threadName));
+            shardQueues.add(new ConcurrentLinkedQueue<>());
+            shardAccounts.add(new HashMap<>());
+        }
+        log.info("Order execution pipeline started with {} shards", shardCount);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        for (ExecutorService shard : shards) {
+            shard.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Queue an order for execution on the shard that owns its account.
+     * The order must already be committed as PENDING, with its cash or shares reserved.
+     * @return the final status; completes exceptionally with InsufficientFundsException or
+     * InsufficientSharesException only if the account can't cover the order after all,
+     * i.e. the database changed behind the ledger's back
+     */
+    public CompletableFuture<OrderStatus> execute(ExecutionRequest request) {
+        int shard = shardFor(request.getUserId());
+        CompletableFuture<OrderStatus> result = new CompletableFuture<>();
+        shardQueues.get(shard).add(new PendingExecution(request, result));
+        shards[shard].execute(() -> drain(shard));
+        return result;
+    }
+
+    private int shardFor(Long userId) {
+        return Math.floorMod(userId.hashCode(), shards.length);
+    }
+
+    /**
+     * Runs on the shard thread. Every request schedules a drain, so a drain that finds the
+     * queue already emptied by an earlier one simply does nothing.
+     */
+    private void drain(int shard) {
+        Queue<PendingExecution> queue = shardQueues.get(shard);
+        List<PendingExecution> batch = new ArrayList<>();
+        PendingExecution next;
+        while (batch.size() < maxBatchSize && (next = queue.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            executeBatch(shard, batch);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+
+            // Don't let one bad order fail the whole group
+            log.warn("Execution batch of {} orders failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (PendingExecution pending : batch) {
+                try {
+                    executeBatch(shard, List.of(pending));
+                } catch (RuntimeException single) {
+                    pending.result().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void executeBatch(int shard, List<PendingExecution> batch) {
+        Map<Long, AccountState> accounts = shardAccounts.get(shard);
+
+        List<Outcome> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(status -> {
+                Map<Long, OrderStatus> orderStatuses = fillJournal.lockOrderStatuses(
+                        batch.stream().map(pending -> pending.request().getOrderId()).toList());
+                FillJournal.Batch writes = new FillJournal.Batch();
+
+                List<Outcome> results = new ArrayList<>(batch.size());
+                for (PendingExecution pending : batch) {
+                    ExecutionRequest request = pending.request();
+                    OrderStatus current = orderStatuses.get(request.getOrderId());
+                    if (current == null) {
+                        throw new IllegalArgumentException("Order not found");
+                    }
+
+                    if (current != OrderStatus.PENDING) {
+                        // Canceled or already handled since it was queued
+                        results.add(new Outcome(current, false));
+                        continue;
+                    }
+
+                    AccountState account = accounts.computeIfAbsent(request.getUserId(), this::loadAccount);
+                    Outcome outcome = applyFill(account, request, writes);
+                    orderStatuses.put(request.getOrderId(), outcome.status());
+                    results.add(outcome);
+                }
+
+                fillJournal.write(writes);
+                return results;
+            });
+        } catch (RuntimeException e) {
+            // The in-memory accounts may now be ahead of the database; reload them on next use
+            batch.forEach(pending -> accounts.remove(pending.request().getUserId()));
+            throw e;
+        }
+
+        // Only settle and report results once the whole batch is committed
+        for (int i = 0; i < batch.size(); i++) {
+            PendingExecution pending = batch.get(i);
+            Outcome outcome = outcomes.get(i);
+            settle(accounts.get(pending.request().getUserId()), pending.request(), outcome.status());
+            if (outcome.rejected()) {
+                pending.result().completeExceptionally(pending.request().getSide() == OrderSide.BUY ?
+                        new InsufficientFundsException("Insufficient funds to execute buy order") :
+                        new InsufficientSharesException("Insufficient shares to execute sell order"));
+            } else {
+                pending.result().complete(outcome.status());
+            }
+        }
+    }
+
+    /**
+     * Bring the ledger in line with a committed outcome: a fill hands over the account's new
+     * cash and share count, anything else that's final gives back the order's reservation
+     */
+    private void settle(AccountState account, ExecutionRequest request, OrderStatus status) {
+        if (status == OrderStatus.EXECUTED) {
+            if (account != null) {
+                AccountState.Position position = account.getPosition(request.getSymbol());
+                ledger.account(request.getUserId()).settle(request.getOrderId(), account.getCashBalance(),
+                        request.getSymbol(), position != null ? position.getQuantity() : BigDecimal.ZERO);
+            }
+        } else if (status != OrderStatus.PENDING) {
+            ledger.release(request.getUserId(), request.getOrderId());
+        }
+    }
+
+    private Outcome applyFill(AccountState account, ExecutionRequest request, FillJournal.Batch writes) {
+        String symbol = request.getSymbol();
+        BigDecimal quantity = request.getQuantity();
+        BigDecimal price = request.getPrice();
+
+        boolean covered = request.getSide() == OrderSide.BUY
+                ? account.canBuy(quantity.multiply(price))
+                : account.canSell(symbol, quantity);
+
+        if (!covered) {
+            // Reserved at placement, so only a ledger out of step with the database gets here
+            writes.orderStatus(request.getOrderId(), OrderStatus.FAILED);
+            return new Outcome(OrderStatus.FAILED, true);
+        }
+
+        AccountState.Position position = request.getSide() == OrderSide.BUY
+                ? account.applyBuy(symbol, quantity, price)
+                : account.applySell(symbol, quantity, price);
+
+        // Record the new in-memory state for the journal
+        TransactionType type = request.getSide() == OrderSide.BUY ? TransactionType.BUY : TransactionType.SELL;
+        writes.cashBalance(request.getUserId(), account.getCashBalance());
+        writes.position(request.getUserId(), symbol, position.getQuantity(), position.getAvgPrice());
+        writes.transaction(request.getUserId(), symbol, type, quantity, price);
+        writes.orderStatus(request.getOrderId(), OrderStatus.EXECUTED);
+        return new Outcome(OrderStatus.EXECUTED, false);
+    }
+
+    private AccountState loadAccount(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+
+        AccountState account = new AccountState(userId, user.getCashBalance());
+        for (Holding holding : holdingRepository.findByUserId(userId)) {
+            account.putPosition(holding.getSymbol(), holding.getQuantity(), holding.getAvgPrice());
+        }
+        return account;
+    }
+
+    private record PendingExecution(ExecutionRequest request, CompletableFuture<OrderStatus> result) {
+    }
+
+    /**
+     * Final status of an order and whether it was rejected for lack of cash or shares
+     */
+    private record Outcome(OrderStatus status, boolean rejected) {
+    }
+}
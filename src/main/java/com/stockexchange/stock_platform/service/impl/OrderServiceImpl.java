@@ -1,37 +1,49 @@
 package com.stockexchange.stock_platform.service.impl;
 
 import com.stockexchange.stock_platform.dto.OrderDto;
+import com.stockexchange.stock_platform.engine.BookOrder;
+import com.stockexchange.stock_platform.engine.ExecutionRequest;
+import com.stockexchange.stock_platform.engine.FixedPoint;
+import com.stockexchange.stock_platform.engine.LedgerAccount;
+import com.stockexchange.stock_platform.engine.LimitOrderTrigger;
+import com.stockexchange.stock_platform.engine.OrderBook;
 import com.stockexchange.stock_platform.exception.InsufficientFundsException;
 import com.stockexchange.stock_platform.exception.InsufficientSharesException;
-import com.stockexchange.stock_platform.model.entity.Holding;
 import com.stockexchange.stock_platform.model.entity.Order;
 import com.stockexchange.stock_platform.model.entity.User;
 import com.stockexchange.stock_platform.model.enums.OrderSide;
 import com.stockexchange.stock_platform.model.enums.OrderStatus;
 import com.stockexchange.stock_platform.model.enums.OrderType;
-import com.stockexchange.stock_platform.model.enums.TransactionType;
 import com.stockexchange.stock_platform.pattern.factory.OrderRequest;
 import com.stockexchange.stock_platform.pattern.factory.OrderRequestFactory;
-import com.stockexchange.stock_platform.repository.HoldingRepository;
 import com.stockexchange.stock_platform.repository.OrderRepository;
 import com.stockexchange.stock_platform.repository.UserRepository;
 import com.stockexchange.stock_platform.service.MarketCalendarService;
 import com.stockexchange.stock_platform.service.OrderService;
 import com.stockexchange.stock_platform.service.StockPriceService;
-import com.stockexchange.stock_platform.service.UserService;
+import com.stockexchange.stock_platform.service.api.AlpacaWebSocketClient;
+import com.stockexchange.stock_platform.util.ObserverDispatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.DayOfWeek;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,36 +52,87 @@ public class OrderServiceImpl implements OrderService {
 
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
-    private final HoldingRepository holdingRepository;
-    private final UserService userService;
     private final StockPriceService stockPriceService;
     private final MarketCalendarService marketCalendarService;
+    private final AlpacaWebSocketClient webSocketClient;
+    private final OrderExecutionPipeline executionPipeline;
+    private final AccountLedger ledger;
     private final Map<OrderType, OrderRequestFactory> orderFactories = new HashMap<>();
 
+    // Time from receiving an order to acknowledging it, execution not included
+    private final Timer orderAck;
+
+    // Resting limit orders, one price-time priority book per symbol
+    private final Map<String, OrderBook> orderBooks = new ConcurrentHashMap<>();
+
+    // Screens real-time bars and trades against each book's best limits before any matching happens
+    private final LimitOrderTrigger limitOrderTrigger = new LimitOrderTrigger(this::onLimitCrossed);
+
     public OrderServiceImpl(OrderRepository orderRepository,
                             UserRepository userRepository,
-                            HoldingRepository holdingRepository,
-                            UserService userService,
                             StockPriceService stockPriceService,
                             MarketCalendarService marketCalendarService,
-                            List<OrderRequestFactory> factoryList) {
+                            AlpacaWebSocketClient webSocketClient,
+                            OrderExecutionPipeline executionPipeline,
+                            AccountLedger ledger,
+                            List<OrderRequestFactory> factoryList,
+                            MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
         this.userRepository = userRepository;
-        this.holdingRepository = holdingRepository;
-        this.userService = userService;
         this.stockPriceService = stockPriceService;
         this.marketCalendarService = marketCalendarService;
+        this.webSocketClient = webSocketClient;
+        this.executionPipeline = executionPipeline;
+        this.ledger = ledger;
 
         // Register factories by order type
         for (OrderRequestFactory factory : factoryList) {
             orderFactories.put(factory.getOrderType(), factory);
         }
+
+        this.orderAck = Timer.builder("orders.ack")
+                .description("Order placement latency up to the acknowledgement")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        // Rebuild the in-memory order books from the resting limit orders in the database
+        List<Order> restingOrders = orderRepository.findByStatusAndOrderType(OrderStatus.PENDING, OrderType.LIMIT);
+        for (Order order : restingOrders) {
+            addToOrderBook(order);
+        }
+        log.info("Rebuilt order books with {} resting limit orders across {} symbols",
+                restingOrders.size(), orderBooks.size());
+
+        // Check resting orders against every real-time bar and trade as soon as it arrives;
+        // lossless, since a conflated-away price may be the one that crossed a limit
+        webSocketClient.registerObserver(limitOrderTrigger, ObserverDispatcher.BackpressurePolicy.LOSSLESS);
+        webSocketClient.registerTopOfBookObserver(limitOrderTrigger, ObserverDispatcher.BackpressurePolicy.LOSSLESS);
     }
 
+    /**
+     * Accepts, validates and acknowledges an order; execution happens afterwards on the
+     * pipeline, so the returned order is PENDING and its outcome shows up on the order.
+     * Not transactional on purpose: the order has to be committed before the execution
+     * pipeline picks it up on another thread.
+     */
     @Override
-    @Transactional
     public OrderDto placeOrder(Long userId, String symbol, OrderType type, OrderSide side,
                                BigDecimal quantity, BigDecimal price) {
+        return orderAck.record(() -> acceptOrder(userId, symbol, type, side, quantity, price));
+    }
+
+    private OrderDto acceptOrder(Long userId, String symbol, OrderType type, OrderSide side,
+                                 BigDecimal quantity, BigDecimal price) {
+        if (symbol == null || symbol.isBlank()) {
+            throw new IllegalArgumentException("Symbol is required");
+        }
+        // One spelling for the order, its reservation, the book and the holding it settles into
+        symbol = symbol.trim().toUpperCase();
+
         // Get the appropriate factory based on order type
         OrderRequestFactory factory = orderFactories.get(type);
         if (factory == null) {
@@ -79,16 +142,17 @@ public class OrderServiceImpl implements OrderService {
         // Create the order request using the factory
         OrderRequest orderRequest = factory.createOrderRequest(userId, symbol, side, quantity, price);
 
-        // Validate the order request
-        if (!orderRequest.validate()) {
+        // Reserve the cash or shares the order needs in the in-memory ledger
+        LedgerAccount account = ledger.account(userId);
+        LedgerAccount.Reservation reservation = account.reserve(side, symbol, quantity, orderRequest.getPrice());
+        if (reservation == null) {
             throw side == OrderSide.BUY ?
                     new InsufficientFundsException("Insufficient funds to place buy order") :
                     new InsufficientSharesException("Insufficient shares to place sell order");
         }
 
-        // Create and save the order entity
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        // Create and save the order entity; the ledger already proved the user exists
+        User user = userRepository.getReferenceById(userId);
 
         Order order = Order.builder()
                 .user(user)
@@ -100,15 +164,28 @@ public class OrderServiceImpl implements OrderService {
                 .price(orderRequest.getPrice())
                 .build();
 
-        Order savedOrder = orderRepository.save(order);
+        Order savedOrder;
+        try {
+            savedOrder = orderRepository.save(order);
+        } catch (RuntimeException e) {
+            account.release(reservation);
+            throw e;
+        }
+        account.track(savedOrder.getId(), reservation);
 
-        // For market orders, execute immediately if market is open, otherwise leave pending
+        // For market orders, start executing if market is open, otherwise leave pending
         if (type == OrderType.MARKET) {
             if (marketCalendarService.isMarketOpen()) {
-                executeOrder(savedOrder);
+                executeOrder(savedOrder).exceptionally(e -> {
+                    log.warn("Market order {} failed: {}", savedOrder.getId(), e.getMessage());
+                    return OrderStatus.FAILED;
+                });
             } else {
                 log.info("Market order created off-hours; will execute at open: {}", savedOrder.getId());
             }
+        } else {
+            // Only rest the order in the book once it is committed, so a tick can't execute an unsaved order
+            runAfterCommit(() -> addToOrderBook(savedOrder));
         }
 
         return convertToDto(savedOrder);
@@ -147,152 +224,141 @@ public class OrderServiceImpl implements OrderService {
             throw new IllegalStateException("Only pending orders can be canceled");
         }
 
+        // Conditional, so an execution committing meanwhile wins and the cancel fails
+        if (orderRepository.cancelIfPending(orderId) == 0) {
+            throw new IllegalStateException("Only pending orders can be canceled");
+        }
         order.setStatus(OrderStatus.CANCELED);
-        Order savedOrder = orderRepository.save(order);
 
-        return convertToDto(savedOrder);
+        // Take it out of the book and give back what it reserved once the cancellation is
+        // committed; until then it is still pending
+        Long userId = order.getUser().getId();
+        runAfterCommit(() -> {
+            removeFromOrderBook(order);
+            ledger.release(userId, orderId);
+        });
+
+        return convertToDto(order);
     }
 
     @Override
     @Scheduled(fixedRate = 60000) // Run every minute
-    @Transactional
     public void processOrders() {
         if (!marketCalendarService.isMarketOpen()) {
             // Don't process orders when market is closed
             return;
         }
 
-        // Find all pending orders
-        List<Order> pendingOrders = orderRepository.findByStatus(OrderStatus.PENDING);
-
-        for (Order order : pendingOrders) {
-            // Execute all market orders (these were placed when market was closed)
-            if (order.getOrderType() == OrderType.MARKET) {
-                log.info("Executing pending market order: {}", order.getId());
-                executeOrder(order);
-            }
-            // For limit orders, check if conditions are met
-            else if (order.getOrderType() == OrderType.LIMIT) {
-                // Get current price
-                BigDecimal currentPrice = stockPriceService.getCurrentPrice(order.getSymbol()).getPrice();
+        // Execute all pending market orders (these were placed when market was closed).
+        // Limit orders are triggered by the real-time bar stream, not by this poll.
+        List<Order> pendingMarketOrders = orderRepository.findByStatusAndOrderType(OrderStatus.PENDING, OrderType.MARKET);
+        List<CompletableFuture<OrderStatus>> executions = new ArrayList<>();
+        for (Order order : pendingMarketOrders) {
+            log.info("Executing pending market order: {}", order.getId());
+            executions.add(executeOrder(order).exceptionally(e -> {
+                log.warn("Pending market order {} failed: {}", order.getId(), e.getMessage());
+                return OrderStatus.FAILED;
+            }));
+        }
 
-                boolean shouldExecute = isShouldExecute(order, currentPrice);
+        // Wait for the pipeline, so the next run never picks up orders that are still in flight
+        CompletableFuture.allOf(executions.toArray(new CompletableFuture[0])).join();
+    }
 
-                if (shouldExecute) {
-                    log.info("Executing limit order: {} (current price: {})", order.getId(), currentPrice);
-                    executeOrder(order);
-                }
-            }
+    /**
+     * Called by the limit order trigger when a bar or trade crosses the best bid or ask of a symbol
+     */
+    private void onLimitCrossed(String symbol, long fixedPointPrice) {
+        OrderBook book = orderBooks.get(symbol);
+        if (book == null || !marketCalendarService.isMarketOpen()) {
+            return;
         }
-    }
 
-    private static boolean isShouldExecute(Order order, BigDecimal currentPrice) {
-        boolean shouldExecute = false;
+        BigDecimal lastPrice = FixedPoint.toBigDecimal(fixedPointPrice);
 
-        // For buy orders, execute if current price <= limit price
-        if (order.getSide() == OrderSide.BUY && currentPrice.compareTo(order.getPrice()) <= 0) {
-            shouldExecute = true;
+        List<BookOrder> triggered;
+        synchronized (book) {
+            triggered = book.match(lastPrice);
+            publishThresholds(book);
         }
-        // For sell orders, execute if current price >= limit price
-        else if (order.getSide() == OrderSide.SELL && currentPrice.compareTo(order.getPrice()) >= 0) {
-            shouldExecute = true;
+
+        for (BookOrder order : triggered) {
+            log.info("Executing limit order: {} (current price: {})", order.getOrderId(), lastPrice);
+            executionPipeline.execute(new ExecutionRequest(order.getOrderId(), order.getUserId(),
+                            order.getSymbol(), order.getSide(), order.getQuantity(), order.getPrice()))
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        if (cause instanceof InsufficientFundsException || cause instanceof InsufficientSharesException) {
+                            log.warn("Limit order {} failed: {}", order.getOrderId(), cause.getMessage());
+                            return OrderStatus.FAILED;
+                        }
+                        // Still pending in the database: rest it again, so the next cross retries it
+                        log.warn("Limit order {} could not be executed, back in the book: {}",
+                                order.getOrderId(), cause.getMessage());
+                        restoreToOrderBook(order);
+                        return OrderStatus.PENDING;
+                    });
         }
-        return shouldExecute;
     }
 
-    @Transactional
-    protected void executeOrder(Order order) {
-        // Here we would implement order matching logic in a real exchange
-        // For this example, we'll just process the order directly
-
-        BigDecimal totalAmount = order.getQuantity().multiply(order.getPrice());
-
-        if (order.getSide() == OrderSide.BUY) {
-            // Process buy order
-            executeByOrder(order, totalAmount);
-        } else {
-            // Process sell order
-            executeSellOrder(order, totalAmount);
+    private void addToOrderBook(Order order) {
+        String symbol = order.getSymbol().toUpperCase();
+        OrderBook book = orderBooks.computeIfAbsent(symbol, OrderBook::new);
+        synchronized (book) {
+            book.add(new BookOrder(order.getId(), order.getUser().getId(), symbol,
+                    order.getSide(), order.getPrice(), order.getQuantity()));
+            publishThresholds(book);
         }
 
-        // Update order status
-        order.setStatus(OrderStatus.EXECUTED);
-        orderRepository.save(order);
+        // Make sure we receive real-time prices for this symbol
+        stockPriceService.registerSymbolForTracking(symbol);
     }
 
-    private void executeByOrder(Order order, BigDecimal totalAmount) {
-        User user = order.getUser();
-
-        // Check if user has enough cash
-        if (user.getCashBalance().compareTo(totalAmount) < 0) {
-            order.setStatus(OrderStatus.FAILED);
-            orderRepository.save(order);
-            throw new InsufficientFundsException("Insufficient funds to execute buy order");
+    private void restoreToOrderBook(BookOrder order) {
+        OrderBook book = orderBooks.computeIfAbsent(order.getSymbol(), OrderBook::new);
+        synchronized (book) {
+            book.restore(order);
+            publishThresholds(book);
         }
-
-        // Deduct cash from user's balance
-        user.setCashBalance(user.getCashBalance().subtract(totalAmount));
-        userRepository.save(user);
-
-        // Update or create holding
-        Holding holding = holdingRepository.findByUserAndSymbol(user, order.getSymbol())
-                .orElse(Holding.builder()
-                        .user(user)
-                        .symbol(order.getSymbol())
-                        .quantity(BigDecimal.ZERO)
-                        .avgPrice(BigDecimal.ZERO)
-                        .build());
-
-        // Calculate new average price
-        BigDecimal totalShares = holding.getQuantity().add(order.getQuantity());
-        BigDecimal totalInvestment = holding.getQuantity().multiply(holding.getAvgPrice())
-                .add(totalAmount);
-        BigDecimal newAvgPrice = totalInvestment.divide(totalShares, 4, RoundingMode.HALF_UP);
-
-        holding.setQuantity(totalShares);
-        holding.setAvgPrice(newAvgPrice);
-        holdingRepository.save(holding);
-
-        // Record transaction
-        userService.recordTransaction(user.getId(), order.getSymbol(), TransactionType.BUY,
-                order.getQuantity(), order.getPrice());
     }
 
-    private void executeSellOrder(Order order, BigDecimal totalAmount) {
-        User user = order.getUser();
-
-        // Find the holding
-        Holding holding = holdingRepository.findByUserAndSymbol(user, order.getSymbol())
-                .orElseThrow(() -> {
-                    order.setStatus(OrderStatus.FAILED);
-                    orderRepository.save(order);
-                    return new InsufficientSharesException("No shares of " + order.getSymbol() + " found");
-                });
-
-        // Check if user has enough shares
-        if (holding.getQuantity().compareTo(order.getQuantity()) < 0) {
-            order.setStatus(OrderStatus.FAILED);
-            orderRepository.save(order);
-            throw new InsufficientSharesException("Insufficient shares to execute sell order");
+    private void removeFromOrderBook(Order order) {
+        OrderBook book = orderBooks.get(order.getSymbol().toUpperCase());
+        if (book != null) {
+            synchronized (book) {
+                book.remove(order.getId());
+                publishThresholds(book);
+            }
         }
+    }
 
-        // Update holding
-        holding.setQuantity(holding.getQuantity().subtract(order.getQuantity()));
+    /**
+     * Must be called while holding the book's lock so thresholds are published in mutation order
+     */
+    private void publishThresholds(OrderBook book) {
+        limitOrderTrigger.updateThresholds(book.getSymbol(), book.bestBid(), book.bestAsk());
+    }
 
-        // If all shares sold, remove the holding
-        if (holding.getQuantity().compareTo(BigDecimal.ZERO) == 0) {
-            holdingRepository.delete(holding);
-        } else {
-            holdingRepository.save(holding);
+    private static void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
 
-        // Add cash to user's balance
-        user.setCashBalance(user.getCashBalance().add(totalAmount));
-        userRepository.save(user);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 
-        // Record transaction
-        userService.recordTransaction(user.getId(), order.getSymbol(), TransactionType.SELL,
-                order.getQuantity(), order.getPrice());
+    /**
+     * Hand an order to the execution pipeline, which applies it on the shard owning the account
+     */
+    private CompletableFuture<OrderStatus> executeOrder(Order order) {
+        return executionPipeline.execute(new ExecutionRequest(order.getId(), order.getUser().getId(),
+                order.getSymbol(), order.getSide(), order.getQuantity(), order.getPrice()));
     }
 
     private OrderDto convertToDto(Order order) {
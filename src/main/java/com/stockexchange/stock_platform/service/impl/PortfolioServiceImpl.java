@@ -16,9 +16,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,7 +27,8 @@ public class PortfolioServiceImpl implements PortfolioService, StockPriceObserve
     private final HoldingRepository holdingRepository;
     private final UserRepository userRepository;
     private final StockPriceService stockPriceService;
-    private final Map<String, StockPriceDto> latestPrices = new HashMap<>();
+    // Written by the observer thread, read by request threads
+    private final Map<String, StockPriceDto> latestPrices = new ConcurrentHashMap<>();
 
     public PortfolioServiceImpl(HoldingRepository holdingRepository,
                                 UserRepository userRepository,
@@ -92,6 +93,7 @@ public class PortfolioServiceImpl implements PortfolioService, StockPriceObserve
     @Override
     public List<HoldingDto> getUserHoldings(Long userId) {
         List<Holding> holdings = holdingRepository.findByUserId(userId);
+        prefetchPrices(holdings);
         return holdings.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
@@ -138,6 +140,19 @@ public class PortfolioServiceImpl implements PortfolioService, StockPriceObserve
                 .build();
     }
 
+    /**
+     * Fetch the prices of holdings not in our cache yet in one batched lookup
+     */
+    private void prefetchPrices(List<Holding> holdings) {
+        List<String> missing = holdings.stream()
+                .map(Holding::getSymbol)
+                .filter(symbol -> !latestPrices.containsKey(symbol))
+                .toList();
+        if (!missing.isEmpty()) {
+            stockPriceService.getCurrentPrices(missing).forEach(latestPrices::put);
+        }
+    }
+
     private StockPriceDto getCurrentPrice(String symbol) {
         // Check our cache first
         StockPriceDto cachedPrice = latestPrices.get(symbol);
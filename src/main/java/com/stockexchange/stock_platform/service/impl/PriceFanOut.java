@@ -0,0 +1,249 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes real-time prices to STOMP clients.
+ * Updates are conflated per symbol and flushed on a fixed interval, so however fast a symbol
+ * ticks, every client gets at most one frame for it per interval. Each update is serialised
+ * to JSON once and the same bytes are shared by every destination and session it goes to.
+ * Flushes run on their own thread, so slow scheduled jobs elsewhere can't hold prices back.
+ * <p>
+ * Destinations:
+ * <ul>
+ *     <li>/topic/prices/{symbol} - the full price, as before</li>
+ *     <li>/topic/prices/{symbol}/delta - only the fields that changed since the last frame;
+ *     after a new subscription, one frame with every field (see {@link #deltaSubscribed})</li>
+ *     <li>/user/queue/prices - one array per interval with every changed symbol a session
+ *     watches (see {@link #watch})</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class PriceFanOut {
+
+    private static final byte[] ARRAY_START = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_END = "]".getBytes(StandardCharsets.UTF_8);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean deltasEnabled;
+    private final long intervalMs;
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "price-fanout"));
+
+    // Latest update per symbol since the last flush
+    private final Map<String, StockPriceDto> pending = new ConcurrentHashMap<>();
+
+    // Last price sent per symbol, the base for delta frames; only used by the flushing thread
+    private final Map<String, StockPriceDto> lastSent = new HashMap<>();
+
+    // Symbols whose next delta frame carries every field, for sessions that just subscribed
+    private final Set<String> keyframesDue = ConcurrentHashMap.newKeySet();
+
+    // Symbols each STOMP session watches through the batched destination
+    private final Map<String, Set<String>> watchedBySession = new ConcurrentHashMap<>();
+
+    public PriceFanOut(SimpMessagingTemplate messagingTemplate,
+                       ObjectMapper objectMapper,
+                       @Value("${prices.fanout.deltas:true}") boolean deltasEnabled,
+                       @Value("${prices.fanout.intervalMs:250}") long intervalMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.deltasEnabled = deltasEnabled;
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // Keep flushing; an exception would cancel every later run
+                log.error("Price fan-out flush failed: {}", e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Queue a price for the next flush, replacing any unsent price for the same symbol
+     */
+    public void publish(StockPriceDto stockPrice) {
+        pending.put(stockPrice.getSymbol().toUpperCase(), stockPrice);
+    }
+
+    /**
+     * Replace the set of symbols a session receives on its batched destination
+     */
+    public void watch(String sessionId, Set<String> symbols) {
+        Set<String> normalized = ConcurrentHashMap.newKeySet();
+        for (String symbol : symbols) {
+            if (symbol != null && !symbol.isBlank()) {
+                normalized.add(symbol.toUpperCase());
+            }
+        }
+        watchedBySession.put(sessionId, normalized);
+        log.debug("Session {} watches {} symbols", sessionId, normalized.size());
+    }
+
+    public void unwatch(String sessionId) {
+        watchedBySession.remove(sessionId);
+    }
+
+    /**
+     * A session subscribed to a symbol's delta destination and has nothing to apply deltas
+     * to yet. The symbol's delta frame after the next interval carries every field, with its
+     * last price if it hasn't changed; waiting an interval lets the broker register the
+     * subscription first.
+     */
+    public void deltaSubscribed(String symbol) {
+        if (deltasEnabled) {
+            String upperSymbol = symbol.toUpperCase();
+            flusher.schedule(() -> keyframesDue.add(upperSymbol), intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void flush() {
+        if (pending.isEmpty() && keyframesDue.isEmpty()) {
+            return;
+        }
+
+        // Serialise every changed symbol exactly once
+        Map<String, byte[]> frames = new HashMap<>();
+        for (String symbol : pending.keySet()) {
+            // Take whatever is latest now; a publish after this lands in the next flush
+            StockPriceDto price = pending.remove(symbol);
+            if (price == null) {
+                continue;
+            }
+            try {
+                byte[] frame = objectMapper.writeValueAsBytes(price);
+                frames.put(symbol, frame);
+                send("/topic/prices/" + symbol, frame, null);
+
+                if (deltasEnabled) {
+                    StockPriceDto previous = keyframesDue.remove(symbol) ? null : lastSent.get(symbol);
+                    send("/topic/prices/" + symbol + "/delta", delta(price, previous), null);
+                }
+                lastSent.put(symbol, price);
+            } catch (JsonProcessingException e) {
+                log.error("Failed to serialise price update for {}: {}", symbol, e.getMessage());
+            }
+        }
+
+        sendKeyframes();
+        sendBatches(frames);
+    }
+
+    /**
+     * Full delta frames of the last price sent, for symbols that didn't change this interval
+     * but have a new subscriber
+     */
+    private void sendKeyframes() {
+        for (String symbol : keyframesDue) {
+            keyframesDue.remove(symbol);
+            StockPriceDto last = lastSent.get(symbol);
+            if (last == null) {
+                // Nothing sent yet; its first delta carries every field anyway
+                continue;
+            }
+            try {
+                send("/topic/prices/" + symbol + "/delta", delta(last, null), null);
+            } catch (JsonProcessingException e) {
+                log.error("Failed to serialise price update for {}: {}", symbol, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One frame per session holding all of its watched symbols that changed, built from the
+     * already serialised per-symbol bytes
+     */
+    private void sendBatches(Map<String, byte[]> frames) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Map.Entry<String, Set<String>> session : watchedBySession.entrySet()) {
+            batch.reset();
+            for (String symbol : session.getValue()) {
+                byte[] frame = frames.get(symbol);
+                if (frame != null) {
+                    batch.writeBytes(batch.size() == 0 ? ARRAY_START : ARRAY_SEPARATOR);
+                    batch.writeBytes(frame);
+                }
+            }
+            if (batch.size() > 0) {
+                batch.writeBytes(ARRAY_END);
+                send("/queue/prices", batch.toByteArray(), session.getKey());
+            }
+        }
+    }
+
+    /**
+     * The symbol plus every field that differs from the previous frame; a symbol's first
+     * delta carries all of its fields
+     */
+    private byte[] delta(StockPriceDto current, StockPriceDto previous) throws JsonProcessingException {
+        ObjectNode delta = objectMapper.createObjectNode();
+        delta.put("symbol", current.getSymbol());
+
+        ObjectNode full = objectMapper.valueToTree(current);
+        ObjectNode before = previous != null ? objectMapper.valueToTree(previous) : null;
+        full.fields().forEachRemaining(field -> {
+            if (!"symbol".equals(field.getKey())
+                    && (before == null || !Objects.equals(before.get(field.getKey()), field.getValue()))) {
+                delta.set(field.getKey(), field.getValue());
+            }
+        });
+        return objectMapper.writeValueAsBytes(delta);
+    }
+
+    /**
+     * Send pre-serialised JSON, either to a broadcast destination or to one session's
+     * user destination. The message is built here rather than converted: the broker's
+     * converters would take a byte[] sent as application/json for an object and write it
+     * out as a base64 string.
+     */
+    private void send(String destination, byte[] payload, String sessionId) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+
+        if (sessionId != null) {
+            // Resolved like convertAndSendToUser; the session header picks the one session
+            headers.setSessionId(sessionId);
+            destination = messagingTemplate.getUserDestinationPrefix()
+                    + sessionId.replace("/", "%2F") + destination;
+        }
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+    }
+}
@@ -0,0 +1,164 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.engine.BarAggregator;
+import com.stockexchange.stock_platform.engine.BarResolution;
+import com.stockexchange.stock_platform.engine.Tick;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The stockPrices_* caches: one chart series per symbol and timeframe, in UTC, keyed by
+ * the symbol alone so a tick can find every series it belongs to.
+ * <p>
+ * Intraday series are kept current from the stream instead of being evicted: each minute
+ * bar replaces the series' last bar, or appends a new one when a bucket starts. The bar
+ * written is the aggregator's bar for the bucket, so applying a tick twice (e.g. on two
+ * nodes sharing the cache) doesn't count it twice.
+ */
+@Service
+@Slf4j
+public class PriceSeriesCache {
+
+    private static final String CACHE_PREFIX = "stockPrices_";
+    private static final ZoneId NY = ZoneId.of("America/New_York");
+    private static final LocalTime SESSION_OPEN = LocalTime.of(9, 30);
+    private static final LocalTime SESSION_CLOSE = LocalTime.of(16, 0);
+
+    // Timeframes updated from the stream, and the resolution they're charted at
+    private static final Map<String, BarResolution> LIVE_TIMEFRAMES = Map.of(
+            "1d", BarResolution.FIVE_MINUTES,
+            "1w", BarResolution.THIRTY_MINUTES);
+
+    private final CacheManager cacheManager;
+
+    public PriceSeriesCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * The cached series of a symbol, or the loaded one, which is cached unless it's empty.
+     * Cached lists are shared, so callers must not modify them or their elements.
+     */
+    @SuppressWarnings("unchecked")
+    public List<StockPriceDto> get(String symbol, String timeframe, Supplier<List<StockPriceDto>> loader) {
+        Cache cache = cacheManager.getCache(CACHE_PREFIX + timeframe);
+        List<StockPriceDto> cached = cache.get(symbol, List.class);
+        if (cached != null) {
+            return cached;
+        }
+
+        log.debug("CACHE MISS: computing prices for {} [{}]", symbol, timeframe);
+        List<StockPriceDto> series = loader.get();
+        if (!series.isEmpty()) {
+            cache.put(symbol, series);
+        }
+        return series;
+    }
+
+    /**
+     * Bring the cached intraday series of the tick's symbol up to date with the bars the
+     * aggregator built from it
+     */
+    public void onTick(Tick minuteBar, BarAggregator aggregator) {
+        ZonedDateTime marketTime = Instant.ofEpochMilli(minuteBar.epochMillis()).atZone(NY);
+        if (marketTime.toLocalTime().isBefore(SESSION_OPEN) || !marketTime.toLocalTime().isBefore(SESSION_CLOSE)) {
+            // Charts only show the regular session
+            return;
+        }
+
+        LIVE_TIMEFRAMES.forEach((timeframe, resolution) -> {
+            Tick bar = aggregator.bar(minuteBar.symbol(), resolution, minuteBar.epochMillis());
+            update(timeframe, minuteBar.symbol(), bar, marketTime);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void update(String timeframe, String symbol, Tick bar, ZonedDateTime marketTime) {
+        Cache cache = cacheManager.getCache(CACHE_PREFIX + timeframe);
+        List<StockPriceDto> cached = cache.get(symbol, List.class);
+        if (cached == null || cached.isEmpty()) {
+            return;
+        }
+
+        long lastMillis = epochMillis(cached.getLast());
+        boolean newDay = timeframe.equals("1d")
+                && !Instant.ofEpochMilli(lastMillis).atZone(NY).toLocalDate().equals(marketTime.toLocalDate());
+        if (bar == null || newDay) {
+            // The aggregator missed part of the bucket, or a 1d chart still shows the
+            // previous session; rebuild on the next read
+            cache.evict(symbol);
+            return;
+        }
+        if (bar.epochMillis() < lastMillis) {
+            return;
+        }
+
+        List<StockPriceDto> series = new ArrayList<>(cached);
+        if (bar.epochMillis() == lastMillis) {
+            series.removeLast();
+        }
+
+        // A week chart starts at the open one week back, so old bars slide out as it grows
+        boolean trimmed = false;
+        if (timeframe.equals("1w")) {
+            long windowStart = marketTime.minusWeeks(1).with(SESSION_OPEN).toInstant().toEpochMilli();
+            trimmed = series.removeIf(price -> epochMillis(price) < windowStart);
+        }
+
+        StockPriceDto latest = bar.toStockPriceDto();
+        series.add(latest);
+        BigDecimal reference = series.getFirst().getPrice();
+        if (trimmed) {
+            // New first bar, so every change is relative to a new reference
+            series.replaceAll(price -> withChange(price, reference));
+        } else {
+            series.set(series.size() - 1, withChange(latest, reference));
+        }
+
+        cache.put(symbol, series);
+        log.debug("Updated cached {} series for {} up to {}", timeframe, symbol, latest.getTimestamp());
+    }
+
+    private static long epochMillis(StockPriceDto price) {
+        return price.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Copy of a price with its change from the reference; cached prices are shared
+     */
+    private static StockPriceDto withChange(StockPriceDto price, BigDecimal reference) {
+        BigDecimal change = price.getPrice().subtract(reference);
+        BigDecimal changePercent = reference.compareTo(BigDecimal.ZERO) > 0
+                ? change.multiply(new BigDecimal("100")).divide(reference, 4, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+
+        return StockPriceDto.builder()
+                .symbol(price.getSymbol())
+                .price(price.getPrice())
+                .open(price.getOpen())
+                .high(price.getHigh())
+                .low(price.getLow())
+                .volume(price.getVolume())
+                .change(change)
+                .changePercent(changePercent)
+                .timestamp(price.getTimestamp())
+                .zonedTimestamp(price.getZonedTimestamp())
+                .sourceTimezone(price.getSourceTimezone())
+                .build();
+    }
+}
@@ -1,24 +1,33 @@
 package com.stockexchange.stock_platform.service.impl;
 
+import com.stockexchange.stock_platform.config.ObserverDispatchConfig;
 import com.stockexchange.stock_platform.dto.MarketCalendarDto;
 import com.stockexchange.stock_platform.dto.SearchResultDto;
 import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.engine.BarAggregator;
+import com.stockexchange.stock_platform.engine.BarResolution;
+import com.stockexchange.stock_platform.engine.FixedPoint;
+import com.stockexchange.stock_platform.engine.Tick;
+import com.stockexchange.stock_platform.engine.TopOfBook;
 import com.stockexchange.stock_platform.model.entity.StockPrice;
 import com.stockexchange.stock_platform.pattern.observer.StockPriceObserver;
 import com.stockexchange.stock_platform.pattern.observer.StockPriceSubject;
-import com.stockexchange.stock_platform.repository.StockPriceRepository;
+import com.stockexchange.stock_platform.pattern.observer.TickObserver;
 import com.stockexchange.stock_platform.service.MarketCalendarService;
 import com.stockexchange.stock_platform.service.StockPriceService;
 import com.stockexchange.stock_platform.service.api.AlpacaClient;
 import com.stockexchange.stock_platform.service.api.AlpacaWebSocketClient;
+import com.stockexchange.stock_platform.service.api.ReactiveAlpacaClient;
+import com.stockexchange.stock_platform.util.ObserverDispatcher;
+import com.stockexchange.stock_platform.util.ZoneProjection;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -29,16 +38,18 @@ import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-public class StockPriceServiceImpl implements StockPriceService, StockPriceSubject, StockPriceObserver {
+public class StockPriceServiceImpl implements StockPriceService, StockPriceSubject, StockPriceObserver, TickObserver {
 
     private final AlpacaClient alpacaClient;
+    private final ReactiveAlpacaClient reactiveAlpacaClient;
     private final AlpacaWebSocketClient webSocketClient;
-    private final StockPriceRepository stockPriceRepository;
+    private final HistoricalBarStore historicalBarStore;
     private final TimezoneService timezoneService;
     private final MarketCalendarService marketCalendarService;
+    private final StockPriceWriteBehind stockPriceWriteBehind;
 
-    // Observers that will be notified of price updates
-    private final List<StockPriceObserver> observers = new ArrayList<>();
+    // Observers that will be notified of price updates, each on its own thread
+    private final ObserverDispatcher<StockPriceDto> observers;
 
     // Set of actively tracked symbols
     private final Set<String> activeSymbols = ConcurrentHashMap.newKeySet();
@@ -46,20 +57,36 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
     // Cache for real-time prices from WebSocket
     private final Map<String, StockPriceDto> realtimePrices = new ConcurrentHashMap<>();
 
-    private final SimpMessagingTemplate messagingTemplate;
+    // Rolling OHLCV bars per tracked symbol, built from the stream and seeded from fetched history
+    private final BarAggregator barAggregator;
+
+    private final PriceFanOut priceFanOut;
+    private final PriceSeriesCache priceSeriesCache;
 
     public StockPriceServiceImpl(AlpacaClient alpacaClient,
+                                 ReactiveAlpacaClient reactiveAlpacaClient,
                                  AlpacaWebSocketClient webSocketClient,
-                                 StockPriceRepository stockPriceRepository,
+                                 BarAggregator barAggregator,
+                                 HistoricalBarStore historicalBarStore,
+                                 PriceSeriesCache priceSeriesCache,
                                  TimezoneService timezoneService,
                                  MarketCalendarService marketCalendarService,
-                                 SimpMessagingTemplate messagingTemplate) {
+                                 StockPriceWriteBehind stockPriceWriteBehind,
+                                 PriceFanOut priceFanOut,
+                                 ObserverDispatchConfig dispatchConfig,
+                                 MeterRegistry meterRegistry) {
         this.alpacaClient = alpacaClient;
+        this.reactiveAlpacaClient = reactiveAlpacaClient;
         this.webSocketClient = webSocketClient;
-        this.stockPriceRepository = stockPriceRepository;
+        this.barAggregator = barAggregator;
+        this.historicalBarStore = historicalBarStore;
+        this.priceSeriesCache = priceSeriesCache;
         this.timezoneService = timezoneService;
         this.marketCalendarService = marketCalendarService;
-        this.messagingTemplate = messagingTemplate;
+        this.stockPriceWriteBehind = stockPriceWriteBehind;
+        this.priceFanOut = priceFanOut;
+        this.observers = new ObserverDispatcher<>("stock-prices", StockPriceDto::getSymbol,
+                dispatchConfig.getCapacity(), dispatchConfig.getPolicy(), meterRegistry);
     }
 
     @PostConstruct
@@ -69,10 +96,16 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         log.info("StockPriceService registered as observer of WebSocket client");
     }
 
+    @PreDestroy
+    public void shutdown() {
+        observers.shutdown();
+    }
+
     /**
      * Register a symbol for automatic tracking in real-time
      * @param symbol The stock symbol to track
      */
+    @Override
     public void registerSymbolForTracking(String symbol) {
         if (symbol != null && !symbol.isBlank()) {
             symbol = symbol.toUpperCase();
@@ -86,11 +119,22 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
     }
 
     /**
-     * Handles real-time price updates from WebSocket
-     * This method is called when the WebSocket client receives a price update
+     * Handles real-time bars from WebSocket.
+     * Ticks stay in fixed point up to here; this is where they become DTOs for the
+     * real-time price cache, STOMP clients, persistence and our own observers.
+     * Cached intraday chart series are brought up to date rather than evicted.
+     */
+    @Override
+    public void onTick(Tick tick) {
+        barAggregator.onTick(tick);
+        priceSeriesCache.onTick(tick, barAggregator);
+        update(tick.toStockPriceDto());
+    }
+
+    /**
+     * Handles real-time price updates
      */
     @Override
-    @CacheEvict(value = {"stockPrices_1d", "stockPrices_1w"}, key = "#stockPrice.symbol", condition = "#stockPrice != null")
     public void update(StockPriceDto stockPrice) {
         if (stockPrice == null || stockPrice.getSymbol() == null) {
             return;
@@ -104,8 +148,8 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         // Save to database for historical record
         saveStockPriceFromDto(stockPrice);
 
-        // Send update via WebSocket
-        messagingTemplate.convertAndSend("/topic/prices/" + symbol, stockPrice);
+        // Queue for the next conflated WebSocket push
+        priceFanOut.publish(stockPrice);
 
         // Notify our own observers of the price update
         notifyObservers(stockPrice);
@@ -118,8 +162,11 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         return getCurrentPrice(symbol, TimezoneService.DEFAULT_MARKET_TIMEZONE);
     }
 
+    /**
+     * Current price, from the freshest source available: the live trade/quote stream,
+     * then the latest real-time bar, then the REST API (cached briefly by AlpacaClient).
+     */
     @Override
-    @Cacheable(value = "currentPrices", key = "#symbol + '-' + #userTimezone.id", unless = "#result == null")
     public StockPriceDto getCurrentPrice(String symbol, ZoneId userTimezone) {
         symbol = symbol.toUpperCase();
 
@@ -127,7 +174,7 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         registerSymbolForTracking(symbol);
 
         // First check if we have a real-time price from WebSocket
-        StockPriceDto realtimePrice = realtimePrices.get(symbol);
+        StockPriceDto realtimePrice = fromTopOfBook(webSocketClient.getTopOfBook(symbol), realtimePrices.get(symbol));
 
         if (realtimePrice != null) {
             log.debug("Using real-time price for {}: {}", symbol, realtimePrice.getPrice());
@@ -160,11 +207,99 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         return stockPrice;
     }
 
+    /**
+     * Same as {@link #getCurrentPrice(String, ZoneId)}, but the REST lookup goes through the
+     * non-blocking client, so a slow Alpaca doesn't hold the calling thread while it waits
+     */
+    @Override
+    public Mono<StockPriceDto> getCurrentPriceAsync(String symbol, ZoneId userTimezone) {
+        String upperSymbol = symbol.toUpperCase();
+        registerSymbolForTracking(upperSymbol);
+
+        StockPriceDto realtimePrice = fromTopOfBook(webSocketClient.getTopOfBook(upperSymbol),
+                realtimePrices.get(upperSymbol));
+        if (realtimePrice != null) {
+            log.debug("Using real-time price for {}: {}", upperSymbol, realtimePrice.getPrice());
+            return Mono.just(inTimezone(realtimePrice, userTimezone));
+        }
+
+        log.debug("No real-time price available for {}, using REST API", upperSymbol);
+        return reactiveAlpacaClient.getCurrentPrice(upperSymbol).map(fetched -> {
+            StockPriceDto stockPrice = inTimezone(fetched, userTimezone);
+
+            // Save to database and notify observers; both only queue the price
+            saveStockPriceFromDto(stockPrice);
+            notifyObservers(stockPrice);
+            return stockPrice;
+        });
+    }
+
+    private StockPriceDto inTimezone(StockPriceDto stockPrice, ZoneId userTimezone) {
+        if (userTimezone != null && stockPrice.getSourceTimezone() != null &&
+                !userTimezone.equals(stockPrice.getSourceTimezone())) {
+            return convertToUserTimezone(stockPrice, userTimezone);
+        }
+        return stockPrice;
+    }
+
+    /**
+     * Current prices of many symbols: live ones from the stream, the rest from batched
+     * REST lookups (one request per chunk of symbols instead of one per symbol)
+     */
+    @Override
+    public Map<String, StockPriceDto> getCurrentPrices(Collection<String> symbols) {
+        Map<String, StockPriceDto> prices = new HashMap<>();
+        List<String> notLive = new ArrayList<>();
+
+        for (String symbol : symbols) {
+            symbol = symbol.toUpperCase();
+            registerSymbolForTracking(symbol);
+
+            StockPriceDto realtimePrice = fromTopOfBook(webSocketClient.getTopOfBook(symbol), realtimePrices.get(symbol));
+            if (realtimePrice != null) {
+                prices.put(symbol, realtimePrice);
+            } else {
+                notLive.add(symbol);
+            }
+        }
+
+        if (!notLive.isEmpty()) {
+            log.debug("No real-time price for {} of {} symbols, using REST API", notLive.size(), symbols.size());
+            Map<String, StockPriceDto> fetched = alpacaClient.getLatestBars(notLive);
+
+            // Save to database and notify observers
+            fetched.values().forEach(price -> {
+                saveStockPriceFromDto(price);
+                notifyObservers(price);
+            });
+            prices.putAll(fetched);
+        }
+        return prices;
+    }
+
     @Override
     public List<StockPriceDto> getHistoricalPrices(String symbol, LocalDateTime startTime, LocalDateTime endTime) {
         return getHistoricalPrices(symbol, startTime, endTime, TimezoneService.DEFAULT_MARKET_TIMEZONE);
     }
 
+    /**
+     * Historical prices of many symbols; whatever isn't stored yet is fetched with
+     * multi-symbol requests first, so each symbol is then read from the store
+     */
+    @Override
+    public Map<String, List<StockPriceDto>> getHistoricalPrices(Collection<String> symbols,
+                                                                LocalDateTime startTime, LocalDateTime endTime) {
+        List<String> upperSymbols = symbols.stream().map(String::toUpperCase).distinct().toList();
+        BarResolution resolution = BarResolution.fromAlpacaTimeframe(determineTimeframeForDateRange(startTime, endTime));
+        historicalBarStore.prefetch(upperSymbols, resolution, startTime, endTime);
+
+        Map<String, List<StockPriceDto>> prices = new HashMap<>();
+        for (String symbol : upperSymbols) {
+            prices.put(symbol, getHistoricalPrices(symbol, startTime, endTime));
+        }
+        return prices;
+    }
+
     @Override
     public List<StockPriceDto> getHistoricalPrices(String symbol, LocalDateTime startTime, LocalDateTime endTime, ZoneId userTimezone) {
         symbol = symbol.toUpperCase();
@@ -172,39 +307,16 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         // Register for real-time updates
         registerSymbolForTracking(symbol);
 
-        // Check if we have data in our database first
-        List<StockPrice> dbPrices = stockPriceRepository.findBySymbolAndTimeBetweenOrderByTimeAsc(
-                symbol, startTime, endTime);
-
-        // Determine appropriate timeframe for Alpaca API
-        String timeframe = determineTimeframeForDateRange(startTime, endTime);
-
-        List<StockPriceDto> prices;
+        // Determine appropriate timeframe for the date range
+        BarResolution resolution = BarResolution.fromAlpacaTimeframe(determineTimeframeForDateRange(startTime, endTime));
 
-        // If not enough data in database, fetch from API
-        if (dbPrices.size() < 10) { // Arbitrary threshold to determine if we need more data
-            prices = alpacaClient.getHistoricalBars(symbol, timeframe, startTime, endTime);
+        // Stored bars, with only the ranges not stored yet fetched from Alpaca
+        List<StockPriceDto> prices = historicalBarStore.getBars(symbol, resolution, startTime, endTime);
 
-            // Save to database for future use
-            for (StockPriceDto price : prices) {
-                saveStockPriceFromDto(price);
-            }
-        } else {
-            // Convert database entities to DTOs
-            prices = dbPrices.stream()
-                    .map(this::convertToDto)
-                    .collect(Collectors.toList());
+        // Convert to user timezone if needed
+        prices = inTimezone(prices, userTimezone);
 
-            // Convert to user timezone if needed
-            if (userTimezone != null) {
-                prices = prices.stream()
-                        .map(price -> convertToUserTimezone(price, userTimezone))
-                        .collect(Collectors.toList());
-            }
-
-            // Recalculate changes since these come from DB
-            calculateChangesFromReference(prices);
-        }
+        calculateChangesFromReference(prices);
 
         return prices;
     }
@@ -229,13 +341,7 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         LocalDateTime startTime = endTime.toLocalDate().atStartOfDay();
 
         // Use historical bars with intraday timeframe
-        List<StockPriceDto> prices = alpacaClient.getHistoricalBars(
-                symbol, alpacaInterval, startTime, endTime);
-
-        // Save to database
-        for (StockPriceDto price : prices) {
-            saveStockPriceFromDto(price);
-        }
+        List<StockPriceDto> prices = inTimezone(getBars(symbol, alpacaInterval, startTime, endTime), userTimezone);
 
         // Add the most recent real-time price if available
         StockPriceDto realtimePrice = realtimePrices.get(symbol);
@@ -284,37 +390,8 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         LocalDateTime endTime = LocalDateTime.now();
         LocalDateTime startTime = endTime.minusWeeks(weeks);
 
-        // Get data with daily timeframe from Alpaca
-        List<StockPriceDto> prices = alpacaClient.getHistoricalBars(
-                symbol, "1Day", startTime, endTime);
-
-        // Group by week to get weekly data
-        Map<LocalDateTime, List<StockPriceDto>> weeklyData = new HashMap<>();
-        for (StockPriceDto price : prices) {
-            // Group by the start of the week
-            LocalDateTime weekStart = price.getTimestamp().toLocalDate()
-                    .with(java.time.temporal.TemporalAdjusters.previousOrSame(java.time.DayOfWeek.MONDAY))
-                    .atStartOfDay();
-
-            weeklyData.computeIfAbsent(weekStart, k -> new ArrayList<>()).add(price);
-        }
-
-        // For each week, take the last day's data
-        List<StockPriceDto> weeklyPrices = new ArrayList<>();
-        for (List<StockPriceDto> weekPrices : weeklyData.values()) {
-            weekPrices.sort(Comparator.comparing(StockPriceDto::getTimestamp));
-            if (!weekPrices.isEmpty()) {
-                weeklyPrices.add(weekPrices.getLast());
-            }
-        }
-
-        // Sort by date
-        weeklyPrices.sort(Comparator.comparing(StockPriceDto::getTimestamp));
-
-        // Calculate changes
-        calculateChangesFromReference(weeklyPrices);
-
-        return weeklyPrices;
+        // Daily bars rolled up into weeks starting on Monday
+        return inTimezone(getBars(symbol, "1Week", startTime, endTime), userTimezone);
     }
 
     @Override
@@ -333,36 +410,8 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         LocalDateTime endTime = LocalDateTime.now();
         LocalDateTime startTime = endTime.minusMonths(months);
 
-        // Get data with weekly timeframe from Alpaca for better performance
-        List<StockPriceDto> prices = alpacaClient.getHistoricalBars(
-                symbol, "1Week", startTime, endTime);
-
-        // Group by month to get monthly data
-        Map<String, List<StockPriceDto>> monthlyData = new HashMap<>();
-        for (StockPriceDto price : prices) {
-            // Group by year-month
-            String yearMonth = price.getTimestamp().getYear() + "-" +
-                    String.format("%02d", price.getTimestamp().getMonthValue());
-
-            monthlyData.computeIfAbsent(yearMonth, k -> new ArrayList<>()).add(price);
-        }
-
-        // For each month, take the last day's data
-        List<StockPriceDto> monthlyPrices = new ArrayList<>();
-        for (List<StockPriceDto> monthPrices : monthlyData.values()) {
-            monthPrices.sort(Comparator.comparing(StockPriceDto::getTimestamp));
-            if (!monthPrices.isEmpty()) {
-                monthlyPrices.add(monthPrices.getLast());
-            }
-        }
-
-        // Sort by date
-        monthlyPrices.sort(Comparator.comparing(StockPriceDto::getTimestamp));
-
-        // Calculate changes
-        calculateChangesFromReference(monthlyPrices);
-
-        return monthlyPrices;
+        // Daily bars rolled up into calendar months
+        return inTimezone(getBars(symbol, "1Month", startTime, endTime), userTimezone);
     }
 
     @Override
@@ -371,28 +420,63 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
     }
 
     /**
-     * Uses cache for timeframe data with cache key that includes the symbol, timeframe and timezone
+     * Chart series from the stockPrices_* cache, which holds one UTC series per symbol and
+     * timeframe for every user, projected into the user's timezone. 1d and 1w series are
+     * kept current from the stream; longer ones get the latest real-time price added here.
      */
     @Override
-    @Cacheable(
-            cacheResolver = "stockPriceCacheResolver",
-            key           = "#symbol.toUpperCase() + '-' + #userTimezone.id",
-            unless        = "#result == null || #result.isEmpty()"
-    )
     public List<StockPriceDto> getPricesForTimeframe(String symbol, String timeframe, ZoneId userTimezone) {
-        log.debug("CACHE MISS: computing prices for {} [{}] in {}", symbol, timeframe, userTimezone);
-
-        symbol = symbol.toUpperCase();
+        String upperSymbol = symbol.toUpperCase();
+        String lowerTimeframe = timeframe.toLowerCase();
 
         // Register for real-time updates
-        registerSymbolForTracking(symbol);
+        registerSymbolForTracking(upperSymbol);
+
+        List<StockPriceDto> series = priceSeriesCache.get(upperSymbol, lowerTimeframe,
+                () -> loadPricesForTimeframe(upperSymbol, lowerTimeframe));
+        List<StockPriceDto> prices = inTimezone(series, userTimezone);
+        if (lowerTimeframe.equals("1d") || lowerTimeframe.equals("1w")) {
+            return prices;
+        }
+
+        // Add the latest real-time price if available and if it's more recent
+        StockPriceDto realtimePrice = realtimePrices.get(upperSymbol);
+        if (realtimePrice != null) {
+            // Convert to user timezone if needed
+            if (userTimezone != null && !userTimezone.equals(realtimePrice.getSourceTimezone())) {
+                realtimePrice = convertToUserTimezone(realtimePrice, userTimezone);
+            }
+
+            // Check if we should add the real-time price
+            if (!prices.isEmpty()) {
+                StockPriceDto lastPrice = prices.getLast();
+
+                // Only add if real-time price is more recent
+                if (realtimePrice.getTimestamp().isAfter(lastPrice.getTimestamp())) {
+                    // Calculate change relative to first price
+                    calculateChangeForRealTimePrice(prices, realtimePrice);
 
+                    prices.add(realtimePrice);
+                }
+            } else {
+                // If no historical prices, just add the real-time price
+                prices.add(realtimePrice);
+            }
+        }
+
+        return prices;
+    }
+
+    /**
+     * A chart series for a timeframe, in UTC, as the stockPrices_* caches hold it
+     */
+    private List<StockPriceDto> loadPricesForTimeframe(String symbol, String timeframe) {
         LocalDateTime endTime = LocalDateTime.now();
         LocalDateTime startTime;
         String alpacaTimeframe;
 
         // Determine the timeframe parameters based on requirements
-        switch (timeframe.toLowerCase()) {
+        switch (timeframe) {
             case "1d":
                 if (marketCalendarService.isMarketOpen()) {
                     // Market is open today -> from NY open to NY now
@@ -449,9 +533,8 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
                 alpacaTimeframe = "1Hour"; // Default to 1-month view
         }
 
-        // Get price data from Alpaca
-        List<StockPriceDto> prices = alpacaClient.getHistoricalBars(
-                symbol, alpacaTimeframe, startTime, endTime);
+        // Get price data from memory, or from Alpaca if it isn't held yet
+        List<StockPriceDto> prices = getBars(symbol, alpacaTimeframe, startTime, endTime);
 
         // Filter out pre-market data that falls outside regular market hours
         // This is especially needed for the 1w timeframe where Alpaca returns 13:00 UTC (9:00 AM NY)
@@ -495,8 +578,8 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
 
             // Extend the search to the past 5 days to find the most recent trading day
             LocalDateTime extendedStart = endTime.minusDays(5);
-            List<StockPriceDto> extendedPrices = alpacaClient.getHistoricalBars(
-                    symbol, alpacaTimeframe, extendedStart, endTime);
+            List<StockPriceDto> extendedPrices = historicalBarStore.getBars(
+                    symbol, BarResolution.fromAlpacaTimeframe(alpacaTimeframe), extendedStart, endTime);
 
             if (!extendedPrices.isEmpty()) {
                 // Filter to market hours
@@ -522,43 +605,13 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
                         .orElse(null);
 
                 if (mostRecentDay != null) {
-                    prices = pricesByDay.get(mostRecentDay);
+                    prices = new ArrayList<>(pricesByDay.get(mostRecentDay));
                     log.info("Using data from most recent trading day: {} for symbol {}",
                             mostRecentDay, symbol);
                 }
             }
         }
 
-        // Save to database for future use
-        for (StockPriceDto price : prices) {
-            saveStockPriceFromDto(price);
-        }
-
-        // Add the latest real-time price if available and if it's more recent
-        StockPriceDto realtimePrice = realtimePrices.get(symbol);
-        if (realtimePrice != null) {
-            // Convert to user timezone if needed
-            if (userTimezone != null && !userTimezone.equals(realtimePrice.getSourceTimezone())) {
-                realtimePrice = convertToUserTimezone(realtimePrice, userTimezone);
-            }
-
-            // Check if we should add the real-time price
-            if (!prices.isEmpty()) {
-                StockPriceDto lastPrice = prices.getLast();
-
-                // Only add if real-time price is more recent
-                if (realtimePrice.getTimestamp().isAfter(lastPrice.getTimestamp())) {
-                    // Calculate change relative to first price
-                    calculateChangeForRealTimePrice(prices, realtimePrice);
-
-                    prices.add(realtimePrice);
-                }
-            } else {
-                // If no historical prices, just add the real-time price
-                prices.add(realtimePrice);
-            }
-        }
-
         return prices;
     }
 
@@ -570,10 +623,12 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
         return alpacaClient.searchAssets(keywords);
     }
 
+    /**
+     * Queues the price for the background writer rather than saving it on the caller's thread
+     */
     @Override
-    @Transactional
     public void saveStockPrice(StockPrice stockPrice) {
-        stockPriceRepository.save(stockPrice);
+        stockPriceWriteBehind.enqueue(stockPrice);
     }
 
     /**
@@ -598,16 +653,14 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
             "stockPrices_1d", "stockPrices_1w", "currentPrices"
     }, allEntries = true)
     public void checkMarketTransitions() {
-        boolean isOpen = isMarketOpen();
+        boolean isOpen = marketCalendarService.isMarketOpen();
         log.info("Market status check: {}", isOpen ? "OPEN" : "CLOSED");
     }
 
     // Observer Pattern methods
     @Override
     public void registerObserver(StockPriceObserver observer) {
-        if (!observers.contains(observer)) {
-            observers.add(observer);
-        }
+        observers.register(observer, observer::update);
     }
 
     @Override
@@ -617,9 +670,48 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
 
     @Override
     public void notifyObservers(StockPriceDto stockPrice) {
-        for (StockPriceObserver observer : observers) {
-            observer.update(stockPrice);
+        observers.publish(stockPrice);
+    }
+
+    /**
+     * Bars for a window, served from the bar aggregator when it holds the whole window.
+     * Otherwise they are loaded at the aggregator's source resolution from the historical
+     * bar store, which fetches whatever it doesn't hold yet, and used to seed the aggregator
+     * so the next request for the window stays in memory.
+     * Timeframes the aggregator doesn't know go straight to Alpaca.
+     */
+    private List<StockPriceDto> getBars(String symbol, String alpacaTimeframe,
+                                        LocalDateTime startTime, LocalDateTime endTime) {
+        BarResolution resolution = BarResolution.fromAlpacaTimeframe(alpacaTimeframe);
+        if (resolution == null) {
+            return alpacaClient.getHistoricalBars(symbol, alpacaTimeframe, startTime, endTime);
+        }
+
+        // Alpaca takes these as UTC
+        long fromMillis = startTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long toMillis = endTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        List<Tick> bars = barAggregator.bars(symbol, resolution, fromMillis, toMillis);
+        if (bars != null) {
+            log.debug("Serving {} {} bars for {} from memory", bars.size(), alpacaTimeframe, symbol);
+        } else {
+            BarResolution source = resolution.source();
+            List<StockPriceDto> stored = historicalBarStore.getBars(symbol, source, startTime, endTime);
+
+            List<Tick> sourceBars = stored.stream().map(Tick::fromStockPriceDto).toList();
+            barAggregator.seed(symbol, source, sourceBars, fromMillis, toMillis);
+            if (source == resolution) {
+                calculateChangesFromReference(stored);
+                return stored;
+            }
+            bars = BarAggregator.rollup(sourceBars, resolution);
         }
+
+        List<StockPriceDto> prices = bars.stream()
+                .map(Tick::toStockPriceDto)
+                .collect(Collectors.toCollection(ArrayList::new));
+        calculateChangesFromReference(prices);
+        return prices;
     }
 
     /** Convert any ZonedDateTime -> UTC LocalDateTime for Alpaca calls */
@@ -628,6 +720,36 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
                 .toLocalDateTime();
     }
 
+    /**
+     * Overlay the live last trade and best bid/ask on the latest bar
+     * @return the latest bar when there is no trade yet, null if there is neither
+     */
+    private StockPriceDto fromTopOfBook(TopOfBook.Snapshot topOfBook, StockPriceDto latestBar) {
+        if (topOfBook == null || !topOfBook.hasTrade()) {
+            return latestBar;
+        }
+
+        Instant tradeTime = Instant.ofEpochMilli(topOfBook.tradeMillis());
+        StockPriceDto.StockPriceDtoBuilder price = StockPriceDto.builder()
+                .symbol(topOfBook.symbol())
+                .price(FixedPoint.toBigDecimal(topOfBook.lastPrice()))
+                .timestamp(LocalDateTime.ofInstant(tradeTime, ZoneOffset.UTC))
+                .zonedTimestamp(tradeTime.atZone(ZoneOffset.UTC))
+                .sourceTimezone(ZoneId.of("UTC"));
+
+        if (latestBar != null) {
+            price.open(latestBar.getOpen())
+                    .high(latestBar.getHigh())
+                    .low(latestBar.getLow())
+                    .volume(latestBar.getVolume());
+        }
+        if (topOfBook.hasQuote()) {
+            price.bid(FixedPoint.toBigDecimal(topOfBook.bidPrice()))
+                    .ask(FixedPoint.toBigDecimal(topOfBook.askPrice()));
+        }
+        return price.build();
+    }
+
     /**
      * Converts a StockPriceDto to user's timezone
      */
@@ -636,69 +758,14 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
                 (price.getSourceTimezone() != null && userTimezone.equals(price.getSourceTimezone()))) {
             return price;
         }
-
-        // Create converted timestamp
-        ZonedDateTime userTime;
-        if (price.getZonedTimestamp() != null) {
-            // If we have zoned timestamp, ensure it's properly converted
-            // Alpaca API sends UTC timestamps
-            ZonedDateTime utcTime = price.getZonedTimestamp();
-
-            log.debug("Original timestamp: {} in timezone {}",
-                    utcTime, price.getSourceTimezone() != null ? price.getSourceTimezone() : "UTC");
-            // First convert to market timezone to ensure proper market hours
-            ZonedDateTime marketTime = utcTime.withZoneSameInstant(ZoneId.of("America/New_York"));
-
-            // Then convert to user timezone to ensure proper market hours
-            userTime = marketTime.withZoneSameInstant(userTimezone);
-
-            log.debug("Converted timestamp: {} in timezone {}", userTime, userTimezone);
-        } else if (price.getTimestamp() != null) {
-            // For legacy non-zoned timestamps, assume they're in UTC
-            ZonedDateTime utcTime = price.getTimestamp().atZone(ZoneId.of("UTC"));
-
-            // Convert to market timezone first, then to user timezone
-            ZonedDateTime marketTime = utcTime.withZoneSameInstant(ZoneId.of("America/New_York"));
-            userTime = marketTime.withZoneSameInstant(userTimezone);
-
-        } else {
-            // If no timestamp at all, use current time
-            userTime = ZonedDateTime.now(userTimezone);
-        }
-
-        return StockPriceDto.builder()
-                .symbol(price.getSymbol())
-                .price(price.getPrice())
-                .open(price.getOpen())
-                .high(price.getHigh())
-                .low(price.getLow())
-                .volume(price.getVolume())
-                .change(price.getChange())
-                .changePercent(price.getChangePercent())
-                .timestamp(price.getTimestamp()) // Keep original timestamp for database
-                .zonedTimestamp(userTime) // Use user timezone
-                .sourceTimezone(userTimezone) // Mark as converted
-                .build();
+        return ZoneProjection.of(userTimezone).project(price);
     }
 
     /**
-     * Converts a stock price entity from database to DTO
+     * A series in the user's timezone; always a new list, since series may be cached
      */
-    private StockPriceDto convertToDto(StockPrice entity) {
-        // Database time is in UTC
-        ZonedDateTime utcZoned = entity.getTime().atZone(ZoneId.of("UTC"));
-
-        return StockPriceDto.builder()
-                .symbol(entity.getSymbol())
-                .price(entity.getPrice())
-                .open(entity.getOpen())
-                .high(entity.getHigh())
-                .low(entity.getLow())
-                .volume(entity.getVolume())
-                .timestamp(utcZoned.toLocalDateTime())
-                .zonedTimestamp(utcZoned)
-                .sourceTimezone(ZoneId.of("UTC"))
-                .build();
+    private static List<StockPriceDto> inTimezone(List<StockPriceDto> prices, ZoneId userTimezone) {
+        return userTimezone != null ? ZoneProjection.of(userTimezone).project(prices) : new ArrayList<>(prices);
     }
 
     /**
@@ -819,26 +886,4 @@ public class StockPriceServiceImpl implements StockPriceService, StockPriceSubje
             default -> "5Min"; // Default
         };
     }
-
-    /**
-     * Check if market is currently open
-     */
-    private boolean isMarketOpen() {
-        ZonedDateTime nyTime = ZonedDateTime.now(ZoneId.of("America/New_York"));
-
-        // Weekend check
-        int dayOfWeek = nyTime.getDayOfWeek().getValue();
-        if (dayOfWeek > 5) {
-            return false;
-        }
-
-        // Hours check (9:30 AM - 4:00 PM ET)
-        int hour = nyTime.getHour();
-        int minute = nyTime.getMinute();
-
-        if (hour < 9 || hour > 16) {
-            return false;
-        }
-        return hour != 9 || minute >= 30;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.model.entity.StockPrice;
+import com.stockexchange.stock_platform.model.entity.StockPriceId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for stock prices.
+ * Prices are queued in memory, de-duplicated on (symbol, time), and flushed in the
+ * background with multi-row inserts, so neither the WebSocket thread nor a chart request
+ * ever waits on the database. Rows that already exist are skipped by the database.
+ * Flushes run on their own thread rather than the shared scheduler, so slow scheduled jobs
+ * can't let the queue fill up.
+ * <p>
+ * A statement the database rejects for its data is split up until the offending rows are
+ * found; those are dropped and counted as stock_prices.write_behind.rejected, so one bad
+ * row can't hold back the rest. Any other failure puts the batch back for the next flush.
+ */
+@Service
+@Slf4j
+public class StockPriceWriteBehind {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO stock_prices (time, symbol, price, volume, high, low, open) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SUFFIX = " ON CONFLICT (time, symbol) DO NOTHING";
+    private static final int[] ROW_TYPES = {Types.TIMESTAMP, Types.VARCHAR, Types.NUMERIC, Types.BIGINT,
+            Types.NUMERIC, Types.NUMERIC, Types.NUMERIC};
+
+    // Keeps each statement well under PostgreSQL's limit of 65535 bind parameters
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int capacity;
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "stock-price-write-behind"));
+
+    private final Object lock = new Object();
+    private Map<StockPriceId, StockPrice> pending = new LinkedHashMap<>();
+
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+
+    public StockPriceWriteBehind(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${prices.writeBehind.capacity:50000}") int capacity,
+                                 @Value("${prices.writeBehind.flushIntervalMs:1000}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = capacity;
+        this.flushIntervalMs = flushIntervalMs;
+
+        meterRegistry.gauge("stock_prices.write_behind.queue", this, StockPriceWriteBehind::queueDepth);
+        this.flushTimer = meterRegistry.timer("stock_prices.write_behind.flush");
+        this.droppedCounter = meterRegistry.counter("stock_prices.write_behind.dropped");
+        this.rejectedCounter = meterRegistry.counter("stock_prices.write_behind.rejected");
+    }
+
+    /**
+     * Queue a price for persistence. A price for a (symbol, time) that is already queued
+     * replaces it; when the queue is full the price is dropped, since it can always be
+     * fetched again from the market data API.
+     */
+    public void enqueue(StockPrice stockPrice) {
+        StockPriceId id = new StockPriceId(stockPrice.getTime(), stockPrice.getSymbol());
+        synchronized (lock) {
+            if (pending.size() >= capacity && !pending.containsKey(id)) {
+                droppedCounter.increment();
+                log.debug("Stock price write-behind queue is full, dropping {} at {}",
+                        stockPrice.getSymbol(), stockPrice.getTime());
+                return;
+            }
+            pending.put(id, stockPrice);
+        }
+    }
+
+    public int queueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // Keep flushing; an exception would cancel every later run
+                log.error("Stock price write-behind flush failed: {}", e.getMessage());
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void flush() {
+        Map<StockPriceId, StockPrice> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        List<StockPrice> prices = new ArrayList<>(batch.values());
+        try {
+            flushTimer.record(() -> {
+                for (int from = 0; from < prices.size(); from += ROWS_PER_STATEMENT) {
+                    write(prices.subList(from, Math.min(from + ROWS_PER_STATEMENT, prices.size())));
+                }
+            });
+            log.debug("Flushed {} stock prices", prices.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} stock prices: {}", prices.size(), e.getMessage());
+            requeue(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Let a running flush finish, then write what is left
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    /**
+     * Insert rows, halving a rejected statement until every bad row is on its own and dropped
+     */
+    private void write(List<StockPrice> prices) {
+        try {
+            insert(prices);
+        } catch (DataIntegrityViolationException e) {
+            if (prices.size() == 1) {
+                StockPrice price = prices.getFirst();
+                rejectedCounter.increment();
+                log.warn("Dropping stock price {} at {} rejected by the database: {}",
+                        price.getSymbol(), price.getTime(), e.getMostSpecificCause().getMessage());
+                return;
+            }
+            int half = prices.size() / 2;
+            write(prices.subList(0, half));
+            write(prices.subList(half, prices.size()));
+        }
+    }
+
+    private void insert(List<StockPrice> prices) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        sql.append(String.join(", ", Collections.nCopies(prices.size(), INSERT_ROW)));
+        sql.append(INSERT_SUFFIX);
+
+        Object[] args = new Object[prices.size() * ROW_TYPES.length];
+        int[] types = new int[args.length];
+        for (int row = 0; row < prices.size(); row++) {
+            System.arraycopy(ROW_TYPES, 0, types, row * ROW_TYPES.length, ROW_TYPES.length);
+        }
+
+        int i = 0;
+        for (StockPrice price : prices) {
+            args[i++] = Timestamp.valueOf(price.getTime());
+            args[i++] = price.getSymbol();
+            args[i++] = price.getPrice();
+            args[i++] = price.getVolume();
+            args[i++] = price.getHigh();
+            args[i++] = price.getLow();
+            args[i++] = price.getOpen();
+        }
+        jdbcTemplate.update(sql.toString(), args, types);
+    }
+
+    /**
+     * Put a failed batch back for the next flush, without overwriting anything newer
+     */
+    private void requeue(Map<StockPriceId, StockPrice> batch) {
+        synchronized (lock) {
+            for (Map.Entry<StockPriceId, StockPrice> entry : batch.entrySet()) {
+                if (pending.size() >= capacity) {
+                    droppedCounter.increment();
+                    continue;
+                }
+                pending.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
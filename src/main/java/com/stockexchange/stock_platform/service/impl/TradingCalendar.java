@@ -0,0 +1,130 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.dto.MarketCalendarDto;
+import com.stockexchange.stock_platform.dto.MarketClockDto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable trading sessions over a range of dates, sorted, so market clock questions are
+ * answered with a binary search instead of a call to Alpaca. Sessions carry their own open
+ * and close, so early closes and holidays (no session) come straight from the calendar.
+ */
+final class TradingCalendar {
+
+    private static final ZoneId NY = ZoneId.of("America/New_York");
+
+    private final LocalDate[] dates;
+    private final long[] opens;
+    private final long[] closes;
+    // Dates the calendar was loaded for, sessions or not
+    private final LocalDate from;
+    private final LocalDate to;
+
+    private TradingCalendar(LocalDate[] dates, long[] opens, long[] closes, LocalDate from, LocalDate to) {
+        this.dates = dates;
+        this.opens = opens;
+        this.closes = closes;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @param sessions Alpaca's trading days from the from date to the to date
+     */
+    static TradingCalendar of(List<MarketCalendarDto> sessions, LocalDate from, LocalDate to) {
+        List<MarketCalendarDto> sorted = sessions.stream()
+                .sorted(Comparator.comparing(MarketCalendarDto::getDate))
+                .toList();
+
+        int count = sorted.size();
+        LocalDate[] dates = new LocalDate[count];
+        long[] opens = new long[count];
+        long[] closes = new long[count];
+        for (int i = 0; i < count; i++) {
+            MarketCalendarDto session = sorted.get(i);
+            dates[i] = session.getDate();
+            opens[i] = ZonedDateTime.of(session.getDate(), session.getOpen(), NY).toInstant().toEpochMilli();
+            closes[i] = ZonedDateTime.of(session.getDate(), session.getClose(), NY).toInstant().toEpochMilli();
+        }
+        return new TradingCalendar(dates, opens, closes, from, to);
+    }
+
+    /**
+     * Whether the calendar answers for the date, i.e. it was loaded for it
+     */
+    boolean covers(LocalDate date) {
+        return !date.isBefore(from) && !date.isAfter(to);
+    }
+
+    LocalDate to() {
+        return to;
+    }
+
+    boolean isOpen(Instant now) {
+        int session = lastOpenedBy(now.toEpochMilli());
+        return session >= 0 && now.toEpochMilli() < closes[session];
+    }
+
+    /**
+     * The session held on a date, or null if the market doesn't open that day
+     */
+    MarketCalendarDto sessionOn(LocalDate date) {
+        int index = Arrays.binarySearch(dates, date);
+        return index >= 0 ? session(index) : null;
+    }
+
+    /**
+     * The last session before a date, or null if none was loaded
+     */
+    MarketCalendarDto lastSessionBefore(LocalDate date) {
+        int index = Arrays.binarySearch(dates, date);
+        int before = index >= 0 ? index - 1 : -index - 2;
+        return before >= 0 ? session(before) : null;
+    }
+
+    /**
+     * The market clock at a moment, like Alpaca's /v2/clock
+     */
+    MarketClockDto clockAt(Instant now) {
+        long millis = now.toEpochMilli();
+        int session = lastOpenedBy(millis);
+        boolean open = session >= 0 && millis < closes[session];
+        int next = session + 1;
+
+        MarketClockDto clock = new MarketClockDto();
+        clock.setTimestamp(now.atZone(NY));
+        clock.setOpen(open);
+        if (next < opens.length) {
+            clock.setNextOpen(Instant.ofEpochMilli(opens[next]).atZone(NY));
+        }
+        int closing = open ? session : next;
+        if (closing < closes.length) {
+            clock.setNextClose(Instant.ofEpochMilli(closes[closing]).atZone(NY));
+        }
+        return clock;
+    }
+
+    /**
+     * Index of the last session opened at or before the time, -1 if none
+     */
+    private int lastOpenedBy(long millis) {
+        int index = Arrays.binarySearch(opens, millis);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private MarketCalendarDto session(int index) {
+        // A copy, since the DTO is mutable
+        MarketCalendarDto session = new MarketCalendarDto();
+        session.setDate(dates[index]);
+        session.setOpen(Instant.ofEpochMilli(opens[index]).atZone(NY).toLocalTime());
+        session.setClose(Instant.ofEpochMilli(closes[index]).atZone(NY).toLocalTime());
+        return session;
+    }
+}
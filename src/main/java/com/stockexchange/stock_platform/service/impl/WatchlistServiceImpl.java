@@ -13,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,8 +34,16 @@ public class WatchlistServiceImpl implements WatchlistService {
     @Override
     public List<WatchlistItemDto> getUserWatchlist(Long userId) {
         List<WatchlistItem> watchlist = watchlistRepository.findByUserId(userId);
+
+        // Prices of the whole watchlist in one batched lookup
+        Map<String, StockPriceDto> prices = stockPriceService.getCurrentPrices(
+                watchlist.stream().map(WatchlistItem::getSymbol).toList());
+
         return watchlist.stream()
-                .map(this::convertToDto)
+                .map(item -> {
+                    StockPriceDto priceData = prices.get(item.getSymbol().toUpperCase());
+                    return priceData != null ? convertToDto(item, priceData) : convertToDto(item);
+                })
                 .collect(Collectors.toList());
     }
 
@@ -78,8 +87,10 @@ public class WatchlistServiceImpl implements WatchlistService {
 
     private WatchlistItemDto convertToDto(WatchlistItem item) {
         // Get current price for the symbol
-        StockPriceDto priceData = stockPriceService.getCurrentPrice(item.getSymbol());
+        return convertToDto(item, stockPriceService.getCurrentPrice(item.getSymbol()));
+    }
 
+    private WatchlistItemDto convertToDto(WatchlistItem item, StockPriceDto priceData) {
         return WatchlistItemDto.builder()
                 .id(item.getId())
                 .userId(item.getUser().getId())
@@ -0,0 +1,267 @@
+package com.stockexchange.stock_platform.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Delivers events to observers asynchronously, each observer on its own virtual thread with
+ * its own bounded mailbox. Publishing never blocks, so a slow observer (say, one that queries
+ * the database) only falls behind itself instead of stalling the publisher and every other
+ * observer.
+ * <p>
+ * Nothing is lost until a mailbox is full; then its {@link BackpressurePolicy} decides what
+ * is. Observers that must see every event, like the limit order trigger, register with
+ * {@link BackpressurePolicy#LOSSLESS}. Registration is copy-on-write, so observers can come
+ * and go while events are published.
+ */
+@Slf4j
+public class ObserverDispatcher<T> {
+
+    public enum BackpressurePolicy {
+        /** Discard the oldest queued event to make room */
+        DROP_OLDEST,
+        /** Replace the latest queued event of the same key (e.g. symbol); drop the oldest if there is none */
+        CONFLATE_BY_KEY,
+        /** Never drop or replace; the mailbox grows past its capacity. Only for observers that keep up */
+        LOSSLESS
+    }
+
+    private final String subject;
+    private final Function<T, Object> keyOf;
+    private final int capacity;
+    private final BackpressurePolicy policy;
+    private final MeterRegistry meterRegistry;
+
+    private final List<Mailbox> mailboxes = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param subject name of the publisher, used for thread names and metric tags
+     * @param keyOf key events are conflated on under {@link BackpressurePolicy#CONFLATE_BY_KEY}
+     */
+    public ObserverDispatcher(String subject, Function<T, Object> keyOf, int capacity,
+                              BackpressurePolicy policy, MeterRegistry meterRegistry) {
+        this.subject = subject;
+        this.keyOf = keyOf;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param observer identifies the registration, for {@link #remove}
+     * @param delivery called on the observer's own thread, in publishing order
+     */
+    public void register(Object observer, Consumer<T> delivery) {
+        register(observer, delivery, policy);
+    }
+
+    /**
+     * Register with a policy other than the dispatcher's default
+     */
+    public void register(Object observer, Consumer<T> delivery, BackpressurePolicy policy) {
+        synchronized (mailboxes) {
+            if (find(observer) == null) {
+                mailboxes.add(new Mailbox(observer, delivery, policy, uniqueName(observer)));
+            }
+        }
+    }
+
+    public void remove(Object observer) {
+        synchronized (mailboxes) {
+            Mailbox mailbox = find(observer);
+            if (mailbox != null) {
+                mailboxes.remove(mailbox);
+                mailbox.close();
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return mailboxes.isEmpty();
+    }
+
+    /**
+     * Queue an event for every registered observer; never blocks
+     */
+    public void publish(T event) {
+        for (Mailbox mailbox : mailboxes) {
+            mailbox.offer(event);
+        }
+    }
+
+    public void shutdown() {
+        synchronized (mailboxes) {
+            mailboxes.forEach(Mailbox::close);
+            mailboxes.clear();
+        }
+    }
+
+    /**
+     * The observer's class name, numbered when another registered observer already has it,
+     * so every mailbox gets its own meters and thread name
+     */
+    private String uniqueName(Object observer) {
+        String base = observer.getClass().getSimpleName();
+        String name = base;
+        for (int n = 2; nameTaken(name); n++) {
+            name = base + "-" + n;
+        }
+        return name;
+    }
+
+    private boolean nameTaken(String name) {
+        for (Mailbox mailbox : mailboxes) {
+            if (mailbox.name.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Mailbox find(Object observer) {
+        for (Mailbox mailbox : mailboxes) {
+            if (mailbox.observer == observer) {
+                return mailbox;
+            }
+        }
+        return null;
+    }
+
+    private record Queued<T>(Object key, T event, long enqueuedNanos) {
+    }
+
+    private class Mailbox {
+        private final Object observer;
+        private final Consumer<T> delivery;
+        private final BackpressurePolicy policy;
+        private final String name;
+
+        // By sequence number, in publishing order; conflation replaces a queued event in place, keeping its turn
+        private final Map<Long, Queued<T>> queue = new LinkedHashMap<>();
+        // Sequence number of the latest queued event per key, under CONFLATE_BY_KEY
+        private final Map<Object, Long> latestByKey = new HashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private long sequence;
+
+        private final Timer lag;
+        private final Counter dropped;
+        private final Counter conflated;
+        private final Gauge depth;
+        private final Thread worker;
+
+        Mailbox(Object observer, Consumer<T> delivery, BackpressurePolicy policy, String name) {
+            this.observer = observer;
+            this.delivery = delivery;
+            this.policy = policy;
+            this.name = name;
+
+            Tags tags = Tags.of("subject", subject, "observer", name);
+            this.lag = meterRegistry.timer("observer.dispatch.lag", tags);
+            this.dropped = meterRegistry.counter("observer.dispatch.dropped", tags);
+            this.conflated = meterRegistry.counter("observer.dispatch.conflated", tags);
+            this.depth = Gauge.builder("observer.dispatch.queue", this, Mailbox::size)
+                    .tags(tags)
+                    .register(meterRegistry);
+
+            this.worker = Thread.ofVirtual()
+                    .name(subject + "-observer-" + name)
+                    .start(this::run);
+        }
+
+        void offer(T event) {
+            Object key = policy == BackpressurePolicy.CONFLATE_BY_KEY ? keyOf.apply(event) : null;
+            Queued<T> queued = new Queued<>(key, event, System.nanoTime());
+            lock.lock();
+            try {
+                if (queue.size() >= capacity && policy != BackpressurePolicy.LOSSLESS) {
+                    Long queuedSequence = queued.key() != null ? latestByKey.get(queued.key()) : null;
+                    if (queuedSequence != null) {
+                        queue.put(queuedSequence, queued);
+                        conflated.increment();
+                        return;
+                    }
+                    removeFirst();
+                    dropped.increment();
+                }
+
+                long next = sequence++;
+                queue.put(next, queued);
+                if (queued.key() != null) {
+                    latestByKey.put(queued.key(), next);
+                }
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            worker.interrupt();
+            meterRegistry.remove(lag);
+            meterRegistry.remove(dropped);
+            meterRegistry.remove(conflated);
+            meterRegistry.remove(depth);
+        }
+
+        // Called with the lock held
+        private Queued<T> removeFirst() {
+            Iterator<Map.Entry<Long, Queued<T>>> first = queue.entrySet().iterator();
+            Map.Entry<Long, Queued<T>> entry = first.next();
+            first.remove();
+            if (entry.getValue().key() != null) {
+                latestByKey.remove(entry.getValue().key(), entry.getKey());
+            }
+            return entry.getValue();
+        }
+
+        private void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Queued<T> next;
+                lock.lock();
+                try {
+                    while (queue.isEmpty()) {
+                        notEmpty.await();
+                    }
+                    next = removeFirst();
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+
+                lag.record(System.nanoTime() - next.enqueuedNanos(), TimeUnit.NANOSECONDS);
+                try {
+                    delivery.accept(next.event());
+                } catch (Exception e) {
+                    log.error("Observer {} of {} failed: {}", name, subject, e.getMessage());
+                }
+            }
+        }
+    }
+}
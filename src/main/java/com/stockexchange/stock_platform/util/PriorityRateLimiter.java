@@ -0,0 +1,220 @@
+package com.stockexchange.stock_platform.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Priority lanes over one {@link RateLimiter}'s permits, so background work can't starve
+ * the requests users are waiting for.
+ * <p>
+ * Each lane queues first in, first out, and a lane is only served while every lane above
+ * it is empty. Lanes further down also leave part of the burst unused: interactive calls
+ * keep a fifth of it free for order execution, and background calls only run while half
+ * of it is free, so they soak up spare budget and nothing else.
+ * <p>
+ * The lane of a call is the one the calling thread is running in (see {@link #callAs}),
+ * interactive unless said otherwise. Waiting and queued calls are metered per lane as
+ * rate_limiter.wait and rate_limiter.queued.
+ */
+@Slf4j
+public class PriorityRateLimiter {
+
+    /**
+     * Lanes in priority order
+     */
+    public enum Lane {
+        ORDER_EXECUTION(0),
+        INTERACTIVE(5),
+        BACKGROUND(2);
+
+        // Share of the burst left unused by this lane, as 1/n; 0 for none
+        private final int headroomDivisor;
+
+        Lane(int headroomDivisor) {
+            this.headroomDivisor = headroomDivisor;
+        }
+    }
+
+    private static final ThreadLocal<Lane> CURRENT_LANE = ThreadLocal.withInitial(() -> Lane.INTERACTIVE);
+
+    private final RateLimiter limiter;
+    private final Map<Lane, LaneQueue> lanes = new EnumMap<>(Lane.class);
+    // Grants queued calls; only this thread touches pendingDrain
+    private final ScheduledExecutorService dispatcher;
+    private ScheduledFuture<?> pendingDrain;
+
+    public PriorityRateLimiter(String name, int maxRequestsPerMinute, MeterRegistry meterRegistry) {
+        this(name, new RateLimiter(maxRequestsPerMinute), meterRegistry);
+    }
+
+    PriorityRateLimiter(String name, RateLimiter limiter, MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        for (Lane lane : Lane.values()) {
+            int headroom = lane.headroomDivisor == 0 ? 0 : limiter.burst() / lane.headroomDivisor;
+            lanes.put(lane, new LaneQueue(headroom, Tags.of("name", name, "lane", lane.name().toLowerCase()),
+                    meterRegistry));
+        }
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name(name + "-rate-limiter").daemon().factory());
+    }
+
+    /**
+     * Run a call in a lane; API requests it makes on this thread are limited in that lane
+     */
+    public static <T> T callAs(Lane lane, Supplier<T> call) {
+        Lane previous = CURRENT_LANE.get();
+        CURRENT_LANE.set(lane);
+        try {
+            return call.get();
+        } finally {
+            CURRENT_LANE.set(previous);
+        }
+    }
+
+    public static void runAs(Lane lane, Runnable call) {
+        callAs(lane, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public static Lane currentLane() {
+        return CURRENT_LANE.get();
+    }
+
+    /**
+     * Acquires a permit in the current thread's lane, waiting if necessary
+     * @return true if a permit was acquired, false if interrupted while waiting
+     */
+    public boolean acquire() {
+        return acquire(currentLane(), 1);
+    }
+
+    public boolean acquire(Lane lane, int weight) {
+        CompletableFuture<Void> granted = acquireAsync(lane, weight);
+        try {
+            granted.get();
+            return true;
+        } catch (InterruptedException e) {
+            // A cancelled waiter is skipped when its turn comes
+            granted.cancel(false);
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for rate limit");
+            return false;
+        } catch (ExecutionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Completes once a permit of the given lane is granted, without holding a thread meanwhile
+     */
+    public CompletableFuture<Void> acquireAsync(Lane lane, int weight) {
+        LaneQueue queue = lanes.get(lane);
+        long requested = System.nanoTime();
+
+        // Straight through if nobody of this priority or higher is waiting
+        if (nothingQueuedUpTo(lane) && limiter.tryAcquire(weight, queue.headroom)) {
+            queue.waited.record(0, TimeUnit.NANOSECONDS);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Waiter waiter = new Waiter(weight, requested, new CompletableFuture<>());
+        queue.waiters.add(waiter);
+        dispatcher.execute(this::drain);
+        return waiter.granted();
+    }
+
+    /**
+     * @see RateLimiter#onServerLimit
+     */
+    public void onServerLimit(long remaining, Instant reset) {
+        limiter.onServerLimit(remaining, reset);
+    }
+
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    private boolean nothingQueuedUpTo(Lane lane) {
+        for (Lane higher : Lane.values()) {
+            if (!lanes.get(higher).waiters.isEmpty()) {
+                return false;
+            }
+            if (higher == lane) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Grant queued calls in priority order while permits last, then check again when the
+     * first call still waiting could be granted
+     */
+    private void drain() {
+        if (pendingDrain != null) {
+            pendingDrain.cancel(false);
+            pendingDrain = null;
+        }
+
+        for (Lane lane : Lane.values()) {
+            LaneQueue queue = lanes.get(lane);
+            Waiter head;
+            while ((head = queue.waiters.peek()) != null) {
+                if (head.granted().isDone()) {
+                    // Cancelled while waiting
+                    queue.waiters.poll();
+                    continue;
+                }
+                if (!limiter.tryAcquire(head.weight(), queue.headroom)) {
+                    break;
+                }
+                queue.waiters.poll();
+                queue.waited.record(System.nanoTime() - head.requested(), TimeUnit.NANOSECONDS);
+                head.granted().complete(null);
+            }
+
+            if (head != null) {
+                // Lanes below wait for this one
+                long delay = Math.max(limiter.nanosUntilAvailable(head.weight(), queue.headroom),
+                        TimeUnit.MILLISECONDS.toNanos(1));
+                pendingDrain = dispatcher.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+    }
+
+    private record Waiter(int weight, long requested, CompletableFuture<Void> granted) {}
+
+    private static final class LaneQueue {
+        private final int headroom;
+        private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+        private final Timer waited;
+
+        LaneQueue(int headroom, Tags tags, MeterRegistry meterRegistry) {
+            this.headroom = headroom;
+            this.waited = meterRegistry.timer("rate_limiter.wait", tags);
+            Gauge.builder("rate_limiter.queued", waiters, Queue::size)
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -2,23 +2,88 @@ package com.stockexchange.stock_platform.util;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.concurrent.locks.ReentrantLock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
 
 /**
- * Simple token bucket rate limiter for API calls
+ * Lock-free rate limiter for API calls (GCRA: generic cell rate algorithm).
+ * <p>
+ * The whole state is one theoretical arrival time on the monotonic clock, advanced with
+ * CAS. Each permit pushes it forward by the emission interval; a permit is due once it's
+ * no further ahead of now than the burst tolerance. Permits are handed out in the order
+ * they are reserved, so waiters are served first in, first out, and nobody waits holding
+ * a lock. Any minute sees at most maxRequestsPerMinute permits: a burst of up to a tenth
+ * of them, with the rest spread evenly.
+ * <p>
+ * Requests can weigh more than one permit, and the budget can be tightened from what the
+ * server reports is left (see {@link #onServerLimit}).
  */
 @Slf4j
 public class RateLimiter {
-    private final int maxRequestsPerMinute;
-    private final Queue<LocalDateTime> requestTimestamps = new LinkedList<>();
-    private final ReentrantLock lock = new ReentrantLock();
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LongSupplier nanoClock;
+    // Nanos between permits, and how far ahead of now the arrival time may run
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final int burst;
+    private final AtomicLong theoreticalArrival;
 
     public RateLimiter(int maxRequestsPerMinute) {
-        this.maxRequestsPerMinute = maxRequestsPerMinute;
+        this(maxRequestsPerMinute, System::nanoTime);
+    }
+
+    RateLimiter(int maxRequestsPerMinute, LongSupplier nanoClock) {
+        if (maxRequestsPerMinute < 1) {
+            throw new IllegalArgumentException("maxRequestsPerMinute must be positive");
+        }
+        this.burst = Math.max(1, maxRequestsPerMinute / 10);
+        // A burst plus a minute of evenly spaced permits never exceeds the limit
+        long spaced = Math.max(1, maxRequestsPerMinute - burst);
+        this.nanoClock = nanoClock;
+        this.emissionInterval = MINUTE_NANOS / spaced;
+        this.burstTolerance = (burst - 1) * emissionInterval;
+        this.theoreticalArrival = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Takes a permit if one is available right now
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Takes permits for a request of the given weight if they're all available right now
+     */
+    public boolean tryAcquire(int weight) {
+        return tryAcquire(weight, 0);
+    }
+
+    /**
+     * Takes permits if they're available right now and at least headroom more would still be
+     * left after them, so callers with less headroom can't use up the last permits
+     */
+    boolean tryAcquire(int weight, int headroom) {
+        long cost = cost(weight);
+        long tolerance = burstTolerance - headroom * emissionInterval;
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long arrival = theoreticalArrival.get();
+            long start = Math.max(arrival, now);
+            if (start + cost - emissionInterval - now > tolerance) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, start + cost)) {
+                return true;
+            }
+        }
     }
 
     /**
@@ -26,51 +91,117 @@ public class RateLimiter {
      * @return true if a permit was acquired, false if interrupted while waiting
      */
     public boolean acquire() {
-        try {
-            lock.lock();
+        return acquire(1);
+    }
 
-            // Clean up old timestamps
-            LocalDateTime oneMinuteAgo = LocalDateTime.now().minusMinutes(1);
-            while (!requestTimestamps.isEmpty() && requestTimestamps.peek().isBefore(oneMinuteAgo)) {
-                requestTimestamps.poll();
-            }
+    /**
+     * Acquires permits for a request of the given weight, waiting if necessary
+     * @return true if the permits were acquired, false if interrupted while waiting
+     */
+    public boolean acquire(int weight) {
+        long waitNanos = reserveNanos(weight);
+        if (waitNanos <= 0) {
+            return true;
+        }
 
-            // If we've reached the limit, wait until we can proceed
-            while (requestTimestamps.size() >= maxRequestsPerMinute) {
-                lock.unlock();
-                log.info("Rate limit reached, waiting before making next API call...");
-                try {
-                    // Wait for oldest request to expire
-                    LocalDateTime oldestRequest = requestTimestamps.peek();
-                    assert oldestRequest != null;
-                    long waitTimeMs = ChronoUnit.MILLIS.between(
-                            LocalDateTime.now(),
-                            oldestRequest.plusMinutes(1)
-                    );
-
-                    if (waitTimeMs > 0) {
-                        Thread.sleep(waitTimeMs + 100); // Add a small buffer
-                    }
-                } catch (InterruptedException e) {
-                    log.warn("Interrupted while waiting for rate limit", e);
-                    return false;
-                }
-                lock.lock();
-
-                // Clean up again after waiting
-                oneMinuteAgo = LocalDateTime.now().minusMinutes(1);
-                while (!requestTimestamps.isEmpty() && requestTimestamps.peek().isBefore(oneMinuteAgo)) {
-                    requestTimestamps.poll();
-                }
+        log.info("Rate limit reached, waiting {} ms before making next API call...",
+                TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        long deadline = nanoClock.getAsLong() + waitNanos;
+        // parkNanos may return early, so park until the reserved slot comes up
+        for (long remaining = waitNanos; remaining > 0; remaining = deadline - nanoClock.getAsLong()) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                log.warn("Interrupted while waiting for rate limit");
+                return false;
             }
+        }
+        return true;
+    }
 
-            // Record this request
-            requestTimestamps.add(LocalDateTime.now());
-            return true;
-        } finally {
-            if (lock.isHeldByCurrentThread()) {
-                lock.unlock();
+    /**
+     * Reserves permits for a request of the given weight and completes once they are due,
+     * without holding a thread in the meantime
+     */
+    public CompletableFuture<Void> acquireAsync(int weight) {
+        long waitNanos = reserveNanos(weight);
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Reserves the next permit without waiting for it, for callers that schedule the
+     * request instead of parking a thread
+     * @return how long until the reserved permit may be used, zero if it's available now
+     */
+    public Duration reserve() {
+        return reserve(1);
+    }
+
+    public Duration reserve(int weight) {
+        return Duration.ofNanos(Math.max(0, reserveNanos(weight)));
+    }
+
+    /**
+     * Tighten the budget to what the server says is left until it resets, e.g. when other
+     * processes share the API key. Only ever delays permits; a more generous server
+     * doesn't loosen the local limit.
+     * @param remaining requests the server still accepts before the reset
+     * @param reset when the server's window resets
+     */
+    public void onServerLimit(long remaining, Instant reset) {
+        long now = nanoClock.getAsLong();
+        long floor;
+        if (remaining > 0) {
+            // Leave exactly `remaining` permits available from now
+            floor = now + burstTolerance - (Math.min(remaining, Integer.MAX_VALUE) - 1) * emissionInterval;
+        } else {
+            // Nothing left: the next permit is due at the reset
+            long untilReset = Math.max(0, Duration.between(Instant.now(), reset).toNanos());
+            floor = now + untilReset + burstTolerance;
+            log.warn("Server rate limit exhausted, holding requests for {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(untilReset));
+        }
+        theoreticalArrival.accumulateAndGet(floor, Math::max);
+    }
+
+    /**
+     * How long until {@link #tryAcquire(int, int)} could succeed, if nobody else takes permits first
+     */
+    long nanosUntilAvailable(int weight, int headroom) {
+        long now = nanoClock.getAsLong();
+        long start = Math.max(theoreticalArrival.get(), now);
+        return Math.max(0, start + cost(weight) - emissionInterval - burstTolerance + headroom * emissionInterval - now);
+    }
+
+    /**
+     * Permits available at once when nothing has been taken for a while
+     */
+    int burst() {
+        return burst;
+    }
+
+    /**
+     * Takes permits unconditionally and returns how long until they are due
+     */
+    private long reserveNanos(int weight) {
+        long cost = cost(weight);
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long arrival = theoreticalArrival.get();
+            long start = Math.max(arrival, now);
+            if (theoreticalArrival.compareAndSet(arrival, start + cost)) {
+                return start + cost - emissionInterval - burstTolerance - now;
             }
         }
     }
-}
\ No newline at end of file
+
+    private long cost(int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        return weight * emissionInterval;
+    }
+}
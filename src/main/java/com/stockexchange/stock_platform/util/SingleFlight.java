@@ -0,0 +1,65 @@
+package com.stockexchange.stock_platform.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls. The first caller for a key runs the call; callers
+ * arriving while it is in flight wait for it and get the same result, or the same exception.
+ * Nothing is kept once the call completes, so this is not a cache.
+ * <p>
+ * Counts executed and coalesced calls as single_flight.calls, tagged with the name.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = meterRegistry.counter("single_flight.calls", "name", name, "result", "executed");
+        this.coalesced = meterRegistry.counter("single_flight.calls", "name", name, "result", "coalesced");
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, pending);
+        if (leader != null) {
+            coalesced.increment();
+            return await(leader);
+        }
+
+        executed.increment();
+        try {
+            V value = call.get();
+            pending.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            // Rethrow what the leader threw, not the wrapper
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
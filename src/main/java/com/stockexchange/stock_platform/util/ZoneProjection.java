@@ -0,0 +1,119 @@
+package com.stockexchange.stock_platform.util;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Presents prices held in UTC in a user's time zone at response time, so price data is
+ * fetched and cached once for every zone.
+ * <p>
+ * One projection per zone is kept with its {@link ZoneRules}. A series is projected in
+ * one pass that resolves the offset again only when a bar crosses a transition (twice a
+ * year at most), instead of converting every bar through the market zone and back.
+ */
+public final class ZoneProjection {
+
+    private static final Map<ZoneId, ZoneProjection> PROJECTIONS = new ConcurrentHashMap<>();
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+
+    private ZoneProjection(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+    }
+
+    public static ZoneProjection of(ZoneId zone) {
+        return PROJECTIONS.computeIfAbsent(zone, ZoneProjection::new);
+    }
+
+    /**
+     * Copies of the prices with their zoned timestamp in this zone, in the same order
+     */
+    public List<StockPriceDto> project(List<StockPriceDto> prices) {
+        List<StockPriceDto> projected = new ArrayList<>(prices.size());
+        OffsetWindow window = null;
+        for (StockPriceDto price : prices) {
+            Instant instant = instantOf(price);
+            if (window == null || !window.contains(instant)) {
+                window = window(instant);
+            }
+            projected.add(copy(price, at(instant, window.offset())));
+        }
+        return projected;
+    }
+
+    /**
+     * Copy of the price with its zoned timestamp in this zone
+     */
+    public StockPriceDto project(StockPriceDto price) {
+        Instant instant = instantOf(price);
+        return copy(price, at(instant, rules.getOffset(instant)));
+    }
+
+    private ZonedDateTime at(Instant instant, ZoneOffset offset) {
+        LocalDateTime local = LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), offset);
+        return ZonedDateTime.ofLocal(local, zone, offset);
+    }
+
+    /**
+     * The span around an instant during which this zone's offset doesn't change
+     */
+    private OffsetWindow window(Instant instant) {
+        ZoneOffsetTransition previous = rules.previousTransition(instant);
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        return new OffsetWindow(
+                previous != null ? previous.getInstant() : Instant.MIN,
+                next != null ? next.getInstant() : Instant.MAX,
+                rules.getOffset(instant));
+    }
+
+    private StockPriceDto copy(StockPriceDto price, ZonedDateTime zonedTimestamp) {
+        return StockPriceDto.builder()
+                .symbol(price.getSymbol())
+                .price(price.getPrice())
+                .open(price.getOpen())
+                .high(price.getHigh())
+                .low(price.getLow())
+                .volume(price.getVolume())
+                .change(price.getChange())
+                .changePercent(price.getChangePercent())
+                .bid(price.getBid())
+                .ask(price.getAsk())
+                .timestamp(price.getTimestamp()) // Stays UTC, like in the database
+                .zonedTimestamp(zonedTimestamp)
+                .sourceTimezone(zone)
+                .build();
+    }
+
+    /**
+     * Prices without a zoned timestamp carry a UTC local time; prices with neither are
+     * shown as of now
+     */
+    private static Instant instantOf(StockPriceDto price) {
+        if (price.getZonedTimestamp() != null) {
+            return price.getZonedTimestamp().toInstant();
+        }
+        if (price.getTimestamp() != null) {
+            return price.getTimestamp().toInstant(ZoneOffset.UTC);
+        }
+        return Instant.now();
+    }
+
+    private record OffsetWindow(Instant from, Instant until, ZoneOffset offset) {
+        boolean contains(Instant instant) {
+            return !instant.isBefore(from) && instant.isBefore(until);
+        }
+    }
+}
@@ -74,4 +74,88 @@ CREATE TABLE stock_prices (
 CREATE INDEX ON stock_prices (symbol, time DESC);
 
 -- Convert to a TimescaleDB hypertable
-SELECT create_hypertable('stock_prices', 'time');
\ No newline at end of file
+SELECT create_hypertable('stock_prices', 'time');
+
+-- Compress chunks older than a week, keeping each symbol's rows together
+ALTER TABLE stock_prices SET (
+    timescaledb.compress,
+    timescaledb.compress_segmentby = 'symbol',
+    timescaledb.compress_orderby = 'time DESC'
+);
+SELECT add_compression_policy('stock_prices', INTERVAL '7 days');
+
+-- Hourly and daily OHLCV rollups of stock_prices, so long windows don't scan raw rows.
+-- Both are real-time aggregates: buckets not materialized yet are computed from raw rows.
+CREATE MATERIALIZED VIEW stock_prices_1h
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT symbol,
+       time_bucket(INTERVAL '1 hour', time) AS bucket,
+       first(COALESCE(open, price), time) AS open,
+       max(COALESCE(high, price)) AS high,
+       min(COALESCE(low, price)) AS low,
+       last(price, time) AS close,
+       sum(volume) AS volume
+FROM stock_prices
+GROUP BY symbol, bucket
+WITH NO DATA;
+
+SELECT add_continuous_aggregate_policy('stock_prices_1h',
+    start_offset => INTERVAL '3 days',
+    end_offset => INTERVAL '1 hour',
+    schedule_interval => INTERVAL '30 minutes');
+
+-- Daily buckets follow the New York trading day
+CREATE MATERIALIZED VIEW stock_prices_1d
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT symbol,
+       time_bucket(INTERVAL '1 day', time, 'America/New_York') AS bucket,
+       first(COALESCE(open, price), time) AS open,
+       max(COALESCE(high, price)) AS high,
+       min(COALESCE(low, price)) AS low,
+       last(price, time) AS close,
+       sum(volume) AS volume
+FROM stock_prices
+GROUP BY symbol, bucket
+WITH NO DATA;
+
+SELECT add_continuous_aggregate_policy('stock_prices_1d',
+    start_offset => INTERVAL '5 days',
+    end_offset => INTERVAL '1 day',
+    schedule_interval => INTERVAL '1 hour');
+
+-- Historical bars fetched from the market data API, one series per symbol and timeframe
+CREATE TABLE price_bars (
+                            symbol TEXT NOT NULL,
+                            timeframe TEXT NOT NULL,
+                            time TIMESTAMPTZ NOT NULL,
+                            open DECIMAL(19,4),
+                            high DECIMAL(19,4),
+                            low DECIMAL(19,4),
+                            close DECIMAL(19,4) NOT NULL,
+                            volume BIGINT,
+                            PRIMARY KEY(symbol, timeframe, time)
+);
+
+SELECT create_hypertable('price_bars', 'time');
+
+ALTER TABLE price_bars SET (
+    timescaledb.compress,
+    timescaledb.compress_segmentby = 'symbol, timeframe',
+    timescaledb.compress_orderby = 'time DESC'
+);
+SELECT add_compression_policy('price_bars', INTERVAL '30 days');
+
+-- Time ranges of price_bars that have been fetched completely
+CREATE TABLE price_bar_coverage (
+                                    symbol TEXT NOT NULL,
+                                    timeframe TEXT NOT NULL,
+                                    start_time TIMESTAMPTZ NOT NULL,
+                                    end_time TIMESTAMPTZ NOT NULL,
+                                    PRIMARY KEY(symbol, timeframe, start_time)
+);
+
+-- Orders, holdings and transactions are written in batches; Hibernate allocates their IDs
+-- 50 at a time from these sequences (see allocationSize on the entities)
+ALTER SEQUENCE orders_id_seq INCREMENT BY 50;
+ALTER SEQUENCE holdings_id_seq INCREMENT BY 50;
+ALTER SEQUENCE transactions_id_seq INCREMENT BY 50;
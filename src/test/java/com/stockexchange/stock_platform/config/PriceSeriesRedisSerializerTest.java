@@ -0,0 +1,93 @@
+package com.stockexchange.stock_platform.config;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class PriceSeriesRedisSerializerTest {
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    private final RedisCacheConfig config = new RedisCacheConfig();
+    private final GenericJackson2JsonRedisSerializer json = config.listSerializer(config.redisObjectMapper());
+    private final PriceSeriesRedisSerializer serializer = config.priceSeriesSerializer(json);
+
+    @Test
+    void seriesRoundTripsAndIsMuchSmallerThanJson() {
+        List<StockPriceDto> series = series(2_000);
+
+        byte[] binary = serializer.serialize(series);
+        byte[] legacy = json.serialize(series);
+
+        assertThat(serializer.deserialize(binary)).isEqualTo(series);
+        assertThat(binary.length).isLessThan(legacy.length / 5);
+    }
+
+    @Test
+    void missingFieldsRoundTrip() {
+        StockPriceDto quote = price(0);
+        quote.setOpen(null);
+        quote.setBid(new BigDecimal("187.1200"));
+        StockPriceDto bare = new StockPriceDto();
+        bare.setSymbol("MSFT");
+        bare.setPrice(new BigDecimal("412.0000"));
+        List<StockPriceDto> series = List.of(price(1), quote, bare);
+
+        assertThat(serializer.deserialize(serializer.serialize(series))).isEqualTo(series);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void jsonEntriesAndOtherValuesUseTheFallback() {
+        List<StockPriceDto> series = new ArrayList<>(series(3));
+
+        // Jackson reads zoned timestamps back in UTC, so compare what JSON keeps
+        assertThat((List<StockPriceDto>) serializer.deserialize(json.serialize(series)))
+                .extracting(StockPriceDto::getTimestamp, StockPriceDto::getPrice)
+                .containsExactly(series.stream()
+                        .map(price -> tuple(price.getTimestamp(), price.getPrice()))
+                        .toArray(Tuple[]::new));
+        assertThat(serializer.serialize(Map.of("AAPL", 1))).isEqualTo(json.serialize(Map.of("AAPL", 1)));
+    }
+
+    private static List<StockPriceDto> series(int count) {
+        List<StockPriceDto> series = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            series.add(price(i));
+        }
+        return series;
+    }
+
+    // Minute bars as they're cached after conversion to the user's zone
+    private static StockPriceDto price(int minute) {
+        LocalDateTime utc = LocalDateTime.of(2025, 3, 14, 13, 30).plusMinutes(minute);
+        BigDecimal close = new BigDecimal("187.0000").add(BigDecimal.valueOf(minute % 37, 2)).setScale(4);
+
+        StockPriceDto price = new StockPriceDto();
+        price.setSymbol("AAPL");
+        price.setTimestamp(utc);
+        price.setZonedTimestamp(utc.atZone(ZoneOffset.UTC).withZoneSameInstant(NEW_YORK));
+        price.setSourceTimezone(NEW_YORK);
+        price.setOpen(close.subtract(new BigDecimal("0.0500")));
+        price.setHigh(close.add(new BigDecimal("0.1000")));
+        price.setLow(close.subtract(new BigDecimal("0.1200")));
+        price.setPrice(close);
+        price.setVolume(10_000L + minute * 17L);
+        price.setChange(close.subtract(new BigDecimal("187.0000")));
+        price.setChangePercent(price.getChange().divide(new BigDecimal("1.8700"), 4, RoundingMode.HALF_UP));
+        return price;
+    }
+}
@@ -0,0 +1,59 @@
+package com.stockexchange.stock_platform.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TieredCacheTest {
+
+    private final ConcurrentMapCache remote = new ConcurrentMapCache("stockPrices_1d");
+    private final List<String> invalidations = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TieredCache cache = new TieredCache("stockPrices_1d",
+            Caffeine.newBuilder().maximumSize(10).build(), remote,
+            (name, key) -> invalidations.add(name + ":" + key), meterRegistry);
+
+    @Test
+    void remoteHitIsKeptLocallyAndShared() {
+        remote.put("AAPL", new ArrayList<>(List.of("bar")));
+
+        Object first = cache.get("AAPL").get();
+        remote.evict("AAPL");
+        Object second = cache.get("AAPL").get();
+
+        assertThat(second).isSameAs(first);
+        assertThatThrownBy(() -> ((List<Object>) second).add("other"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(meterRegistry.counter("cache.tier.gets", "cache", "stockPrices_1d", "level", "l1", "result", "hit").count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.counter("cache.tier.gets", "cache", "stockPrices_1d", "level", "l2", "result", "hit").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void evictionClearsBothLevelsAndIsPublished() {
+        cache.put("AAPL", "price");
+        cache.evict("AAPL");
+
+        assertThat(cache.get("AAPL")).isNull();
+        assertThat(remote.get("AAPL")).isNull();
+        assertThat(invalidations).containsExactly("stockPrices_1d:AAPL", "stockPrices_1d:AAPL");
+    }
+
+    @Test
+    void remoteInvalidationDropsOnlyTheLocalCopy() {
+        cache.put("AAPL", "old");
+        remote.put("AAPL", "new");
+
+        cache.invalidateLocal("AAPL");
+
+        assertThat(cache.get("AAPL").get()).isEqualTo("new");
+    }
+}
@@ -0,0 +1,86 @@
+package com.stockexchange.stock_platform.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BarAggregatorTest {
+
+    // 2024-03-15 13:30 UTC, 09:30 in New York
+    private static final long OPEN = Instant.parse("2024-03-15T13:30:00Z").toEpochMilli();
+    private static final long MINUTE = 60_000L;
+
+    private final BarAggregator aggregator = new BarAggregator();
+
+    @Test
+    void minuteBarsRollIntoEveryRetainedResolution() {
+        for (int i = 0; i < 10; i++) {
+            aggregator.onTick(minute(i, 100 + i));
+        }
+
+        List<Tick> fiveMinutes = aggregator.bars("AAPL", BarResolution.FIVE_MINUTES, OPEN, OPEN + 10 * MINUTE);
+        assertThat(fiveMinutes).hasSize(2);
+        Tick first = fiveMinutes.getFirst();
+        assertThat(first.epochMillis()).isEqualTo(OPEN);
+        assertThat(first.open()).isEqualTo(FixedPoint.of(100.0));
+        assertThat(first.high()).isEqualTo(FixedPoint.of(105.0));
+        assertThat(first.low()).isEqualTo(FixedPoint.of(99.0));
+        assertThat(first.close()).isEqualTo(FixedPoint.of(104.0));
+        assertThat(first.volume()).isEqualTo(500);
+
+        List<Tick> day = aggregator.bars("aapl", BarResolution.DAY, OPEN, OPEN + 10 * MINUTE);
+        assertThat(day).hasSize(1);
+        assertThat(day.getFirst().epochMillis()).isEqualTo(Instant.parse("2024-03-15T04:00:00Z").toEpochMilli());
+        assertThat(day.getFirst().volume()).isEqualTo(1000);
+    }
+
+    @Test
+    void windowsOutsideTheHeldBarsNeedSeeding() {
+        aggregator.onTick(minute(0, 100));
+        assertThat(aggregator.bars("AAPL", BarResolution.HOUR, OPEN - 90 * MINUTE, OPEN)).isNull();
+        assertThat(aggregator.bars("MSFT", BarResolution.HOUR, OPEN, OPEN)).isNull();
+
+        // Seeding the hour before the live bars makes the window local, and 8-hour bars are
+        // rolled up from the hours on demand
+        Tick earlier = new Tick("AAPL", FixedPoint.of(98.0), FixedPoint.of(99.5), FixedPoint.of(97.0),
+                FixedPoint.of(99.0), 700, OPEN - 90 * MINUTE);
+        aggregator.seed("AAPL", BarResolution.HOUR, List.of(earlier), OPEN - 90 * MINUTE, OPEN);
+
+        List<Tick> hours = aggregator.bars("AAPL", BarResolution.HOUR, OPEN - 90 * MINUTE, OPEN);
+        assertThat(hours).extracting(Tick::volume).containsExactly(700L, 100L);
+
+        List<Tick> eightHours = aggregator.bars("AAPL", BarResolution.EIGHT_HOURS, OPEN - 90 * MINUTE, OPEN);
+        assertThat(eightHours).hasSize(1);
+        assertThat(eightHours.getFirst().open()).isEqualTo(FixedPoint.of(98.0));
+        assertThat(eightHours.getFirst().close()).isEqualTo(FixedPoint.of(100.0));
+        assertThat(eightHours.getFirst().volume()).isEqualTo(800);
+    }
+
+    @Test
+    void barsAcrossAStreamGapAreNotCovered() {
+        for (int i = 0; i < 5; i++) {
+            aggregator.onTick(minute(i, 100));
+        }
+        // Reconnected half way through minute 10
+        aggregator.invalidate("aapl", OPEN + 10 * MINUTE + 30_000);
+        // A bar from before the gap still on its way doesn't bridge it, nor does the
+        // partly missed minute 10
+        aggregator.onTick(minute(5, 100));
+        aggregator.onTick(minute(10, 100));
+        aggregator.onTick(minute(11, 100));
+        aggregator.onTick(minute(12, 100));
+
+        assertThat(aggregator.bars("AAPL", BarResolution.MINUTE, OPEN, OPEN + 12 * MINUTE)).isNull();
+        assertThat(aggregator.bars("AAPL", BarResolution.MINUTE, OPEN + 5 * MINUTE, OPEN + 12 * MINUTE)).isNull();
+        assertThat(aggregator.bars("AAPL", BarResolution.MINUTE, OPEN + 11 * MINUTE, OPEN + 12 * MINUTE))
+                .extracting(Tick::epochMillis).containsExactly(OPEN + 11 * MINUTE, OPEN + 12 * MINUTE);
+    }
+
+    private static Tick minute(int index, double price) {
+        return new Tick("AAPL", FixedPoint.of(price), FixedPoint.of(price + 1), FixedPoint.of(price - 1),
+                FixedPoint.of(price), 100, OPEN + index * MINUTE);
+    }
+}
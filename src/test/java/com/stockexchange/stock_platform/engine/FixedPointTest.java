@@ -0,0 +1,39 @@
+package com.stockexchange.stock_platform.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixedPointTest {
+
+    @Test
+    void parseScalesToFourDecimals() {
+        assertThat(FixedPoint.parse("187.325")).isEqualTo(1_873_250L);
+        assertThat(FixedPoint.parse("42")).isEqualTo(420_000L);
+        assertThat(FixedPoint.parse("0.0001")).isEqualTo(1L);
+        assertThat(FixedPoint.parse("-1.5")).isEqualTo(-15_000L);
+    }
+
+    @Test
+    void parseRoundsHalfUpLikeBigDecimal() {
+        for (String text : new String[]{"1.23455", "1.23454999", "-1.23455", "0.00005", "1.5e2"}) {
+            assertThat(FixedPoint.parse(text)).as(text).isEqualTo(FixedPoint.of(new BigDecimal(text)));
+        }
+    }
+
+    @Test
+    void parseRejectsGarbage() {
+        assertThatThrownBy(() -> FixedPoint.parse("")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> FixedPoint.parse("-")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> FixedPoint.parse("12a")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void roundTripsThroughBigDecimal() {
+        assertThat(FixedPoint.toBigDecimal(FixedPoint.of(new BigDecimal("150.2500")))).isEqualByComparingTo("150.25");
+        assertThat(FixedPoint.of(150.25)).isEqualTo(1_502_500L);
+    }
+}
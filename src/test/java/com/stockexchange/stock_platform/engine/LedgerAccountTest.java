@@ -0,0 +1,46 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LedgerAccountTest {
+
+    @Test
+    void fillSettlesWithoutCountingTwice() {
+        LedgerAccount account = new LedgerAccount(1L, new BigDecimal("1000"));
+        LedgerAccount.Reservation reservation = account.reserve(OrderSide.BUY, "AAPL",
+                new BigDecimal("4"), new BigDecimal("100"));
+        assertNotNull(reservation);
+        account.track(7L, reservation);
+        assertEquals(0, new BigDecimal("600").compareTo(account.getAvailableCash()));
+
+        // The shard committed the fill: 400 spent, 4 shares held
+        account.settle(7L, new BigDecimal("600"), "AAPL", new BigDecimal("4"));
+        assertEquals(0, new BigDecimal("600").compareTo(account.getAvailableCash()));
+        assertEquals(0, new BigDecimal("4").compareTo(account.getAvailableShares("AAPL")));
+
+        // Already released by the fill, so a late cancel gives nothing back
+        assertFalse(account.release(7L));
+        assertEquals(0, new BigDecimal("600").compareTo(account.getAvailableCash()));
+    }
+
+    @Test
+    void restoredOrdersHoldSharesUntilReleased() {
+        LedgerAccount account = new LedgerAccount(1L, BigDecimal.ZERO);
+        account.putShares("MSFT", new BigDecimal("10"));
+        account.restore(3L, OrderSide.SELL, "MSFT", new BigDecimal("8"), new BigDecimal("400"));
+
+        assertNull(account.reserve(OrderSide.SELL, "MSFT", new BigDecimal("3"), new BigDecimal("400")));
+        assertNotNull(account.reserve(OrderSide.SELL, "MSFT", new BigDecimal("2"), new BigDecimal("400")));
+
+        account.release(3L);
+        assertEquals(0, new BigDecimal("8").compareTo(account.getAvailableShares("MSFT")));
+    }
+}
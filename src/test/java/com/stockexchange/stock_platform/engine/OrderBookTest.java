@@ -0,0 +1,72 @@
+package com.stockexchange.stock_platform.engine;
+
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderBookTest {
+
+    private final OrderBook book = new OrderBook("AAPL");
+
+    @Test
+    void matchFillsCrossedLevelsInPriceTimePriority() {
+        book.add(order(1L, OrderSide.BUY, "100.00"));
+        book.add(order(2L, OrderSide.BUY, "101.00"));
+        book.add(order(3L, OrderSide.BUY, "101.00"));
+        book.add(order(4L, OrderSide.BUY, "99.00"));
+        book.add(order(5L, OrderSide.SELL, "105.00"));
+
+        List<BookOrder> filled = book.match(new BigDecimal("100.00"));
+
+        assertThat(filled).extracting(BookOrder::getOrderId).containsExactly(2L, 3L, 1L);
+        assertThat(book.size()).isEqualTo(2);
+        assertThat(book.bestBid()).isEqualByComparingTo("99.00");
+        assertThat(book.bestAsk()).isEqualByComparingTo("105.00");
+    }
+
+    @Test
+    void sellOrdersFillWhenPriceRisesToTheirLimit() {
+        book.add(order(1L, OrderSide.SELL, "50.10"));
+        book.add(order(2L, OrderSide.SELL, "50.00"));
+
+        assertThat(book.isCrossedBy(new BigDecimal("49.99"))).isFalse();
+        assertThat(book.match(new BigDecimal("50.05")))
+                .extracting(BookOrder::getOrderId).containsExactly(2L);
+    }
+
+    @Test
+    void removedOrdersAreNotMatched() {
+        book.add(order(1L, OrderSide.BUY, "10.00"));
+        book.add(order(2L, OrderSide.BUY, "10.00"));
+
+        assertThat(book.remove(1L)).isNotNull();
+        assertThat(book.remove(1L)).isNull();
+
+        assertThat(book.match(new BigDecimal("9.00")))
+                .extracting(BookOrder::getOrderId).containsExactly(2L);
+        assertThat(book.isEmpty()).isTrue();
+    }
+
+    @Test
+    void restoredOrderKeepsItsTimePriority() {
+        book.add(order(1L, OrderSide.BUY, "10.00"));
+        book.add(order(2L, OrderSide.BUY, "10.00"));
+        List<BookOrder> matched = book.match(new BigDecimal("10.00"));
+        book.add(order(3L, OrderSide.BUY, "10.00"));
+
+        // Executing order 2 failed; it goes back ahead of the later order 3
+        book.restore(matched.get(1));
+
+        assertThat(book.bestBid()).isEqualByComparingTo("10.00");
+        assertThat(book.match(new BigDecimal("10.00")))
+                .extracting(BookOrder::getOrderId).containsExactly(2L, 3L);
+    }
+
+    private static BookOrder order(Long id, OrderSide side, String price) {
+        return new BookOrder(id, 1L, "AAPL", side, new BigDecimal(price), BigDecimal.ONE);
+    }
+}
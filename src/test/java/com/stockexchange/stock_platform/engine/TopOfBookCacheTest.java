@@ -0,0 +1,37 @@
+package com.stockexchange.stock_platform.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopOfBookCacheTest {
+
+    private final TopOfBookCache cache = new TopOfBookCache();
+
+    @Test
+    void burstOfUpdatesIsDeliveredOncePerSymbolWithTheLatestState() {
+        cache.onQuote("AAPL", 1_872_000L, 3, 1_873_000L, 2, 1_000L);
+        cache.onTrade("AAPL", 1_872_500L, 100, 1_001L);
+        cache.onQuote("AAPL", 1_872_100L, 5, 1_872_900L, 1, 1_002L);
+        cache.onTrade("MSFT", 4_101_500L, 10, 1_003L);
+
+        List<TopOfBook.Snapshot> delivered = new ArrayList<>();
+        cache.drainUpdates(delivered::add);
+
+        assertThat(delivered).extracting(TopOfBook.Snapshot::symbol).containsExactly("AAPL", "MSFT");
+        TopOfBook.Snapshot aapl = delivered.get(0);
+        assertThat(aapl.lastPrice()).isEqualTo(1_872_500L);
+        assertThat(aapl.bidPrice()).isEqualTo(1_872_100L);
+        assertThat(aapl.askPrice()).isEqualTo(1_872_900L);
+
+        // Nothing changed since the drain
+        delivered.clear();
+        cache.drainUpdates(delivered::add);
+        assertThat(delivered).isEmpty();
+        assertThat(cache.get("AAPL").hasQuote()).isTrue();
+        assertThat(cache.get("TSLA")).isNull();
+    }
+}
@@ -0,0 +1,65 @@
+package com.stockexchange.stock_platform.service.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockexchange.stock_platform.config.AlpacaConfig;
+import com.stockexchange.stock_platform.exception.ExternalApiException;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AlpacaClientTest {
+
+    @Test
+    void symbolsAreSplitIntoDistinctUpperCaseChunks() {
+        List<String> symbols = new ArrayList<>(IntStream.range(0, 250).mapToObj(i -> "s" + i).toList());
+        symbols.add("S0");
+        symbols.add("s1");
+
+        List<List<String>> chunks = AlpacaClient.chunks(symbols);
+
+        assertThat(chunks).extracting(List::size).containsExactly(100, 100, 50);
+        assertThat(chunks.getFirst()).startsWith("S0", "S1");
+        assertThat(chunks.stream().flatMap(List::stream).distinct()).hasSize(250);
+    }
+
+    @Test
+    void failedPageFailsTheWholeFetch() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(), eq(String.class))).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            if (url.contains("page_token")) {
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            }
+            return ResponseEntity.ok("""
+                    {"bars":[{"t":"2024-03-01T14:30:00Z","o":1,"h":1,"l":1,"c":1,"v":10}],
+                     "symbol":"AAPL","next_page_token":"QUFQTHwy"}""");
+        });
+        AlpacaConfig config = new AlpacaConfig();
+        config.setDataBaseUrl("https://data.example");
+        AlpacaClient client = new AlpacaClient(restTemplate, config, new ObjectMapper(),
+                new PriorityRateLimiter("test", 1000, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+
+        // Returning the first page alone would get the window stored as covered
+        assertThatThrownBy(() -> client.getHistoricalBars("AAPL", "1Min",
+                LocalDateTime.of(2024, 3, 1, 14, 30), LocalDateTime.of(2024, 3, 1, 21, 0)))
+                .isInstanceOf(ExternalApiException.class);
+    }
+}
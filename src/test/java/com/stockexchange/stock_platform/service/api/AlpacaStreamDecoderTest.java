@@ -0,0 +1,120 @@
+package com.stockexchange.stock_platform.service.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.stockexchange.stock_platform.engine.Tick;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlpacaStreamDecoderTest {
+
+    private final List<Tick> bars = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+
+    private final AlpacaStreamDecoder decoder = new AlpacaStreamDecoder(new JsonFactory(), new AlpacaStreamDecoder.Handler() {
+        @Override
+        public void onBar(Tick bar) {
+            bars.add(bar);
+        }
+
+        @Override
+        public void onTrade(String symbol, long price, long size, long epochMillis) {
+            events.add("trade:" + symbol + ":" + price + ":" + size);
+        }
+
+        @Override
+        public void onQuote(String symbol, long bidPrice, long bidSize, long askPrice, long askSize, long epochMillis) {
+            events.add("quote:" + symbol + ":" + bidPrice + "x" + bidSize + ":" + askPrice + "x" + askSize);
+        }
+
+        @Override
+        public void onSuccess(String message) {
+            events.add("success:" + message);
+        }
+
+        @Override
+        public void onError(int code, String message) {
+            events.add("error:" + code + ":" + message);
+        }
+
+        @Override
+        public void onSubscription(int barCount) {
+            events.add("subscription:" + barCount);
+        }
+    });
+
+    @Test
+    void decodesBarsIntoFixedPointTicks() throws IOException {
+        decode("""
+                [{"T":"b","S":"AAPL","o":187.5,"h":188.1234,"l":187,"c":187.99995,"v":12345,
+                  "t":"2024-03-15T14:30:00Z","n":42,"vw":187.8},
+                 {"S":"MSFT","T":"b","o":410.1,"h":410.2,"l":410,"c":410.15,"v":7,
+                  "t":"2024-03-15T14:31:00.123456Z"}]
+                """);
+
+        assertThat(bars).hasSize(2);
+        Tick aapl = bars.get(0);
+        assertThat(aapl.symbol()).isEqualTo("AAPL");
+        assertThat(aapl.open()).isEqualTo(1_875_000L);
+        assertThat(aapl.high()).isEqualTo(1_881_234L);
+        assertThat(aapl.low()).isEqualTo(1_870_000L);
+        assertThat(aapl.close()).isEqualTo(1_880_000L);
+        assertThat(aapl.volume()).isEqualTo(12345L);
+        assertThat(aapl.epochMillis()).isEqualTo(Instant.parse("2024-03-15T14:30:00Z").toEpochMilli());
+
+        // Field order doesn't matter and fractions of a second are kept to the millisecond
+        assertThat(bars.get(1).symbol()).isEqualTo("MSFT");
+        assertThat(bars.get(1).epochMillis()).isEqualTo(Instant.parse("2024-03-15T14:31:00.123Z").toEpochMilli());
+    }
+
+    @Test
+    void decodesTradesAndQuotesAroundTheirConditionCodes() throws IOException {
+        decode("""
+                [{"T":"t","S":"AAPL","i":96921,"x":"D","p":187.25,"s":100,"c":["@","I"],
+                  "t":"2024-03-15T14:30:01.5Z","z":"C"},
+                 {"T":"q","S":"AAPL","bx":"V","bp":187.2,"bs":3,"ax":"V","ap":187.3,"as":2,
+                  "c":["R"],"t":"2024-03-15T14:30:02Z","z":"C"}]
+                """);
+
+        assertThat(bars).isEmpty();
+        assertThat(events).containsExactly(
+                "trade:AAPL:1872500:100",
+                "quote:AAPL:1872000x3:1873000x2");
+    }
+
+    @Test
+    void decodesControlMessages() throws IOException {
+        decode("""
+                [{"T":"success","msg":"authenticated"},
+                 {"T":"subscription","trades":[],"quotes":[],"bars":["AAPL","MSFT"]},
+                 {"T":"error","code":406,"msg":"connection limit exceeded"}]
+                """);
+
+        assertThat(bars).isEmpty();
+        assertThat(events).containsExactly(
+                "success:authenticated",
+                "subscription:2",
+                "error:406:connection limit exceeded");
+    }
+
+    @Test
+    void parsesTimestampsAcrossDateBoundaries() {
+        for (String timestamp : new String[]{"1970-01-01T00:00:00Z", "2000-02-29T23:59:59.999Z", "2024-12-31T23:59:59Z"}) {
+            char[] chars = timestamp.toCharArray();
+            assertThat(AlpacaStreamDecoder.parseEpochMillis(chars, 0, chars.length))
+                    .as(timestamp)
+                    .isEqualTo(Instant.parse(timestamp).toEpochMilli());
+        }
+    }
+
+    private void decode(String frame) throws IOException {
+        decoder.decode(new ByteArrayInputStream(frame.getBytes(StandardCharsets.UTF_8)));
+    }
+}
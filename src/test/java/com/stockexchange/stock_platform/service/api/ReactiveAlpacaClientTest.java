@@ -0,0 +1,133 @@
+package com.stockexchange.stock_platform.service.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockexchange.stock_platform.config.AlpacaConfig;
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.exception.ExternalApiException;
+import com.stockexchange.stock_platform.util.PriorityRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactiveAlpacaClientTest {
+
+    private final List<String> requests = new ArrayList<>();
+
+    @Test
+    void historicalBarsFollowPageTokensAndKeepChangesRelativeToTheFirstBar() {
+        ReactiveAlpacaClient client = client(request -> {
+            String query = request.url().getRawQuery();
+            if (!query.contains("page_token")) {
+                return ok("{\"bars\":[" + bar("2024-03-15T13:30:00Z", 100) + "],\"next_page_token\":\"QUFQTA==\"}");
+            }
+            return ok("{\"bars\":[" + bar("2024-03-15T13:31:00Z", 110) + "],\"next_page_token\":null}");
+        });
+
+        List<StockPriceDto> bars = client.getHistoricalBars("aapl", "1Min",
+                LocalDateTime.of(2024, 3, 15, 13, 30), LocalDateTime.of(2024, 3, 15, 14, 0)).collectList().block();
+
+        assertThat(bars).extracting(StockPriceDto::getSymbol).containsExactly("AAPL", "AAPL");
+        assertThat(bars.get(1).getChange()).isEqualByComparingTo("10");
+        assertThat(bars.get(1).getChangePercent()).isEqualByComparingTo("10");
+        // The token goes out as received, and with the same window as the first page
+        assertThat(requests.get(1)).endsWith("&page_token=QUFQTA==");
+        assertThat(requests.get(1)).startsWith(requests.get(0));
+    }
+
+    @Test
+    void failedPageFailsTheWholeCall() {
+        ReactiveAlpacaClient client = client(request -> request.url().getRawQuery().contains("page_token")
+                ? Mono.just(ClientResponse.create(HttpStatus.BAD_REQUEST).build())
+                : ok("{\"bars\":[" + bar("2024-03-15T13:30:00Z", 100) + "],\"next_page_token\":\"QUFQTA==\"}"));
+
+        Flux<StockPriceDto> bars = client.getHistoricalBars("AAPL", "1Min",
+                LocalDateTime.of(2024, 3, 15, 13, 30), LocalDateTime.of(2024, 3, 15, 14, 0));
+
+        assertThatThrownBy(bars::blockLast)
+                .isInstanceOf(ExternalApiException.class)
+                .hasMessageContaining("next page of AAPL");
+    }
+
+    @Test
+    void laterPagesAreLimitedInTheCallersLane() {
+        PriorityRateLimiter rateLimiter = mock(PriorityRateLimiter.class);
+        when(rateLimiter.acquireAsync(any(), anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+        // The first page arrives on a timer thread, so the second is requested from there
+        ReactiveAlpacaClient client = client(request -> request.url().getRawQuery().contains("page_token")
+                ? ok("{\"bars\":[" + bar("2024-03-15T13:31:00Z", 110) + "],\"next_page_token\":null}")
+                : ok("{\"bars\":[" + bar("2024-03-15T13:30:00Z", 100) + "],\"next_page_token\":\"QUFQTA==\"}")
+                        .delayElement(Duration.ofMillis(10)), rateLimiter);
+
+        Flux<StockPriceDto> bars = PriorityRateLimiter.callAs(PriorityRateLimiter.Lane.BACKGROUND, () ->
+                client.getHistoricalBars("AAPL", "1Min",
+                        LocalDateTime.of(2024, 3, 15, 13, 30), LocalDateTime.of(2024, 3, 15, 14, 0)));
+
+        assertThat(bars.collectList().block()).hasSize(2);
+        verify(rateLimiter, times(2)).acquireAsync(PriorityRateLimiter.Lane.BACKGROUND, 1);
+    }
+
+    @Test
+    void currentPriceFallsBackToTheNextFeed() {
+        ReactiveAlpacaClient client = client(request -> request.url().getQuery().contains("feed=sip")
+                ? Mono.just(ClientResponse.create(HttpStatus.FORBIDDEN).build())
+                : ok("{\"bar\":" + bar("2024-03-15T13:30:00Z", 100) + "}"));
+
+        StockPriceDto price = client.getCurrentPrice("AAPL").block();
+
+        assertThat(price.getPrice()).isEqualByComparingTo("100");
+        assertThat(requests).hasSize(2);
+        assertThat(requests.get(1)).contains("feed=iex");
+    }
+
+    private ReactiveAlpacaClient client(Function<ClientRequest, Mono<ClientResponse>> server) {
+        return client(server, new PriorityRateLimiter("test", 1000, new SimpleMeterRegistry()));
+    }
+
+    private ReactiveAlpacaClient client(Function<ClientRequest, Mono<ClientResponse>> server,
+                                        PriorityRateLimiter rateLimiter) {
+        AlpacaConfig config = new AlpacaConfig();
+        config.setDataBaseUrl("https://data.example");
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.add(request.url().toString());
+                    return server.apply(request);
+                })
+                .build();
+        return new ReactiveAlpacaClient(webClient, config, new ObjectMapper(), rateLimiter);
+    }
+
+    private static Mono<ClientResponse> ok(String body) {
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+
+    private static String bar(String time, double price) {
+        return "{\"t\":\"" + time + "\",\"o\":" + price + ",\"h\":" + price + ",\"l\":" + price
+                + ",\"c\":" + price + ",\"v\":100}";
+    }
+}
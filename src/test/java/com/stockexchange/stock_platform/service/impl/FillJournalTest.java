@@ -0,0 +1,161 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.model.enums.OrderStatus;
+import com.stockexchange.stock_platform.model.enums.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlProvider;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FillJournalTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final FillJournal journal = new FillJournal(jdbcTemplate);
+
+    // Every batch sent to the database, in order, as (statement, rows)
+    private final List<Statement> statements = new ArrayList<>();
+    private int[] orderUpdateCounts;
+
+    FillJournalTest() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            List<Object[]> rows = invocation.getArgument(1);
+            statements.add(new Statement(sql.strip(), rows));
+            int[] counts = new int[rows.size()];
+            Arrays.fill(counts, 1);
+            return sql.startsWith("UPDATE orders") && orderUpdateCounts != null ? orderUpdateCounts : counts;
+        });
+    }
+
+    @Test
+    void writesEveryTableWithOneBatchEach() {
+        FillJournal.Batch batch = new FillJournal.Batch();
+        // User 1 buys AAPL twice and sells out of MSFT; user 2 buys AAPL
+        batch.position(1L, "AAPL", new BigDecimal("2"), new BigDecimal("100"));
+        batch.transaction(1L, "AAPL", TransactionType.BUY, new BigDecimal("2"), new BigDecimal("100"));
+        batch.orderStatus(10L, OrderStatus.EXECUTED);
+        batch.position(1L, "AAPL", new BigDecimal("5"), new BigDecimal("102"));
+        batch.transaction(1L, "AAPL", TransactionType.BUY, new BigDecimal("3"), new BigDecimal("103.3333"));
+        batch.orderStatus(11L, OrderStatus.EXECUTED);
+        batch.position(1L, "MSFT", BigDecimal.ZERO, new BigDecimal("400"));
+        batch.transaction(1L, "MSFT", TransactionType.SELL, new BigDecimal("1"), new BigDecimal("410"));
+        batch.orderStatus(12L, OrderStatus.EXECUTED);
+        batch.cashBalance(1L, new BigDecimal("390"));
+        batch.position(2L, "AAPL", new BigDecimal("1"), new BigDecimal("100"));
+        batch.transaction(2L, "AAPL", TransactionType.BUY, new BigDecimal("1"), new BigDecimal("100"));
+        batch.orderStatus(13L, OrderStatus.EXECUTED);
+        batch.cashBalance(2L, new BigDecimal("900"));
+
+        journal.write(batch);
+
+        assertThat(statements).extracting(Statement::verb).containsExactly(
+                "UPDATE orders", "INSERT INTO holdings", "INSERT INTO transactions",
+                "UPDATE transactions", "DELETE FROM holdings", "UPDATE users");
+
+        // Orders only move on from PENDING
+        assertThat(statements.get(0).sql()).contains("AND status = 'PENDING'");
+        assertThat(statements.get(0).rows()).containsExactly(
+                new Object[]{"EXECUTED", 10L}, new Object[]{"EXECUTED", 11L},
+                new Object[]{"EXECUTED", 12L}, new Object[]{"EXECUTED", 13L});
+
+        // One upsert per open position with its latest quantity
+        assertThat(statements.get(1).sql()).contains("ON CONFLICT (user_id, symbol)");
+        assertThat(statements.get(1).rows()).containsExactly(
+                new Object[]{1L, "AAPL", new BigDecimal("5"), new BigDecimal("102")},
+                new Object[]{2L, "AAPL", new BigDecimal("1"), new BigDecimal("100")});
+
+        // Every fill is recorded, linked to its holding through the subquery's user and symbol
+        assertThat(statements.get(2).sql()).contains("(SELECT id FROM holdings WHERE user_id = ? AND symbol = ?)");
+        List<Object[]> transactions = statements.get(2).rows();
+        assertThat(transactions).hasSize(4);
+        assertThat(Arrays.copyOf(transactions.get(1), 8)).containsExactly(1L, 1L, "AAPL", "BUY", "AAPL",
+                new BigDecimal("3"), new BigDecimal("103.3333"), new BigDecimal("309.9999"));
+        assertThat(Arrays.copyOf(transactions.get(2), 5)).containsExactly(1L, 1L, "MSFT", "SELL", "MSFT");
+
+        // The closed MSFT position is unlinked from its history, then deleted; after the
+        // transaction insert, so the sell links to it first
+        assertThat(statements.get(3).sql()).contains("SET holding_id = NULL");
+        assertThat(statements.get(3).rows()).containsExactly(new Object[]{1L, "MSFT"});
+        assertThat(statements.get(4).rows()).containsExactly(new Object[]{1L, "MSFT"});
+
+        assertThat(statements.get(5).rows()).containsExactly(
+                new Object[]{new BigDecimal("390"), 1L}, new Object[]{new BigDecimal("900"), 2L});
+    }
+
+    @Test
+    void orderNoLongerPendingWritesNothingElse() {
+        FillJournal.Batch batch = new FillJournal.Batch();
+        batch.position(1L, "AAPL", new BigDecimal("2"), new BigDecimal("100"));
+        batch.transaction(1L, "AAPL", TransactionType.BUY, new BigDecimal("2"), new BigDecimal("100"));
+        batch.orderStatus(10L, OrderStatus.EXECUTED);
+        batch.orderStatus(11L, OrderStatus.FAILED);
+        batch.cashBalance(1L, new BigDecimal("800"));
+        // Order 11 was canceled since its status was read
+        orderUpdateCounts = new int[]{1, 0};
+
+        assertThatThrownBy(() -> journal.write(batch))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("11");
+        assertThat(statements).extracting(Statement::verb).containsExactly("UPDATE orders");
+    }
+
+    @Test
+    void emptyBatchWritesNothing() {
+        journal.write(new FillJournal.Batch());
+
+        assertThat(statements).isEmpty();
+    }
+
+    @Test
+    void locksOrdersInIdOrder() throws Exception {
+        List<String> queries = new ArrayList<>();
+        doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            queries.add(((SqlProvider) creator).getSql());
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(row(10L, "PENDING"));
+            handler.processRow(row(11L, "CANCELED"));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        Map<Long, OrderStatus> statuses = journal.lockOrderStatuses(List.of(11L, 10L, 12L));
+
+        assertThat(statuses).containsExactlyInAnyOrderEntriesOf(
+                Map.of(10L, OrderStatus.PENDING, 11L, OrderStatus.CANCELED));
+        assertThat(queries).singleElement().asString()
+                .contains("WHERE id IN (?, ?, ?)")
+                .endsWith("ORDER BY id FOR UPDATE");
+    }
+
+    private static ResultSet row(long id, String status) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("status")).thenReturn(status);
+        return rs;
+    }
+
+    private record Statement(String sql, List<Object[]> rows) {
+        // e.g. "INSERT INTO holdings" or "UPDATE orders"
+        String verb() {
+            String[] words = sql.split("\\s+");
+            return words[0].equals("UPDATE") ? words[0] + " " + words[1] : words[0] + " " + words[1] + " " + words[2];
+        }
+    }
+}
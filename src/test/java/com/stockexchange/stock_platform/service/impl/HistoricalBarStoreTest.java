@@ -0,0 +1,89 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.engine.BarResolution;
+import com.stockexchange.stock_platform.service.api.AlpacaClient;
+import com.stockexchange.stock_platform.service.impl.HistoricalBarStore.Range;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.Invocation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+class HistoricalBarStoreTest {
+
+    private static final LocalDateTime JAN = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime MAR = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime MAY = LocalDateTime.of(2024, 5, 1, 0, 0);
+    private static final LocalDateTime JUL = LocalDateTime.of(2024, 7, 1, 0, 0);
+    private static final LocalDateTime SEP = LocalDateTime.of(2024, 9, 1, 0, 0);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final AlpacaClient alpacaClient = mock(AlpacaClient.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final HistoricalBarStore store = new HistoricalBarStore(jdbcTemplate, alpacaClient, transactionManager);
+
+    @Test
+    void sipBarsAreRecordedAsCovered() {
+        when(alpacaClient.getHistoricalFeedBars("AAPL", "1Hour", JAN, MAR))
+                .thenReturn(new AlpacaClient.FeedBars(List.of(bar(JAN)), "sip"));
+
+        store.getBars("AAPL", BarResolution.HOUR, JAN, MAR);
+
+        assertThat(updates()).anyMatch(sql -> sql.startsWith("INSERT INTO price_bars"));
+        assertThat(updates()).anyMatch(sql -> sql.contains("INSERT INTO price_bar_coverage"));
+    }
+
+    @Test
+    void iexFallbackIsStoredButFetchedAgain() {
+        when(alpacaClient.getHistoricalFeedBars("AAPL", "1Hour", JAN, MAR))
+                .thenReturn(new AlpacaClient.FeedBars(List.of(bar(JAN)), "iex"));
+
+        store.getBars("AAPL", BarResolution.HOUR, JAN, MAR);
+
+        assertThat(updates()).anyMatch(sql -> sql.startsWith("INSERT INTO price_bars"));
+        assertThat(updates()).noneMatch(sql -> sql.contains("price_bar_coverage"));
+    }
+
+    @Test
+    void fullyCoveredWindowNeedsNoFetch() {
+        assertThat(HistoricalBarStore.missingRanges(List.of(new Range(JAN, SEP)), MAR, JUL)).isEmpty();
+    }
+
+    @Test
+    void onlyTheGapsAroundStoredRangesAreFetched() {
+        List<Range> covered = List.of(new Range(MAR, MAY), new Range(MAR, JUL.minusDays(1)));
+
+        assertThat(HistoricalBarStore.missingRanges(covered, JAN, SEP))
+                .containsExactly(new Range(JAN, MAR), new Range(JUL.minusDays(1), SEP));
+    }
+
+    @Test
+    void uncoveredWindowIsFetchedWhole() {
+        assertThat(HistoricalBarStore.missingRanges(List.of(), JAN, MAR)).containsExactly(new Range(JAN, MAR));
+    }
+
+    // SQL of every update sent
+    private List<String> updates() {
+        return mockingDetails(jdbcTemplate).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("update"))
+                .map(Invocation::getArguments)
+                .map(args -> ((String) args[0]).strip())
+                .toList();
+    }
+
+    private static StockPriceDto bar(LocalDateTime time) {
+        BigDecimal price = new BigDecimal("187.25");
+        return StockPriceDto.builder().symbol("AAPL").price(price).open(price).high(price).low(price)
+                .volume(100L).timestamp(time).zonedTimestamp(time.atZone(ZoneOffset.UTC)).build();
+    }
+}
@@ -0,0 +1,228 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.engine.ExecutionRequest;
+import com.stockexchange.stock_platform.engine.LedgerAccount;
+import com.stockexchange.stock_platform.model.entity.User;
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import com.stockexchange.stock_platform.model.enums.OrderStatus;
+import com.stockexchange.stock_platform.repository.HoldingRepository;
+import com.stockexchange.stock_platform.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderExecutionPipelineTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final HoldingRepository holdingRepository = mock(HoldingRepository.class);
+    private final AccountLedger ledger = mock(AccountLedger.class);
+    private final Map<Long, LedgerAccount> accounts = new ConcurrentHashMap<>();
+
+    // Stand-ins for the database: order statuses, and what each transaction did
+    private final Map<Long, OrderStatus> orders = new ConcurrentHashMap<>();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final List<BigDecimal> sharesAtCommit = new CopyOnWriteArrayList<>();
+    private final StubJournal journal = new StubJournal();
+    private final OrderExecutionPipeline pipeline = new OrderExecutionPipeline(userRepository, holdingRepository,
+            journal, ledger, new RecordingTransactionManager(), 4, 100);
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findById(anyLong())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            user.setCashBalance(new BigDecimal("1000"));
+            return Optional.of(user);
+        });
+        when(holdingRepository.findByUserId(anyLong())).thenReturn(List.of());
+        when(ledger.account(anyLong())).thenAnswer(invocation -> accounts.computeIfAbsent(invocation.getArgument(0),
+                userId -> new LedgerAccount(userId, new BigDecimal("1000"))));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void accountsStayOnTheirShard() {
+        // With 4 shards, users 1 and 5 share a shard and user 2 has its own
+        CompletableFuture<OrderStatus> first = pipeline.execute(buy(10L, 1L));
+        CompletableFuture<OrderStatus> second = pipeline.execute(buy(11L, 5L));
+        CompletableFuture<OrderStatus> third = pipeline.execute(buy(12L, 2L));
+
+        assertThat(first).succeedsWithin(WAIT).isEqualTo(OrderStatus.EXECUTED);
+        assertThat(second).succeedsWithin(WAIT).isEqualTo(OrderStatus.EXECUTED);
+        assertThat(third).succeedsWithin(WAIT).isEqualTo(OrderStatus.EXECUTED);
+        assertThat(journal.threads.get(10L)).isEqualTo("execution-shard-1");
+        assertThat(journal.threads.get(11L)).isEqualTo("execution-shard-1");
+        assertThat(journal.threads.get(12L)).isEqualTo("execution-shard-2");
+    }
+
+    @Test
+    void failedBatchIsRetriedOneOrderAtATime() throws InterruptedException {
+        // Hold the shard on a first order, so the next two queue up and run as one batch
+        journal.holdFirst = true;
+        CompletableFuture<OrderStatus> first = pipeline.execute(buy(10L, 1L));
+        assertThat(journal.blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<OrderStatus> good = pipeline.execute(buy(11L, 1L));
+        // Never committed as PENDING, so the database doesn't know it
+        CompletableFuture<OrderStatus> unknown = pipeline.execute(new ExecutionRequest(99L, 1L, "AAPL",
+                OrderSide.BUY, BigDecimal.ONE, new BigDecimal("100")));
+        journal.release.countDown();
+
+        assertThat(first).succeedsWithin(WAIT).isEqualTo(OrderStatus.EXECUTED);
+        assertThat(good).succeedsWithin(WAIT).isEqualTo(OrderStatus.EXECUTED);
+        assertThat(unknown).failsWithin(WAIT).withThrowableOfType(Exception.class)
+                .havingCause().isInstanceOf(IllegalArgumentException.class);
+        assertThat(journal.locked).containsExactly(List.of(10L), List.of(11L, 99L), List.of(11L), List.of(99L));
+        assertThat(events).containsExactly("commit", "rollback", "commit", "rollback");
+    }
+
+    @Test
+    void ordersNoLongerPendingAreSkipped() {
+        orders.put(10L, OrderStatus.CANCELED);
+
+        CompletableFuture<OrderStatus> result = pipeline.execute(buy(10L, 1L));
+
+        assertThat(result).succeedsWithin(WAIT).isEqualTo(OrderStatus.CANCELED);
+        assertThat(orders.get(10L)).isEqualTo(OrderStatus.CANCELED);
+        verify(userRepository, never()).findById(any());
+        verify(ledger).release(1L, 10L);
+    }
+
+    @Test
+    void fillIsSettledOnlyOnceCommitted() {
+        orders.put(10L, OrderStatus.PENDING);
+        LedgerAccount account = ledger.account(1L);
+        account.track(10L, account.reserve(OrderSide.BUY, "AAPL", new BigDecimal("4"), new BigDecimal("100")));
+
+        CompletableFuture<OrderStatus> result = pipeline.execute(new ExecutionRequest(10L, 1L, "AAPL",
+                OrderSide.BUY, new BigDecimal("4"), new BigDecimal("100")));
+
+        assertThat(result).succeedsWithin(WAIT).isEqualTo(OrderStatus.EXECUTED);
+        // The shares were not in the ledger when the transaction committed, only after
+        assertThat(events).containsExactly("commit");
+        assertThat(sharesAtCommit).singleElement().isEqualTo(BigDecimal.ZERO);
+        assertThat(account.getAvailableShares("AAPL")).isEqualByComparingTo("4");
+        assertThat(account.release(10L)).isFalse();
+    }
+
+    @Test
+    void rolledBackFillIsNotSettled() {
+        LedgerAccount account = ledger.account(1L);
+        account.track(10L, account.reserve(OrderSide.BUY, "AAPL", new BigDecimal("4"), new BigDecimal("100")));
+        journal.failWrites = true;
+
+        CompletableFuture<OrderStatus> result = pipeline.execute(buy(10L, 1L));
+
+        assertThat(result).failsWithin(WAIT);
+        assertThat(events).containsExactly("rollback");
+        assertThat(account.getAvailableShares("AAPL")).isZero();
+        // Still reserved for the order
+        assertThat(account.getAvailableCash()).isEqualByComparingTo("600");
+    }
+
+    private ExecutionRequest buy(Long orderId, Long userId) {
+        orders.putIfAbsent(orderId, OrderStatus.PENDING);
+        return new ExecutionRequest(orderId, userId, "AAPL", OrderSide.BUY, BigDecimal.ONE, new BigDecimal("100"));
+    }
+
+    /**
+     * Answers lock queries from the order map and records what it's asked to do. Optionally
+     * holds the shard in the first lock query until the test releases it.
+     */
+    private class StubJournal extends FillJournal {
+        final List<List<Long>> locked = new CopyOnWriteArrayList<>();
+        final Map<Long, String> threads = new ConcurrentHashMap<>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean holdFirst;
+        volatile boolean failWrites;
+
+        StubJournal() {
+            super(mock(JdbcTemplate.class));
+        }
+
+        @Override
+        public Map<Long, OrderStatus> lockOrderStatuses(Collection<Long> orderIds) {
+            locked.add(List.copyOf(orderIds));
+            Map<Long, OrderStatus> statuses = new ConcurrentHashMap<>();
+            for (Long orderId : orderIds) {
+                threads.put(orderId, Thread.currentThread().getName());
+                OrderStatus status = orders.get(orderId);
+                if (status != null) {
+                    statuses.put(orderId, status);
+                }
+            }
+            if (holdFirst && locked.size() == 1) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return statuses;
+        }
+
+        @Override
+        public void write(Batch batch) {
+            if (failWrites) {
+                throw new IllegalStateException("database unavailable");
+            }
+        }
+    }
+
+    /**
+     * Records commits and rollbacks, and the AAPL shares user 1's ledger account shows at commit
+     */
+    private class RecordingTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            events.add("commit");
+            LedgerAccount account = accounts.get(1L);
+            if (account != null) {
+                sharesAtCommit.add(account.getAvailableShares("AAPL"));
+            }
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            events.add("rollback");
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.dto.OrderDto;
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.engine.ExecutionRequest;
+import com.stockexchange.stock_platform.engine.FixedPoint;
+import com.stockexchange.stock_platform.engine.LedgerAccount;
+import com.stockexchange.stock_platform.engine.Tick;
+import com.stockexchange.stock_platform.exception.InsufficientFundsException;
+import com.stockexchange.stock_platform.exception.InsufficientSharesException;
+import com.stockexchange.stock_platform.model.entity.Order;
+import com.stockexchange.stock_platform.model.entity.User;
+import com.stockexchange.stock_platform.model.enums.OrderSide;
+import com.stockexchange.stock_platform.model.enums.OrderStatus;
+import com.stockexchange.stock_platform.model.enums.OrderType;
+import com.stockexchange.stock_platform.pattern.factory.LimitOrderRequestFactory;
+import com.stockexchange.stock_platform.pattern.factory.MarketOrderRequestFactory;
+import com.stockexchange.stock_platform.pattern.observer.TickObserver;
+import com.stockexchange.stock_platform.repository.OrderRepository;
+import com.stockexchange.stock_platform.repository.UserRepository;
+import com.stockexchange.stock_platform.service.MarketCalendarService;
+import com.stockexchange.stock_platform.service.StockPriceService;
+import com.stockexchange.stock_platform.service.api.AlpacaWebSocketClient;
+import com.stockexchange.stock_platform.util.ObserverDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderServiceImplTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final StockPriceService stockPriceService = mock(StockPriceService.class);
+    private final MarketCalendarService marketCalendarService = mock(MarketCalendarService.class);
+    private final OrderExecutionPipeline executionPipeline = mock(OrderExecutionPipeline.class);
+    private final AlpacaWebSocketClient webSocketClient = mock(AlpacaWebSocketClient.class);
+    private final AccountLedger ledger = mock(AccountLedger.class);
+    private final LedgerAccount account = new LedgerAccount(1L, new BigDecimal("1000"));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private long nextOrderId = 42;
+
+    private final OrderServiceImpl orderService = new OrderServiceImpl(orderRepository, userRepository,
+            stockPriceService, marketCalendarService, webSocketClient, executionPipeline, ledger,
+            List.of(new MarketOrderRequestFactory(stockPriceService), new LimitOrderRequestFactory()),
+            meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(1L);
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
+        account.putShares("AAPL", new BigDecimal("2"));
+        when(ledger.account(1L)).thenReturn(account);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            if (order.getId() == null) {
+                order.setId(nextOrderId++);
+            }
+            return order;
+        });
+        StockPriceDto price = new StockPriceDto();
+        price.setPrice(new BigDecimal("100"));
+        when(stockPriceService.getCurrentPrice("AAPL")).thenReturn(price);
+    }
+
+    @Test
+    void acknowledgesMarketOrderBeforeItExecutes() {
+        when(marketCalendarService.isMarketOpen()).thenReturn(true);
+        // The shard hasn't got to it yet
+        when(executionPipeline.execute(any(ExecutionRequest.class))).thenReturn(new CompletableFuture<>());
+
+        OrderDto order = orderService.placeOrder(1L, "AAPL", OrderType.MARKET, OrderSide.BUY,
+                new BigDecimal("5"), null);
+
+        assertEquals(OrderStatus.PENDING, order.getStatus());
+        assertEquals(42L, order.getId());
+        verify(executionPipeline).execute(any(ExecutionRequest.class));
+        verify(userRepository, never()).findById(any());
+        assertEquals(1, meterRegistry.get("orders.ack").timer().count());
+    }
+
+    @Test
+    void rejectsAgainstLedgerWithoutSavingOrder() {
+        assertThrows(InsufficientSharesException.class, () -> orderService.placeOrder(1L, "AAPL",
+                OrderType.LIMIT, OrderSide.SELL, new BigDecimal("3"), new BigDecimal("100")));
+
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(executionPipeline, never()).execute(any(ExecutionRequest.class));
+    }
+
+    @Test
+    void openOrdersCantOversubscribeCash() {
+        orderService.placeOrder(1L, "MSFT", OrderType.LIMIT, OrderSide.BUY, new BigDecimal("6"), new BigDecimal("100"));
+
+        // 600 of the 1000 is reserved by the first order
+        assertThrows(InsufficientFundsException.class, () -> orderService.placeOrder(1L, "MSFT",
+                OrderType.LIMIT, OrderSide.BUY, new BigDecimal("6"), new BigDecimal("100")));
+        assertEquals(0, new BigDecimal("400").compareTo(account.getAvailableCash()));
+    }
+
+    @Test
+    void cancelReleasesReservation() {
+        OrderDto placed = orderService.placeOrder(1L, "AAPL", OrderType.LIMIT, OrderSide.SELL,
+                new BigDecimal("2"), new BigDecimal("100"));
+        assertEquals(0, account.getAvailableShares("AAPL").signum());
+
+        Order order = Order.builder().id(placed.getId()).user(userRepository.getReferenceById(1L))
+                .symbol("AAPL").orderType(OrderType.LIMIT).side(OrderSide.SELL).status(OrderStatus.PENDING)
+                .quantity(new BigDecimal("2")).price(new BigDecimal("100")).build();
+        when(orderRepository.findById(placed.getId())).thenReturn(Optional.of(order));
+        when(orderRepository.cancelIfPending(placed.getId())).thenReturn(1);
+        doAnswer(invocation -> account.release(placed.getId())).when(ledger).release(1L, placed.getId());
+
+        orderService.cancelOrder(placed.getId());
+
+        assertEquals(0, new BigDecimal("2").compareTo(account.getAvailableShares("AAPL")));
+    }
+
+    @Test
+    void cancelLosingToExecutionKeepsReservation() {
+        OrderDto placed = orderService.placeOrder(1L, "AAPL", OrderType.LIMIT, OrderSide.SELL,
+                new BigDecimal("2"), new BigDecimal("100"));
+        Order order = Order.builder().id(placed.getId()).user(userRepository.getReferenceById(1L))
+                .symbol("AAPL").orderType(OrderType.LIMIT).side(OrderSide.SELL).status(OrderStatus.PENDING)
+                .quantity(new BigDecimal("2")).price(new BigDecimal("100")).build();
+        when(orderRepository.findById(placed.getId())).thenReturn(Optional.of(order));
+        // The shard executed it between our read and our update
+        when(orderRepository.cancelIfPending(placed.getId())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> orderService.cancelOrder(placed.getId()));
+        verify(ledger, never()).release(1L, placed.getId());
+    }
+
+    @Test
+    void limitOrderGoesBackInBookWhenExecutionFails() {
+        orderService.init();
+        ArgumentCaptor<TickObserver> trigger = ArgumentCaptor.forClass(TickObserver.class);
+        verify(webSocketClient).registerObserver(trigger.capture(), eq(ObserverDispatcher.BackpressurePolicy.LOSSLESS));
+        when(marketCalendarService.isMarketOpen()).thenReturn(true);
+        when(executionPipeline.execute(any(ExecutionRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("database unavailable")));
+
+        orderService.placeOrder(1L, "AAPL", OrderType.LIMIT, OrderSide.BUY, new BigDecimal("1"), new BigDecimal("100"));
+        trigger.getValue().onTick(tick("AAPL", "99.50"));
+        // Not lost: the next crossing price tries again
+        trigger.getValue().onTick(tick("AAPL", "99.40"));
+
+        verify(executionPipeline, times(2)).execute(any(ExecutionRequest.class));
+    }
+
+    @Test
+    void mixedCaseLimitOrderUsesTheHeldSymbol() {
+        orderService.init();
+        ArgumentCaptor<TickObserver> trigger = ArgumentCaptor.forClass(TickObserver.class);
+        verify(webSocketClient).registerObserver(trigger.capture(), eq(ObserverDispatcher.BackpressurePolicy.LOSSLESS));
+        when(marketCalendarService.isMarketOpen()).thenReturn(true);
+        when(executionPipeline.execute(any(ExecutionRequest.class))).thenReturn(new CompletableFuture<>());
+
+        // Sells the 2 AAPL shares held, whatever case the client sent
+        OrderDto order = orderService.placeOrder(1L, "aApl", OrderType.LIMIT, OrderSide.SELL,
+                new BigDecimal("2"), new BigDecimal("100"));
+        assertEquals("AAPL", order.getSymbol());
+        assertEquals(0, account.getAvailableShares("AAPL").signum());
+
+        trigger.getValue().onTick(tick("AAPL", "100.50"));
+        ArgumentCaptor<ExecutionRequest> execution = ArgumentCaptor.forClass(ExecutionRequest.class);
+        verify(executionPipeline).execute(execution.capture());
+        assertEquals("AAPL", execution.getValue().getSymbol());
+    }
+
+    private static Tick tick(String symbol, String price) {
+        long fixed = FixedPoint.of(new BigDecimal(price));
+        return new Tick(symbol, fixed, fixed, fixed, fixed, 100, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,142 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceFanOutTest {
+
+    // What reaches the broker, i.e. the bytes clients get
+    private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+    private final PriceFanOut fanOut = new PriceFanOut(template(sent),
+            new ObjectMapper().registerModule(new JavaTimeModule()), true, 10);
+
+    @AfterEach
+    void tearDown() {
+        fanOut.shutdown();
+    }
+
+    @Test
+    void conflatesUpdatesAndBatchesWatchedSymbols() {
+        fanOut.watch("session-1", Set.of("aapl", "msft"));
+
+        fanOut.publish(price("AAPL", "187.10"));
+        fanOut.publish(price("AAPL", "187.25"));
+        fanOut.publish(price("MSFT", "410.00"));
+        fanOut.flush();
+
+        // One frame per symbol carrying the latest price, as plain JSON
+        List<String> aapl = payloads("/topic/prices/AAPL");
+        assertEquals(1, aapl.size());
+        assertTrue(aapl.get(0).startsWith("{") && aapl.get(0).contains("187.25"));
+
+        // One batched frame for the session with both symbols, on its user destination
+        List<Message<?>> batches = sent.stream()
+                .filter(message -> "/user/session-1/queue/prices".equals(destination(message)))
+                .toList();
+        assertEquals(1, batches.size());
+        assertEquals("session-1", SimpMessageHeaderAccessor.getSessionId(batches.get(0).getHeaders()));
+        String batched = text(batches.get(0));
+        assertTrue(batched.startsWith("[") && batched.endsWith("]"));
+        assertTrue(batched.contains("AAPL") && batched.contains("MSFT"));
+    }
+
+    @Test
+    void deltaCarriesOnlyChangedFields() {
+        fanOut.publish(price("AAPL", "187.10"));
+        fanOut.flush();
+        fanOut.publish(price("AAPL", "187.25"));
+        fanOut.flush();
+
+        List<String> deltas = payloads("/topic/prices/AAPL/delta");
+        assertEquals(2, deltas.size());
+        String second = deltas.get(1);
+        assertTrue(second.startsWith("{") && second.contains("\"price\""));
+        assertFalse(second.contains("\"volume\""));
+    }
+
+    @Test
+    void newDeltaSubscriberGetsEveryField() {
+        fanOut.publish(price("AAPL", "187.10"));
+        fanOut.flush();
+        fanOut.deltaSubscribed("aapl");
+
+        // Sent once the subscription is due, even though AAPL didn't change
+        await().atMost(5, TimeUnit.SECONDS).until(() -> {
+            fanOut.flush();
+            return payloads("/topic/prices/AAPL/delta").size() == 2;
+        });
+        assertTrue(payloads("/topic/prices/AAPL/delta").get(1).contains("\"volume\""));
+
+        // Back to deltas afterwards
+        fanOut.publish(price("AAPL", "187.25"));
+        fanOut.flush();
+        assertFalse(payloads("/topic/prices/AAPL/delta").get(2).contains("\"volume\""));
+    }
+
+    @Test
+    void unwatchedSessionGetsNoBatch() {
+        fanOut.watch("session-1", Set.of("AAPL"));
+        fanOut.unwatch("session-1");
+
+        fanOut.publish(price("AAPL", "187.10"));
+        fanOut.flush();
+
+        assertTrue(sent.stream().noneMatch(message -> destination(message).startsWith("/user/")));
+    }
+
+    /**
+     * A real template with the converters the simple broker is configured with, sending
+     * into a channel that records every message
+     */
+    private static SimpMessagingTemplate template(List<Message<?>> sent) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+        template.setMessageConverter(new CompositeMessageConverter(List.of(
+                new StringMessageConverter(), new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+        return template;
+    }
+
+    private List<String> payloads(String destination) {
+        return sent.stream()
+                .filter(message -> destination.equals(destination(message)))
+                .map(PriceFanOutTest::text)
+                .toList();
+    }
+
+    private static String destination(Message<?> message) {
+        return SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+    }
+
+    private static StockPriceDto price(String symbol, String price) {
+        return StockPriceDto.builder()
+                .symbol(symbol)
+                .price(new BigDecimal(price))
+                .volume(1000L)
+                .build();
+    }
+
+    private static String text(Message<?> message) {
+        return new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+    }
+}
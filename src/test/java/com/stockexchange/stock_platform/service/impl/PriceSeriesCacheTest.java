@@ -0,0 +1,74 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import com.stockexchange.stock_platform.engine.BarAggregator;
+import com.stockexchange.stock_platform.engine.BarResolution;
+import com.stockexchange.stock_platform.engine.FixedPoint;
+import com.stockexchange.stock_platform.engine.Tick;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceSeriesCacheTest {
+
+    // 2024-03-15 13:30 UTC, 09:30 in New York
+    private static final long OPEN = Instant.parse("2024-03-15T13:30:00Z").toEpochMilli();
+    private static final long MINUTE = 60_000L;
+
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
+    private final PriceSeriesCache cache = new PriceSeriesCache(cacheManager);
+    private final BarAggregator aggregator = new BarAggregator();
+
+    @Test
+    void minuteBarsReplaceTheLastBarOrAppendOne() {
+        // The first half hour of five-minute bars, as loaded for a 1d chart
+        List<Tick> loaded = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            loaded.add(bar(OPEN + i * 5 * MINUTE, 100 + i, 500));
+        }
+        aggregator.seed("AAPL", BarResolution.FIVE_MINUTES, loaded, OPEN, OPEN + 30 * MINUTE);
+        cache.get("AAPL", "1d", () -> new ArrayList<>(loaded.stream().map(Tick::toStockPriceDto).toList()));
+
+        tick(bar(OPEN + 30 * MINUTE, 110, 100));
+        tick(bar(OPEN + 31 * MINUTE, 112, 100));
+        // The same bar again, e.g. applied by another node
+        cache.onTick(bar(OPEN + 31 * MINUTE, 112, 100), aggregator);
+
+        List<StockPriceDto> series = cache.get("AAPL", "1d", List::of);
+        assertThat(series).hasSize(7);
+        StockPriceDto last = series.getLast();
+        assertThat(last.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli()).isEqualTo(OPEN + 30 * MINUTE);
+        assertThat(last.getPrice()).isEqualByComparingTo("112");
+        assertThat(last.getVolume()).isEqualTo(200);
+        assertThat(last.getChange()).isEqualByComparingTo("12");
+    }
+
+    @Test
+    void seriesNotCachedOrFromAnotherSessionAreLeftForTheNextRead() {
+        tick(bar(OPEN, 100, 100));
+        assertThat(cacheManager.getCache("stockPrices_1d").get("AAPL")).isNull();
+
+        // Yesterday's session, still cached while the market was closed
+        StockPriceDto yesterday = bar(OPEN - 24 * 60 * MINUTE, 99, 100).toStockPriceDto();
+        cache.get("AAPL", "1d", () -> List.of(yesterday));
+        tick(bar(OPEN + MINUTE, 101, 100));
+
+        assertThat(cacheManager.getCache("stockPrices_1d").get("AAPL")).isNull();
+    }
+
+    private void tick(Tick minuteBar) {
+        aggregator.onTick(minuteBar);
+        cache.onTick(minuteBar, aggregator);
+    }
+
+    private static Tick bar(long epochMillis, double close, long volume) {
+        return new Tick("AAPL", FixedPoint.of(close), FixedPoint.of(close), FixedPoint.of(close),
+                FixedPoint.of(close), volume, epochMillis);
+    }
+}
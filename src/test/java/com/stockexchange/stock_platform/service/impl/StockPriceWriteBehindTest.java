@@ -0,0 +1,115 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.model.entity.StockPrice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StockPriceWriteBehindTest {
+
+    private static final int COLUMNS = 7;
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 14, 30);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StockPriceWriteBehind writeBehind = new StockPriceWriteBehind(jdbcTemplate, meterRegistry, 3, 1000);
+
+    // Rows the database accepted, as (symbol, price)
+    private final List<String> written = new ArrayList<>();
+    private boolean databaseDown;
+
+    StockPriceWriteBehindTest() {
+        // A stand-in for the database: NOT NULL on price, rows written a statement at a time
+        when(jdbcTemplate.update(anyString(), any(Object[].class), any(int[].class))).thenAnswer(invocation -> {
+            if (databaseDown) {
+                throw new CannotGetJdbcConnectionException("Connection refused");
+            }
+            Object[] args = invocation.getArgument(1);
+            List<String> rows = new ArrayList<>();
+            for (int i = 0; i < args.length; i += COLUMNS) {
+                if (args[i + 2] == null) {
+                    throw new DataIntegrityViolationException("null value in column \"price\"");
+                }
+                rows.add(args[i + 1] + "@" + args[i + 2]);
+            }
+            written.addAll(rows);
+            return rows.size();
+        });
+    }
+
+    @Test
+    void coalescesOnSymbolAndTime() {
+        writeBehind.enqueue(price("AAPL", 0, "187.10"));
+        writeBehind.enqueue(price("AAPL", 0, "187.25"));
+        writeBehind.enqueue(price("AAPL", 1, "187.30"));
+
+        writeBehind.flush();
+
+        assertThat(written).containsExactly("AAPL@187.25", "AAPL@187.30");
+    }
+
+    @Test
+    void dropsNewPricesWhenFull() {
+        writeBehind.enqueue(price("AAPL", 0, "1"));
+        writeBehind.enqueue(price("AAPL", 1, "2"));
+        writeBehind.enqueue(price("AAPL", 2, "3"));
+        writeBehind.enqueue(price("AAPL", 3, "4"));
+        // Replacing a queued price still works when full
+        writeBehind.enqueue(price("AAPL", 0, "5"));
+
+        assertThat(writeBehind.queueDepth()).isEqualTo(3);
+        assertThat(meterRegistry.get("stock_prices.write_behind.dropped").counter().count()).isEqualTo(1);
+        writeBehind.flush();
+        assertThat(written).containsExactly("AAPL@5", "AAPL@2", "AAPL@3");
+    }
+
+    @Test
+    void requeuesWhenDatabaseIsUnavailable() {
+        writeBehind.enqueue(price("AAPL", 0, "1"));
+        writeBehind.enqueue(price("MSFT", 0, "2"));
+        databaseDown = true;
+
+        writeBehind.flush();
+        assertThat(writeBehind.queueDepth()).isEqualTo(2);
+
+        databaseDown = false;
+        writeBehind.flush();
+        assertThat(written).containsExactlyInAnyOrder("AAPL@1", "MSFT@2");
+        assertThat(writeBehind.queueDepth()).isZero();
+    }
+
+    @Test
+    void badRowIsDroppedWithoutHoldingBackTheRest() {
+        writeBehind.enqueue(price("AAPL", 0, "1"));
+        writeBehind.enqueue(price("MSFT", 0, null));
+        writeBehind.enqueue(price("TSLA", 0, "3"));
+
+        writeBehind.flush();
+
+        assertThat(written).containsExactly("AAPL@1", "TSLA@3");
+        assertThat(writeBehind.queueDepth()).isZero();
+        assertThat(meterRegistry.get("stock_prices.write_behind.rejected").counter().count()).isEqualTo(1);
+    }
+
+    private static StockPrice price(String symbol, int minute, String price) {
+        return StockPrice.builder()
+                .symbol(symbol)
+                .time(TIME.plusMinutes(minute))
+                .price(price != null ? new BigDecimal(price) : null)
+                .volume(100L)
+                .build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.stockexchange.stock_platform.service.impl;
+
+import com.stockexchange.stock_platform.dto.MarketCalendarDto;
+import com.stockexchange.stock_platform.dto.MarketClockDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TradingCalendarTest {
+
+    private static final ZoneId NY = ZoneId.of("America/New_York");
+
+    // Thanksgiving week 2024: closed Thursday, early close Friday
+    private final TradingCalendar calendar = TradingCalendar.of(List.of(
+            session("2024-11-29", "09:30", "13:00"),
+            session("2024-11-26", "09:30", "16:00"),
+            session("2024-11-27", "09:30", "16:00"),
+            session("2024-12-02", "09:30", "16:00")),
+            LocalDate.parse("2024-11-25"), LocalDate.parse("2024-12-06"));
+
+    @Test
+    void earlyClosesAndHolidaysComeFromTheSessions() {
+        assertThat(calendar.isOpen(at("2024-11-29T12:59"))).isTrue();
+        assertThat(calendar.isOpen(at("2024-11-29T13:00"))).isFalse();
+        assertThat(calendar.isOpen(at("2024-11-28T11:00"))).isFalse();
+        assertThat(calendar.isOpen(at("2024-11-27T09:29"))).isFalse();
+
+        assertThat(calendar.sessionOn(LocalDate.parse("2024-11-28"))).isNull();
+        assertThat(calendar.lastSessionBefore(LocalDate.parse("2024-11-29")).getDate())
+                .isEqualTo(LocalDate.parse("2024-11-27"));
+        assertThat(calendar.lastSessionBefore(LocalDate.parse("2024-11-26"))).isNull();
+    }
+
+    @Test
+    void clockPointsAtTheNextOpenAndClose() {
+        MarketClockDto closed = calendar.clockAt(at("2024-11-28T11:00"));
+        assertThat(closed.isOpen()).isFalse();
+        assertThat(closed.getNextOpen()).isEqualTo(ZonedDateTime.of(2024, 11, 29, 9, 30, 0, 0, NY));
+        assertThat(closed.getNextClose()).isEqualTo(ZonedDateTime.of(2024, 11, 29, 13, 0, 0, 0, NY));
+
+        MarketClockDto open = calendar.clockAt(at("2024-11-29T10:00"));
+        assertThat(open.isOpen()).isTrue();
+        assertThat(open.getNextOpen()).isEqualTo(ZonedDateTime.of(2024, 12, 2, 9, 30, 0, 0, NY));
+        assertThat(open.getNextClose()).isEqualTo(ZonedDateTime.of(2024, 11, 29, 13, 0, 0, 0, NY));
+    }
+
+    private static Instant at(String nyLocalTime) {
+        return LocalDateTime.parse(nyLocalTime).atZone(NY).toInstant();
+    }
+
+    private static MarketCalendarDto session(String date, String open, String close) {
+        MarketCalendarDto session = new MarketCalendarDto();
+        session.setDate(LocalDate.parse(date));
+        session.setOpen(LocalTime.parse(open));
+        session.setClose(LocalTime.parse(close));
+        return session;
+    }
+}
@@ -0,0 +1,121 @@
+package com.stockexchange.stock_platform.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ObserverDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Room for two queued events per observer
+    private final ObserverDispatcher<String[]> dispatcher = new ObserverDispatcher<>("test", event -> event[0], 2,
+            ObserverDispatcher.BackpressurePolicy.CONFLATE_BY_KEY, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void slowObserverFallsBehindAloneAndConflatesOnceFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> slowSeen = new CopyOnWriteArrayList<>();
+        List<String> fastSeen = new CopyOnWriteArrayList<>();
+
+        dispatcher.register("slow", event -> {
+            awaitQuietly(release);
+            slowSeen.add(event[0] + "=" + event[1]);
+        });
+        dispatcher.register("fast", event -> fastSeen.add(event[0] + "=" + event[1]));
+
+        dispatcher.publish(new String[]{"AAPL", "1"});
+        // Let the slow observer take the first event and block on it
+        await().atMost(5, TimeUnit.SECONDS).until(() -> fastSeen.size() == 1);
+        Thread.sleep(50);
+
+        dispatcher.publish(new String[]{"AAPL", "2"});
+        dispatcher.publish(new String[]{"MSFT", "1"});
+        // The slow mailbox is full, so this replaces AAPL=2 in its place
+        dispatcher.publish(new String[]{"AAPL", "3"});
+
+        // The fast observer keeps up (it may conflate too, but always ends on the latest values)
+        await().atMost(5, TimeUnit.SECONDS).until(() -> fastSeen.contains("AAPL=3") && fastSeen.contains("MSFT=1"));
+        assertThat(slowSeen).isEmpty();
+
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> slowSeen.size() == 3);
+        assertThat(slowSeen).containsExactly("AAPL=1", "AAPL=3", "MSFT=1");
+    }
+
+    @Test
+    void nothingIsConflatedBeforeTheMailboxIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> seen = new CopyOnWriteArrayList<>();
+        dispatcher.register("slow", event -> {
+            awaitQuietly(release);
+            seen.add(event[0] + "=" + event[1]);
+        });
+
+        dispatcher.publish(new String[]{"AAPL", "1"});
+        Thread.sleep(50);
+        dispatcher.publish(new String[]{"AAPL", "2"});
+        dispatcher.publish(new String[]{"AAPL", "3"});
+
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> seen.size() == 3);
+        assertThat(seen).containsExactly("AAPL=1", "AAPL=2", "AAPL=3");
+        assertThat(meterRegistry.get("observer.dispatch.conflated").counter().count()).isZero();
+    }
+
+    @Test
+    void losslessObserverSeesEveryEventPastCapacity() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> seen = new CopyOnWriteArrayList<>();
+        dispatcher.register("trigger", event -> {
+            awaitQuietly(release);
+            seen.add(event[1]);
+        }, ObserverDispatcher.BackpressurePolicy.LOSSLESS);
+
+        dispatcher.publish(new String[]{"AAPL", "1"});
+        Thread.sleep(50);
+        for (int i = 2; i <= 5; i++) {
+            dispatcher.publish(new String[]{"AAPL", String.valueOf(i)});
+        }
+
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> seen.size() == 5);
+        assertThat(seen).containsExactly("1", "2", "3", "4", "5");
+    }
+
+    @Test
+    void observersOfTheSameClassGetTheirOwnMeters() {
+        dispatcher.register("first", event -> { });
+        dispatcher.register("second", event -> { });
+        assertThat(meterRegistry.get("observer.dispatch.queue").gauges())
+                .extracting(gauge -> gauge.getId().getTag("observer"))
+                .containsExactlyInAnyOrder("String", "String-2");
+
+        // Removing one takes all its meters with it and leaves the other's in place
+        dispatcher.remove("first");
+        assertThat(meterRegistry.getMeters())
+                .extracting(meter -> meter.getId().getTag("observer"))
+                .hasSize(4)
+                .containsOnly("String-2");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.stockexchange.stock_platform.util;
+
+import com.stockexchange.stock_platform.util.PriorityRateLimiter.Lane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriorityRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // 100 a minute: a burst of 10, of which interactive calls leave 2 and background calls 5
+    private final PriorityRateLimiter limiter =
+            new PriorityRateLimiter("test", new RateLimiter(100, clock::get), meterRegistry);
+
+    @AfterEach
+    void shutdown() {
+        limiter.shutdown();
+    }
+
+    @Test
+    void lowerLanesLeavePartOfTheBurstToHigherOnes() {
+        assertThat(acquire(Lane.BACKGROUND, 6)).containsExactly(true, true, true, true, true, false);
+        assertThat(acquire(Lane.INTERACTIVE, 4)).containsExactly(true, true, true, false);
+        assertThat(acquire(Lane.ORDER_EXECUTION, 3)).containsExactly(true, true, false);
+
+        assertThat(meterRegistry.get("rate_limiter.queued").tag("lane", "background").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("rate_limiter.wait").tag("lane", "interactive").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void queuedCallsAreGrantedInPriorityOrder() throws Exception {
+        // Use up the whole burst
+        acquire(Lane.ORDER_EXECUTION, 10);
+
+        List<String> granted = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        for (Lane lane : List.of(Lane.BACKGROUND, Lane.INTERACTIVE, Lane.ORDER_EXECUTION)) {
+            waiting.add(limiter.acquireAsync(lane, 1).thenRun(() -> granted.add(lane.name())));
+        }
+        assertThat(granted).isEmpty();
+
+        // The budget refills; queuing one more call wakes the dispatcher
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        waiting.add(limiter.acquireAsync(Lane.BACKGROUND, 1));
+        CompletableFuture.allOf(waiting.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertThat(granted).containsExactly("ORDER_EXECUTION", "INTERACTIVE", "BACKGROUND");
+    }
+
+    private List<Boolean> acquire(Lane lane, int calls) {
+        List<Boolean> done = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            done.add(limiter.acquireAsync(lane, 1).isDone());
+        }
+        return done;
+    }
+}
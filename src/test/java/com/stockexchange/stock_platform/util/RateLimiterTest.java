@@ -0,0 +1,62 @@
+package com.stockexchange.stock_platform.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void aMinuteNeverSeesMoreThanTheLimit() {
+        // 100 a minute: a burst of 10, then one every 2/3 s
+        RateLimiter limiter = new RateLimiter(100, clock::get);
+
+        int granted = 0;
+        for (long t = 0; t < TimeUnit.MINUTES.toNanos(1); t += TimeUnit.MILLISECONDS.toNanos(10)) {
+            clock.set(1_000_000_000L + t);
+            while (limiter.tryAcquire()) {
+                granted++;
+            }
+        }
+
+        assertThat(granted).isBetween(99, 100);
+    }
+
+    @Test
+    void reservationsAreServedInOrderAndWeightsCostMore() {
+        RateLimiter limiter = new RateLimiter(60, clock::get);
+        for (int i = 0; i < 6; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        // The burst is used up; after that permits are ~1.1 s apart, first come first served
+        Duration first = limiter.reserve();
+        Duration second = limiter.reserve();
+        Duration heavy = limiter.reserve(3);
+
+        assertThat(first).isPositive();
+        assertThat(second.minus(first)).isEqualTo(Duration.ofNanos(TimeUnit.MINUTES.toNanos(1) / 54));
+        assertThat(heavy.minus(second)).isEqualTo(second.minus(first).multipliedBy(3));
+        assertThat(limiter.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void serverReportedBudgetHoldsPermitsBack() {
+        RateLimiter limiter = new RateLimiter(200, clock::get);
+
+        limiter.onServerLimit(2, Instant.now().plusSeconds(30));
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.onServerLimit(0, Instant.now().plusSeconds(30));
+        assertThat(limiter.reserve()).isGreaterThan(Duration.ofSeconds(29));
+    }
+}
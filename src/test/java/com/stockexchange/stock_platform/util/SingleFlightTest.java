@@ -0,0 +1,72 @@
+package com.stockexchange.stock_platform.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void concurrentCallsForOneKeyShareOneExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> flight.execute("AAPL:1Day", () -> {
+                    calls.incrementAndGet();
+                    awaitQuietly(release);
+                    return "bars";
+                })));
+            }
+            // Everyone but the leader is waiting on the leader's call
+            await().atMost(5, TimeUnit.SECONDS).until(() -> coalesced() == 7);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("bars");
+            }
+        }
+
+        assertThat(calls).hasValue(1);
+        // Finished calls aren't kept
+        assertThat(flight.execute("AAPL:1Day", () -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    void failuresReachEveryWaitingCaller() {
+        assertThatThrownBy(() -> flight.execute("AAPL", () -> {
+            throw new IllegalStateException("feed down");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("feed down");
+
+        assertThat(flight.execute("AAPL", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    private double coalesced() {
+        return meterRegistry.counter("single_flight.calls", "name", "test", "result", "coalesced").count();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.stockexchange.stock_platform.util;
+
+import com.stockexchange.stock_platform.dto.StockPriceDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ZoneProjectionTest {
+
+    private static final ZoneId ISTANBUL = ZoneId.of("Europe/Istanbul");
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    @Test
+    void seriesAcrossATransitionMatchesPerBarConversion() {
+        // Hourly UTC bars across the end of British Summer Time
+        List<StockPriceDto> series = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2024, 10, 26, 20, 0);
+        for (int i = 0; i < 12; i++) {
+            LocalDateTime utc = start.plusHours(i);
+            series.add(StockPriceDto.builder()
+                    .symbol("AAPL")
+                    .price(new BigDecimal("187.5000"))
+                    .timestamp(utc)
+                    .zonedTimestamp(utc.atZone(ZoneOffset.UTC))
+                    .sourceTimezone(ZoneId.of("UTC"))
+                    .build());
+        }
+
+        List<StockPriceDto> projected = ZoneProjection.of(LONDON).project(series);
+
+        assertThat(projected).hasSize(series.size());
+        for (int i = 0; i < series.size(); i++) {
+            StockPriceDto price = projected.get(i);
+            assertThat(price.getZonedTimestamp())
+                    .isEqualTo(series.get(i).getZonedTimestamp().withZoneSameInstant(LONDON));
+            assertThat(price.getTimestamp()).isEqualTo(series.get(i).getTimestamp());
+            assertThat(price.getSourceTimezone()).isEqualTo(LONDON);
+        }
+        assertThat(projected.getFirst().getZonedTimestamp().getOffset()).isEqualTo(ZoneOffset.ofHours(1));
+        assertThat(projected.getLast().getZonedTimestamp().getOffset()).isEqualTo(ZoneOffset.UTC);
+    }
+
+    @Test
+    void legacyPricesWithoutZoneAreTakenAsUtc() {
+        StockPriceDto price = new StockPriceDto();
+        price.setSymbol("AAPL");
+        price.setTimestamp(LocalDateTime.of(2025, 3, 14, 13, 30));
+
+        StockPriceDto projected = ZoneProjection.of(ISTANBUL).project(price);
+
+        assertThat(projected.getZonedTimestamp().toLocalDateTime()).isEqualTo(LocalDateTime.of(2025, 3, 14, 16, 30));
+        assertThat(projected).isNotSameAs(price);
+        assertThat(price.getZonedTimestamp()).isNull();
+    }
+}